@@ -37,6 +37,9 @@ android {
 }
 
 dependencies {
+    // Models, aggregation and settlement, shared with the benchmarks
+    implementation(project(":core"))
+
     // Core Android dependencies
     implementation(libs.appcompat)
     implementation(libs.material)
@@ -0,0 +1,781 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Timing benchmarks for the DatabaseHelper query paths, run on a device.
+ * Results are written to logcat under the "DbBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseBenchmarkTest {
+
+    private static final String TAG = "DbBenchmark";
+    private static final String BENCH_DB = "benchmark.db";
+    private static final int RUNS = 5;
+
+    private Context context;
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(BENCH_DB);
+        db = new DatabaseHelper(context, BENCH_DB);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(BENCH_DB);
+    }
+
+    @Test
+    public void tripDashboard_10Trips() {
+        benchmarkTripDashboard(10);
+    }
+
+    @Test
+    public void tripDashboard_1000Trips() {
+        benchmarkTripDashboard(1_000);
+    }
+
+    @Test
+    public void tripDashboard_10000Trips() {
+        benchmarkTripDashboard(10_000);
+    }
+
+    private void benchmarkTripDashboard(int tripCount) {
+        seedTrips(tripCount, 5);
+
+        long[] timings = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            List<Trip> trips = db.getAllTrips();
+            timings[i] = System.nanoTime() - start;
+            assertEquals(tripCount, trips.size());
+        }
+        report("getAllTrips trips=" + tripCount, timings);
+    }
+
+    @Test
+    public void tripFilterSwitch_10000Trips_javaFilterVsSqlFilter() {
+        seedTrips(10_000, 5);
+
+        // Old MainActivity path: load every trip, filter in Java, load every trip again for the counts
+        long[] javaFilter = new long[RUNS];
+        int javaCount = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            javaCount = 0;
+            for (Trip trip : db.getAllTrips()) {
+                if ("COMPLETED".equals(trip.status)) {
+                    javaCount++;
+                }
+            }
+            int completed = 0;
+            for (Trip trip : db.getAllTrips()) {
+                if ("COMPLETED".equals(trip.status)) {
+                    completed++;
+                }
+            }
+            javaFilter[i] = System.nanoTime() - start;
+            assertEquals(javaCount, completed);
+        }
+        report("COMPLETED filter 10k trips, two full loads", javaFilter);
+
+        long[] sqlFilter = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            List<Trip> trips = db.getTripsByStatus("COMPLETED");
+            Map<String, Integer> counts = db.getTripStatusCounts();
+            sqlFilter[i] = System.nanoTime() - start;
+            assertEquals(javaCount, trips.size());
+            assertEquals(Integer.valueOf(javaCount), counts.get("COMPLETED"));
+        }
+        report("COMPLETED filter 10k trips, status index + GROUP BY counts", sqlFilter);
+    }
+
+    @Test
+    public void settlementReport_reopenPerCallVsSharedConnection() {
+        int tripId = seedGroupTrip(10, 5_000);
+
+        // Before: every call paid for a fresh connection, as when each method closed the database.
+        // Both loops read the settlement from SQL, see runSettlementReport
+        long[] reopened = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            runSettlementReport(tripId, true);
+            reopened[i] = System.nanoTime() - start;
+        }
+        report("settlement report, reopen per call", reopened);
+
+        // After: the connection stays open across the whole report
+        long[] shared = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            runSettlementReport(tripId, false);
+            shared[i] = System.nanoTime() - start;
+        }
+        report("settlement report, shared connection", shared);
+    }
+
+    @Test
+    public void tripQueries_100kExpenses_withAndWithoutIndexes() {
+        int tripId = seedGroupTrip(10, 100_000);
+        seedGroupTrip(10, 20_000); // a second trip so lookups have rows to skip
+
+        timeTripQueries(tripId, "indexed");
+
+        SQLiteDatabase database = db.getWritableDatabase();
+        database.execSQL("DROP INDEX idx_expenses_trip_time");
+        database.execSQL("DROP INDEX idx_expenses_trip_day");
+        database.execSQL("DROP INDEX idx_expenses_trip_payer");
+        database.execSQL("DROP INDEX idx_participants_trip");
+        timeTripQueries(tripId, "full scan");
+    }
+
+    private void timeTripQueries(int tripId, String label) {
+        long[] expenses = new long[RUNS];
+        long[] lastDate = new long[RUNS];
+        long[] dayWise = new long[RUNS];
+        long[] balances = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            db.getTripExpenses(tripId);
+            expenses[i] = System.nanoTime() - start;
+
+            // Drop the cached aggregates so these time the SQL path
+            db.getAggregateCache().remove(tripId);
+            start = System.nanoTime();
+            db.getLastExpenseDate(tripId);
+            lastDate[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            db.getDayWiseExpenses(tripId);
+            dayWise[i] = System.nanoTime() - start;
+
+            db.getAggregateCache().remove(tripId);
+            start = System.nanoTime();
+            db.getSettlement(tripId);
+            balances[i] = System.nanoTime() - start;
+        }
+        report("getTripExpenses 100k, " + label, expenses);
+        report("getLastExpenseDate 100k, " + label, lastDate);
+        report("getDayWiseExpenses 100k, " + label, dayWise);
+        report("getSettlement 100k, " + label, balances);
+    }
+
+    @Test
+    public void settlement_singlePassVsPerParticipantQueries() {
+        int tripId = seedGroupTrip(20, 20_000);
+
+        long[] legacy = new long[RUNS];
+        Map<String, Double> legacyBalances = null;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            legacyBalances = legacyParticipantBalances(tripId);
+            legacyParticipantSpending(tripId);
+            legacy[i] = System.nanoTime() - start;
+        }
+        report("settlement, per-participant queries", legacy);
+
+        long[] singlePass = new long[RUNS];
+        Settlement settlement = null;
+        for (int i = 0; i < RUNS; i++) {
+            db.getAggregateCache().remove(tripId);
+            long start = System.nanoTime();
+            settlement = db.getSettlement(tripId);
+            singlePass[i] = System.nanoTime() - start;
+        }
+        report("settlement, single GROUP BY pass", singlePass);
+
+        // The old floating-point split may differ from the exact one by under a paisa
+        assertEquals(legacyBalances.size(), settlement.balances.length);
+        for (int i = 0; i < settlement.participants.length; i++) {
+            assertEquals(legacyBalances.get(settlement.participants[i]), settlement.balances[i], 1.0);
+        }
+    }
+
+    // The pre-engine implementation: one shared-total query plus one SUM per participant, in paise
+    private Map<String, Double> legacyParticipantBalances(int tripId) {
+        Map<String, Double> balances = new HashMap<>();
+        List<String> participants = db.getTripParticipants(tripId);
+        SQLiteDatabase database = db.getReadableDatabase();
+
+        Cursor sharedCursor = database.rawQuery("SELECT SUM(amount_minor) FROM expenses " +
+                "WHERE trip_id = ? AND self_paid = 0", new String[]{String.valueOf(tripId)});
+        double totalShared = sharedCursor.moveToFirst() ? sharedCursor.getDouble(0) : 0;
+        sharedCursor.close();
+
+        double perPersonShare = totalShared / participants.size();
+        for (String participant : participants) {
+            balances.put(participant, sumPaidBy(database, tripId, participant) - perPersonShare);
+        }
+        return balances;
+    }
+
+    private Map<String, Double> legacyParticipantSpending(int tripId) {
+        Map<String, Double> spending = new HashMap<>();
+        SQLiteDatabase database = db.getReadableDatabase();
+        for (String participant : db.getTripParticipants(tripId)) {
+            spending.put(participant, sumPaidBy(database, tripId, participant));
+        }
+        return spending;
+    }
+
+    private double sumPaidBy(SQLiteDatabase database, int tripId, String participant) {
+        Cursor cursor = database.rawQuery("SELECT SUM(e.amount_minor) FROM expenses e JOIN participants p " +
+                        "ON p.participant_id = e.paid_by_id WHERE e.trip_id = ? AND e.self_paid = 0 AND p.name = ?",
+                new String[]{String.valueOf(tripId), participant});
+        double paid = cursor.moveToFirst() ? cursor.getDouble(0) : 0;
+        cursor.close();
+        return paid;
+    }
+
+    @Test
+    public void expenseList_10kExpenses_textDatesVsDayBuckets() {
+        int tripId = seedGroupTrip(10, 10_000);
+
+        // The pre-v8 path: load "yyyy-MM-dd HH:mm:ss" text and parse it back per row to find the day
+        long[] legacy = new long[RUNS];
+        int legacyGroups = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            legacyGroups = legacyGroupByDate(tripId);
+            legacy[i] = System.nanoTime() - start;
+        }
+        report("expense list 10k, text dates parsed per row", legacy);
+
+        long[] buckets = new long[RUNS];
+        int groups = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            List<Expense> expenses = db.getTripExpenses(tripId);
+            groups = 0;
+            int day = Integer.MIN_VALUE;
+            for (Expense expense : expenses) {
+                if (expense.day != day) {
+                    day = expense.day;
+                    groups++;
+                }
+            }
+            buckets[i] = System.nanoTime() - start;
+        }
+        report("expense list 10k, integer day buckets", buckets);
+
+        assertEquals(legacyGroups, groups);
+    }
+
+    @Test
+    public void expenseList_50kExpenses_fullLoadVsFirstPage() {
+        int tripId = seedGroupTrip(10, 50_000);
+        Runtime runtime = Runtime.getRuntime();
+
+        long[] full = new long[RUNS];
+        long fullBytes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long before = usedHeap(runtime);
+            long start = System.nanoTime();
+            List<Expense> expenses = db.getTripExpenses(tripId);
+            full[i] = System.nanoTime() - start;
+            fullBytes = usedHeap(runtime) - before;
+            assertEquals(50_000, expenses.size());
+        }
+        report("expense list 50k, every row before first frame", full);
+        Log.i(TAG, String.format(Locale.US, "expense list 50k, every row: %d KB retained", fullBytes / 1024));
+
+        // What TripDetailActivity now waits for before drawing: one page plus its day headers
+        long[] firstPage = new long[RUNS];
+        long pageBytes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long before = usedHeap(runtime);
+            long start = System.nanoTime();
+            List<Expense> page = db.getTripExpensesPage(tripId, Long.MAX_VALUE, Integer.MAX_VALUE, 100);
+            List<DaySummary> days = db.getDaySummaries(tripId,
+                    page.get(page.size() - 1).day, page.get(0).day);
+            firstPage[i] = System.nanoTime() - start;
+            pageBytes = usedHeap(runtime) - before;
+            assertEquals(100, page.size());
+            assertFalse(days.isEmpty());
+        }
+        report("expense list 50k, first keyset page", firstPage);
+        Log.i(TAG, String.format(Locale.US, "expense list 50k, first page: %d KB retained", pageBytes / 1024));
+
+        // A page deep into the trip costs the same as the first one
+        Expense oldest = db.getTripExpensesPage(tripId, Long.MAX_VALUE, Integer.MAX_VALUE, 49_900)
+                .get(49_899);
+        long[] deepPage = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            db.getTripExpensesPage(tripId, oldest.time, oldest.id, 100);
+            deepPage[i] = System.nanoTime() - start;
+        }
+        report("expense list 50k, last keyset page", deepPage);
+    }
+
+    private long usedHeap(Runtime runtime) {
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void tripTotals_100kExpenses_sqlVsAggregateCache() {
+        int tripId = seedGroupTrip(10, 100_000);
+
+        // What TripDetailActivity.updateTotals() and the settlement dialog read after every write
+        long[] sql = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            db.getAggregateCache().remove(tripId);
+            long start = System.nanoTime();
+            db.getTripTotalExpense(tripId);
+            db.getTripExpenseCount(tripId);
+            db.getSettlement(tripId);
+            sql[i] = System.nanoTime() - start;
+        }
+        report("trip totals 100k, cache miss", sql);
+
+        long member = db.getParticipants(tripId).get(1).id;
+        long[] cached = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long id = db.addExpense(tripId, member, false, 2500, "Food", "Snack", 0);
+            db.deleteExpense((int) id);
+            long start = System.nanoTime();
+            db.getTripTotalExpense(tripId);
+            db.getTripExpenseCount(tripId);
+            db.getSettlement(tripId);
+            cached[i] = System.nanoTime() - start;
+        }
+        report("trip totals 100k, cache hit after add + delete", cached);
+        Log.i(TAG, db.getAggregateCache().toString());
+    }
+
+    @Test
+    public void splitSettlement_100kExpenses_50Members() {
+        int tripId = seedGroupTrip(50, 100_000);
+        List<Participant> members = db.getParticipants(tripId);
+
+        // Split every shared expense 1:2:3 over a rotating group of 10 members, about 860k rows
+        SQLiteDatabase database = db.getWritableDatabase();
+        SQLiteStatement insertSplit = database.compileStatement(
+                "INSERT INTO expense_splits (expense_id, participant_id, trip_id, shares, owed_minor) VALUES (?, ?, ?, ?, ?)");
+        long[] shares = new long[10];
+        int rows = 0;
+        long start = System.nanoTime();
+        database.beginTransaction();
+        try {
+            Cursor cursor = database.rawQuery("SELECT expense_id, amount_minor FROM expenses " +
+                    "WHERE trip_id = ? AND self_paid = 0", new String[]{String.valueOf(tripId)});
+            while (cursor.moveToNext()) {
+                long expenseId = cursor.getLong(0);
+                for (int i = 0; i < shares.length; i++) {
+                    shares[i] = 1 + (expenseId + i) % 3;
+                }
+                long[] owed = SplitBalanceEngine.allocate(cursor.getLong(1), shares);
+                for (int i = 0; i < shares.length; i++) {
+                    insertSplit.bindLong(1, expenseId);
+                    insertSplit.bindLong(2, members.get((int) ((expenseId + i * 5) % members.size())).id);
+                    insertSplit.bindLong(3, tripId);
+                    insertSplit.bindLong(4, shares[i]);
+                    insertSplit.bindLong(5, owed[i]);
+                    insertSplit.executeInsert();
+                    rows++;
+                }
+            }
+            cursor.close();
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        insertSplit.close();
+        logRate("split rows insert", rows, System.nanoTime() - start);
+
+        long[] cold = new long[RUNS];
+        Settlement settlement = null;
+        for (int i = 0; i < RUNS; i++) {
+            db.getAggregateCache().remove(tripId);
+            start = System.nanoTime();
+            settlement = db.getSettlement(tripId);
+            cold[i] = System.nanoTime() - start;
+        }
+        report("split settlement 100k x 50, cache miss", cold);
+
+        long[] warm = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            start = System.nanoTime();
+            settlement = db.getSettlement(tripId);
+            warm[i] = System.nanoTime() - start;
+        }
+        report("split settlement 100k x 50, cache hit", warm);
+
+        long balanceSum = 0;
+        for (long balance : settlement.balances) {
+            balanceSum += balance;
+        }
+        assertEquals(0, balanceSum);
+        assertEquals(settlement.sharedTotal, settlement.splitTotal);
+    }
+
+    @Test
+    public void tripSummary_100kExpenses_insertOverheadVsReadSavings() {
+        // Seed without the expense triggers first, on a database of its own
+        SQLiteDatabase database = db.getWritableDatabase();
+        database.execSQL("DROP TRIGGER trg_expenses_summary_insert");
+        database.execSQL("DROP TRIGGER trg_expenses_summary_delete");
+        database.execSQL("DROP TRIGGER trg_expenses_summary_update");
+        long start = System.nanoTime();
+        seedTrips(20, 5_000);
+        report("insert 100k expenses, no triggers", new long[]{System.nanoTime() - start});
+
+        db.close();
+        context.deleteDatabase(BENCH_DB);
+        db = new DatabaseHelper(context, BENCH_DB);
+        start = System.nanoTime();
+        seedTrips(20, 5_000);
+        report("insert 100k expenses, trip_summary triggers", new long[]{System.nanoTime() - start});
+
+        long[] summaryList = new long[RUNS];
+        long[] joinList = new long[RUNS];
+        long[] summaryTotal = new long[RUNS];
+        long[] sumTotal = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            start = System.nanoTime();
+            assertEquals(20, db.getAllTrips().size());
+            summaryList[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            assertEquals(20, countRows("SELECT t.trip_id, IFNULL(SUM(e.amount_minor), 0), COUNT(e.expense_id), " +
+                    "MAX(e.expense_time) FROM trips t LEFT JOIN expenses e ON e.trip_id = t.trip_id " +
+                    "GROUP BY t.trip_id ORDER BY t.trip_id DESC"));
+            joinList[i] = System.nanoTime() - start;
+
+            // The aggregate cache is never loaded here, so getTripTotalExpense reads trip_summary
+            start = System.nanoTime();
+            db.getTripTotalExpense(1);
+            summaryTotal[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            countRows("SELECT SUM(amount_minor) FROM expenses WHERE trip_id = 1");
+            sumTotal[i] = System.nanoTime() - start;
+        }
+        report("getAllTrips 100k, trip_summary rows", summaryList);
+        report("getAllTrips 100k, join and aggregate", joinList);
+        report("trip total 100k, trip_summary row", summaryTotal);
+        report("trip total 100k, SUM over expenses", sumTotal);
+    }
+
+    @Test
+    public void importExpenses_100kRows_throughput() {
+        int tripId = (int) db.addTrip("Import", "01/01/2025", "", Arrays.asList("Asha", "Meera", "Ravi"));
+        List<Participant> members = db.getParticipants(tripId);
+        List<Expense> rows = new ArrayList<>();
+        for (int e = 0; e < 100_000; e++) {
+            Expense expense = new Expense();
+            expense.paidById = members.get(e % members.size()).id;
+            expense.amountPaise = 5000 + (e % 40) * 725;
+            expense.category = "Food";
+            expense.description = "Receipt " + e;
+            expense.time = 1_735_700_000_000L + e * 60_000L;
+            rows.add(expense);
+        }
+
+        // One autocommit transaction per row, as the add expense dialog does; 2k rows is enough to see the rate
+        long start = System.nanoTime();
+        for (Expense expense : rows.subList(0, 2_000)) {
+            db.addExpense(tripId, expense.paidById, false, expense.amountPaise, expense.category, expense.description,
+                    expense.time);
+        }
+        logRate("addExpense per row", 2_000, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        assertTrue(db.importExpenses(tripId, rows.iterator(), false, null).complete);
+        logRate("importExpenses 100k, chunked", rows.size(), System.nanoTime() - start);
+
+        start = System.nanoTime();
+        assertTrue(db.importExpenses(tripId, rows.iterator(), true, null).complete);
+        logRate("importExpenses 100k, all or nothing", rows.size(), System.nanoTime() - start);
+        assertEquals(202_000, db.getTripExpenseCount(tripId));
+    }
+
+    @Test
+    public void exportData_1mRows_throughputAndHeap() throws IOException {
+        // Heap growth should be the same at 100k and at 1M rows
+        seedTrips(10, 10_000);
+        timeExport("100k", TripExporter.Format.CSV);
+        seedTrips(90, 10_000);
+        timeExport("1M", TripExporter.Format.CSV);
+        timeExport("1M", TripExporter.Format.JSON_LINES);
+    }
+
+    @Test
+    public void snapshot_300kExpenses_writeAndRestore() throws IOException {
+        seedTrips(30, 10_000);
+        File file = new File(context.getCacheDir(), "benchmark-snapshot");
+        DatabaseHelper restored = new DatabaseHelper(context, "benchmark-restore.db");
+        try {
+            for (boolean compress : new boolean[]{false, true}) {
+                long start = System.nanoTime();
+                try (FileOutputStream stream = new FileOutputStream(file)) {
+                    db.writeSnapshot(stream.getChannel(), compress);
+                }
+                long writeNanos = System.nanoTime() - start;
+
+                long[] restore = new long[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    start = System.nanoTime();
+                    try (FileInputStream stream = new FileInputStream(file)) {
+                        assertEquals(300_030, restored.restoreSnapshot(stream.getChannel()));
+                    }
+                    restore[i] = System.nanoTime() - start;
+                }
+                Log.i(TAG, String.format(Locale.US, "snapshot 300k%s: %.1f MB, written in %.1f ms",
+                        compress ? ", deflate" : "", file.length() / 1_048_576.0, writeNanos / 1_000_000.0));
+                report("restoreSnapshot 300k" + (compress ? ", deflate" : ""), restore);
+            }
+        } finally {
+            restored.close();
+            context.deleteDatabase("benchmark-restore.db");
+            file.delete();
+        }
+    }
+
+    private static final String[] SEARCH_WORDS = {"Dinner", "Lunch", "Breakfast", "Taxi", "Train", "Flight",
+            "Hotel", "Museum", "Tickets", "Fuel", "Snacks", "Coffee", "Tea", "Market", "Souvenir", "Beach", "Boat",
+            "Ferry", "Guide", "Parking"};
+
+    @Test
+    public void searchExpenses_500kExpenses() {
+        SQLiteDatabase database = db.getWritableDatabase();
+        SQLiteStatement insertTrip = database.compileStatement(
+                "INSERT INTO trips (trip_name, start_date, end_date, status) VALUES (?, '01/01/2025', '', 'ONGOING')");
+        SQLiteStatement insertExpense = database.compileStatement(
+                "INSERT INTO expenses (trip_id, paid_by_id, amount_minor, category, description, expense_time, expense_day) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)");
+        database.beginTransaction();
+        try {
+            for (int t = 0; t < 50; t++) {
+                insertTrip.bindString(1, "Trip " + t);
+                long tripId = insertTrip.executeInsert();
+                for (int e = 0; e < 10_000; e++) {
+                    int n = t * 10_000 + e;
+                    insertExpense.bindLong(1, tripId);
+                    insertExpense.bindNull(2); // the trips have no participants
+                    insertExpense.bindLong(3, 1000 + n % 5000);
+                    insertExpense.bindString(4, n % 3 == 0 ? "Food" : "Travel");
+                    // Every word appears in 1/20 of the rows, every place in 1/500
+                    insertExpense.bindString(5, SEARCH_WORDS[n % SEARCH_WORDS.length] + " at place" + (n * 7 % 500));
+                    bindTime(insertExpense, 6, 1_735_700_000_000L + n * 60_000L);
+                    insertExpense.executeInsert();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        insertTrip.close();
+        insertExpense.close();
+        database.execSQL("INSERT INTO expenses_fts (expenses_fts) VALUES ('optimize')");
+
+        timeSearch("taxi place123", 20); // about 50 matches
+        timeSearch("place123", 20); // 1k matches
+        timeSearch("muse", 20); // 25k matches
+        timeSearch("muse", 20, 400); // a later page of the same, near the last ranked candidate
+        timeSearch("mu", 20); // the shortest prefix searched as one
+        timeSearch("pl", 20); // every row
+    }
+
+    private void timeSearch(String query, int limit) {
+        timeSearch(query, limit, 0);
+    }
+
+    private void timeSearch(String query, int limit, int offset) {
+        long[] timings = new long[RUNS];
+        int results = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            results = db.searchExpenses(query, limit, offset).size();
+            timings[i] = System.nanoTime() - start;
+        }
+        assertEquals(limit, results);
+        report("searchExpenses 500k \"" + query + "\" offset " + offset, timings);
+    }
+
+    private void timeExport(String label, TripExporter.Format format) throws IOException {
+        File file = new File(context.getCacheDir(), "benchmark-export");
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = usedHeap(runtime);
+        long start = System.nanoTime();
+        long rows;
+        // Through a FileChannel, as a backup to a picked document would be written
+        try (FileOutputStream stream = new FileOutputStream(file);
+             OutputStream out = Channels.newOutputStream(stream.getChannel())) {
+            rows = db.exportData(out, format);
+        }
+        long nanos = System.nanoTime() - start;
+        Log.i(TAG, String.format(Locale.US, "export %s %s: %d rows, %.1f MB in %.1f ms, %.0f rows/s, heap %+d KB",
+                label, format, rows, file.length() / 1_048_576.0, nanos / 1_000_000.0,
+                rows * 1_000_000_000.0 / nanos, (usedHeap(runtime) - heapBefore) / 1024));
+        file.delete();
+    }
+
+    private void logRate(String label, int rows, long nanos) {
+        Log.i(TAG, String.format(Locale.US, "%s: %d rows in %.1f ms, %.0f rows/s",
+                label, rows, nanos / 1_000_000.0, rows * 1_000_000_000.0 / nanos));
+    }
+
+    private int countRows(String sql) {
+        Cursor cursor = db.getReadableDatabase().rawQuery(sql, null);
+        int rows = cursor.getCount();
+        cursor.close();
+        return rows;
+    }
+
+    private int legacyGroupByDate(int tripId) {
+        SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        SimpleDateFormat outputFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+        Map<String, Integer> groups = new LinkedHashMap<>();
+
+        // strftime stands in for the old TEXT column
+        Cursor cursor = db.getReadableDatabase().rawQuery("SELECT strftime('%Y-%m-%d %H:%M:%S', " +
+                "expense_time / 1000, 'unixepoch', 'localtime') FROM expenses " +
+                "WHERE trip_id = ? ORDER BY expense_time DESC", new String[]{String.valueOf(tripId)});
+        while (cursor.moveToNext()) {
+            try {
+                String key = outputFormat.format(inputFormat.parse(cursor.getString(0)));
+                Integer count = groups.get(key);
+                groups.put(key, count == null ? 1 : count + 1);
+            } catch (ParseException e) {
+                e.printStackTrace();
+            }
+        }
+        cursor.close();
+        return groups.size();
+    }
+
+    // Same calls TripDetailActivity.showSettlementReport() makes, on a cold aggregate cache. The
+    // cache outlives close(), so without the remove every run after the first would skip the
+    // settlement query and time little more than getDayWiseExpenses.
+    private void runSettlementReport(int tripId, boolean closeBetweenCalls) {
+        db.getAggregateCache().remove(tripId);
+        db.getSettlement(tripId);
+        if (closeBetweenCalls) db.close();
+        db.getDayWiseExpenses(tripId);
+        if (closeBetweenCalls) db.close();
+    }
+
+    // Creates one trip with memberCount participants and expenseCount expenses paid by them in turn
+    private int seedGroupTrip(int memberCount, int expenseCount) {
+        List<String> members = new ArrayList<>();
+        for (int m = 0; m < memberCount; m++) {
+            members.add("Member " + m);
+        }
+        int tripId = (int) db.addTrip("Group trip", "01/01/2025", "", members);
+
+        SQLiteDatabase database = db.getWritableDatabase();
+        SQLiteStatement insertExpense = database.compileStatement(
+                "INSERT INTO expenses (trip_id, paid_by_id, self_paid, amount_minor, category, description, expense_time, " +
+                        "expense_day) VALUES (?, ?, ?, ?, 'Food', 'Dinner', ?, ?)");
+        List<Participant> payers = db.getParticipants(tripId);
+        Calendar cal = Calendar.getInstance();
+        database.beginTransaction();
+        try {
+            for (int e = 0; e < expenseCount; e++) {
+                insertExpense.bindLong(1, tripId);
+                insertExpense.bindLong(2, payers.get(e % memberCount).id);
+                insertExpense.bindLong(3, e % 7 == 0 ? 1 : 0);
+                insertExpense.bindLong(4, 5000 + (e % 40) * 725);
+                cal.set(2025, Calendar.FEBRUARY, 1 + e % 28, e % 24, e % 60, 0);
+                bindTime(insertExpense, 5, cal.getTimeInMillis());
+                insertExpense.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        insertExpense.close();
+        return tripId;
+    }
+
+    // Inserts tripCount trips with expensesPerTrip expenses each, spread over a few days
+    private void seedTrips(int tripCount, int expensesPerTrip) {
+        SQLiteDatabase database = db.getWritableDatabase();
+        SQLiteStatement insertTrip = database.compileStatement(
+                "INSERT INTO trips (trip_name, start_date, end_date, status) VALUES (?, ?, '', ?)");
+        SQLiteStatement insertExpense = database.compileStatement(
+                "INSERT INTO expenses (trip_id, paid_by_id, amount_minor, category, description, expense_time, expense_day) " +
+                        "VALUES (?, ?, ?, 'Food', 'Lunch', ?, ?)");
+        Calendar cal = Calendar.getInstance();
+
+        database.beginTransaction();
+        try {
+            for (int t = 0; t < tripCount; t++) {
+                insertTrip.bindString(1, "Trip " + t);
+                insertTrip.bindString(2, "01/01/2025");
+                insertTrip.bindString(3, t % 3 == 0 ? "COMPLETED" : "ONGOING");
+                long tripId = insertTrip.executeInsert();
+
+                for (int e = 0; e < expensesPerTrip; e++) {
+                    insertExpense.bindLong(1, tripId);
+                    insertExpense.bindNull(2); // the trips have no participants
+                    insertExpense.bindLong(3, 10000 + e * 1250);
+                    cal.set(2025, Calendar.JANUARY, 1 + e % 28, 12, e % 60, 0);
+                    bindTime(insertExpense, 4, cal.getTimeInMillis());
+                    insertExpense.executeInsert();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        insertTrip.close();
+        insertExpense.close();
+    }
+
+    // Binds expense_time at index and expense_day right after it
+    private void bindTime(SQLiteStatement insertExpense, int index, long time) {
+        insertExpense.bindLong(index, time);
+        insertExpense.bindLong(index + 1, DayBuckets.dayOf(time));
+    }
+
+    private void report(String label, long[] timingsNanos) {
+        long[] sorted = timingsNanos.clone();
+        Arrays.sort(sorted);
+        Log.i(TAG, String.format(Locale.US, "%s: median %.2f ms, min %.2f ms, max %.2f ms",
+                label,
+                sorted[sorted.length / 2] / 1_000_000.0,
+                sorted[0] / 1_000_000.0,
+                sorted[sorted.length - 1] / 1_000_000.0));
+    }
+}
@@ -0,0 +1,903 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Schema, migration and query plan checks for DatabaseHelper, run on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseHelperTest {
+
+    private static final String TEST_DB = "helper-test.db";
+
+    private Context context;
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = new DatabaseHelper(context, TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void upgradeFromV5_keepsDataAndAddsIndexes() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+
+        // Build a version 5 database by hand, the last schema shipped before migrations
+        SQLiteDatabase legacy = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        legacy.execSQL("CREATE TABLE trips (trip_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_name TEXT NOT NULL, " +
+                "start_date TEXT, end_date TEXT, status TEXT DEFAULT 'ONGOING')");
+        legacy.execSQL("CREATE TABLE participants (participant_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "trip_id INTEGER, name TEXT NOT NULL, FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("CREATE TABLE expenses (expense_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_id INTEGER, " +
+                "paid_by TEXT NOT NULL, amount REAL NOT NULL, category TEXT, description TEXT, expense_date TEXT, " +
+                "FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("INSERT INTO trips (trip_name, start_date, end_date, status) VALUES ('Goa', '01/01/2025', '', 'ONGOING')");
+        legacy.execSQL("INSERT INTO participants (trip_id, name) VALUES (1, 'Asha'), (1, 'Ravi')");
+        legacy.execSQL("INSERT INTO expenses (trip_id, paid_by, amount, category, description, expense_date) VALUES " +
+                "(1, 'Asha', 1200, 'Hotel', 'Room', '2025-01-01 10:00:00'), " +
+                "(1, 'Ravi', 300, 'Food', 'Lunch', '2025-01-02 13:30:00')");
+        legacy.setVersion(5);
+        legacy.close();
+
+        db = new DatabaseHelper(context, TEST_DB);
+        assertEquals(2, db.getTripExpenses(1).size());
+        assertEquals(Arrays.asList("Asha", "Ravi"), db.getTripParticipants(1));
+        assertEquals(150000, db.getTripTotalExpense(1));
+        assertEquals(2, db.getTripById(1).expenseCount);
+        assertEquals("02/01/2025", db.getLastExpenseDate(1));
+
+        assertTrue(indexExists("idx_expenses_trip_time"));
+        assertTrue(indexExists("idx_expenses_trip_day"));
+        assertTrue(indexExists("idx_expenses_trip_payer"));
+        assertTrue(indexExists("idx_trips_status"));
+        assertEquals(14, db.getReadableDatabase().getVersion());
+        assertEquals(1, db.searchExpenses("lun", 10, 0).size());
+        assertTrue(indexExists("idx_participants_trip"));
+    }
+
+    @Test
+    public void upgradeFromV5_mapsPayerNamesToParticipantIds() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+
+        SQLiteDatabase legacy = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        legacy.execSQL("CREATE TABLE trips (trip_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_name TEXT NOT NULL, " +
+                "start_date TEXT, end_date TEXT, status TEXT DEFAULT 'ONGOING')");
+        legacy.execSQL("CREATE TABLE participants (participant_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "trip_id INTEGER, name TEXT NOT NULL, FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("CREATE TABLE expenses (expense_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_id INTEGER, " +
+                "paid_by TEXT NOT NULL, amount REAL NOT NULL, category TEXT, description TEXT, expense_date TEXT, " +
+                "FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("INSERT INTO trips (trip_name, start_date, end_date) VALUES ('Goa', '01/01/2025', ''), " +
+                "('Leh', '01/02/2025', '')");
+        // Asha is on both trips, so names only identify a participant within their trip
+        legacy.execSQL("INSERT INTO participants (trip_id, name) VALUES (2, 'Asha'), (1, 'Ravi'), (1, 'Asha')");
+        legacy.execSQL("INSERT INTO expenses (trip_id, paid_by, amount, category, description, expense_date) VALUES " +
+                "(1, 'Asha', 100, 'Hotel', 'Room', '2025-01-01 10:00:00'), " +
+                "(1, 'SELF_PAID', 40, 'Food', 'Snack', '2025-01-01 11:00:00'), " +
+                "(1, 'Kiran', 20, 'Food', 'Tea', '2025-01-01 12:00:00'), " +
+                "(2, 'Asha', 60, 'Fuel', 'Petrol', '2025-02-01 09:00:00')");
+        legacy.setVersion(5);
+        legacy.close();
+
+        db = new DatabaseHelper(context, TEST_DB);
+        List<Expense> goa = db.getTripExpenses(1);
+        assertEquals(payer(1, "Asha"), goa.get(2).paidById);
+        assertEquals("Asha", goa.get(2).paidBy);
+        assertTrue(goa.get(1).selfPaid);
+        assertEquals(0, goa.get(1).paidById);
+        assertNull(goa.get(1).paidBy);
+        // A payer who was never a participant is kept as shared with no one credited
+        assertFalse(goa.get(0).selfPaid);
+        assertEquals(0, goa.get(0).paidById);
+        assertEquals(payer(2, "Asha"), db.getTripExpenses(2).get(0).paidById);
+
+        Settlement settlement = db.getSettlement(1);
+        assertEquals(16000, settlement.total);
+        assertEquals(12000, settlement.sharedTotal);
+        assertEquals(10000, settlement.paid[0]);
+        assertEquals(0, settlement.paid[1]);
+        assertSummaryMatchesExpenses(1);
+        assertEquals(Arrays.asList(goa.get(1).id), ids(db.searchExpenses("self", 10, 0)));
+        assertEquals(2, db.searchExpenses("asha", 10, 0).size());
+    }
+
+    @Test
+    public void upgradeFromV6_convertsRupeesToPaise() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+
+        SQLiteDatabase legacy = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        legacy.execSQL("CREATE TABLE trips (trip_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_name TEXT NOT NULL, " +
+                "start_date TEXT, end_date TEXT, status TEXT DEFAULT 'ONGOING')");
+        legacy.execSQL("CREATE TABLE participants (participant_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "trip_id INTEGER, name TEXT NOT NULL, FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("CREATE TABLE expenses (expense_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_id INTEGER, " +
+                "paid_by TEXT NOT NULL, amount REAL NOT NULL, category TEXT, description TEXT, expense_date TEXT, " +
+                "FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("CREATE INDEX idx_expenses_trip_date ON expenses (trip_id, expense_date, amount)");
+        legacy.execSQL("CREATE INDEX idx_expenses_trip_payer ON expenses (trip_id, paid_by, amount)");
+        legacy.execSQL("CREATE INDEX idx_participants_trip ON participants (trip_id, name)");
+        legacy.execSQL("INSERT INTO trips (trip_name, start_date, end_date, status) VALUES ('Goa', '01/01/2025', '', 'ONGOING')");
+        legacy.execSQL("INSERT INTO participants (trip_id, name) VALUES (1, 'Asha'), (1, 'Meera'), (1, 'Ravi')");
+        legacy.execSQL("INSERT INTO expenses (trip_id, paid_by, amount, category, description, expense_date) VALUES " +
+                "(1, 'Asha', 0.1, 'Food', 'Tea', '2025-01-01 08:00:00'), " +
+                "(1, 'Asha', 0.2, 'Food', 'Biscuits', '2025-01-01 08:05:00'), " +
+                "(1, 'Ravi', 99.7, 'Fuel', 'Petrol', '2025-01-01 09:00:00')");
+        legacy.setVersion(6);
+        legacy.close();
+
+        db = new DatabaseHelper(context, TEST_DB);
+        assertEquals(10000, db.getTripTotalExpense(1));
+
+        // 100.00 three ways: the extra paisa goes to the first participant by name
+        Settlement settlement = db.getSettlement(1);
+        assertEquals(-3304, settlement.balances[0]);
+        assertEquals(-3333, settlement.balances[1]);
+        assertEquals(6637, settlement.balances[2]);
+        assertEquals(0, settlement.balances[0] + settlement.balances[1] + settlement.balances[2]);
+    }
+
+    @Test
+    public void upgradeFromV7_convertsDateTextToEpochAndDay() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+
+        SQLiteDatabase legacy = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        legacy.execSQL("CREATE TABLE trips (trip_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_name TEXT NOT NULL, " +
+                "start_date TEXT, end_date TEXT, status TEXT DEFAULT 'ONGOING')");
+        legacy.execSQL("CREATE TABLE participants (participant_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "trip_id INTEGER, name TEXT NOT NULL, FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("CREATE TABLE expenses (expense_id INTEGER PRIMARY KEY AUTOINCREMENT, trip_id INTEGER, " +
+                "paid_by TEXT NOT NULL, amount_minor INTEGER NOT NULL, category TEXT, description TEXT, " +
+                "expense_date TEXT, FOREIGN KEY(trip_id) REFERENCES trips(trip_id))");
+        legacy.execSQL("CREATE INDEX idx_expenses_trip_date ON expenses (trip_id, expense_date, amount_minor)");
+        legacy.execSQL("CREATE INDEX idx_expenses_trip_payer ON expenses (trip_id, paid_by, amount_minor)");
+        legacy.execSQL("CREATE INDEX idx_participants_trip ON participants (trip_id, name)");
+        legacy.execSQL("INSERT INTO trips (trip_name, start_date, end_date, status) VALUES ('Goa', '30/12/2024', '', 'ONGOING')");
+        legacy.execSQL("INSERT INTO participants (trip_id, name) VALUES (1, 'Asha'), (1, 'Ravi')");
+        legacy.execSQL("INSERT INTO expenses (trip_id, paid_by, amount_minor, category, description, expense_date) VALUES " +
+                "(1, 'Asha', 50000, 'Hotel', 'Room', '2024-12-31 23:59:59'), " +
+                "(1, 'Ravi', 2500, 'Food', 'Breakfast', '2025-01-01 00:00:00'), " +
+                "(1, 'Ravi', 7500, 'Food', 'Dinner', '2025-01-01 21:15:00')");
+        legacy.setVersion(7);
+        legacy.close();
+
+        db = new DatabaseHelper(context, TEST_DB);
+
+        // Day boundaries follow the device's local time, as the text was written
+        Map<String, Long> days = db.getDayWiseExpenses(1);
+        assertEquals(Arrays.asList("31/12/2024", "01/01/2025"), new ArrayList<>(days.keySet()));
+        assertEquals(Long.valueOf(50000), days.get("31/12/2024"));
+        assertEquals(Long.valueOf(10000), days.get("01/01/2025"));
+        assertEquals("01/01/2025", db.getLastExpenseDate(1));
+        assertEquals("01/01/2025", db.getTripById(1).endDate);
+
+        List<Expense> expenses = db.getTripExpenses(1);
+        assertEquals("Dinner", expenses.get(0).description);
+        assertEquals(DayBuckets.dayOf(expenses.get(0).time), expenses.get(0).day);
+        assertFalse(indexExists("idx_expenses_trip_date"));
+    }
+
+    @Test
+    public void addExpense_bucketsByLocalDay() {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2025, Calendar.MARCH, 9, 23, 30);
+        long lateNight = cal.getTimeInMillis();
+        cal.set(2025, Calendar.MARCH, 10, 0, 15);
+        long justAfterMidnight = cal.getTimeInMillis();
+
+        long tripId = db.addTrip("Pune", "09/03/2025", "", Arrays.asList("Asha"));
+        long asha = payer((int) tripId, "Asha");
+        db.addExpense((int) tripId, asha, false, 1000, "Food", "Snack", lateNight);
+        db.addExpense((int) tripId, asha, false, 2000, "Travel", "Cab", justAfterMidnight);
+
+        Map<String, Long> days = db.getDayWiseExpenses((int) tripId);
+        assertEquals(Long.valueOf(1000), days.get("09/03/2025"));
+        assertEquals(Long.valueOf(2000), days.get("10/03/2025"));
+    }
+
+    @Test
+    public void tripExpenses_useTripTimeIndexWithoutSorting() {
+        String plan = queryPlan("SELECT * FROM expenses WHERE trip_id = ? " +
+                "ORDER BY expense_time DESC, expense_id DESC", "1");
+        assertTrue(plan, plan.contains("idx_expenses_trip_time"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void expensePage_seeksOnTripTimeIndexWithoutSorting() {
+        String plan = queryPlan("SELECT * FROM expenses WHERE trip_id = ? AND expense_time <= ? " +
+                "AND (expense_time < ? OR expense_id < ?) ORDER BY expense_time DESC, expense_id DESC LIMIT ?",
+                "1", "1000", "1000", "50", "100");
+        assertTrue(plan, plan.contains("idx_expenses_trip_time (trip_id=? AND expense_time<?)"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void expensePages_coverEveryExpenseOnceInOrder() {
+        int tripId = (int) db.addTrip("Manali", "01/05/2025", "", Arrays.asList("Asha", "Ravi"));
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        for (int i = 0; i < 95; i++) {
+            // Groups of five share a timestamp so pages have to break ties on expense_id
+            cal.set(2025, Calendar.MAY, 1 + i / 20, 9, i / 5);
+            db.addExpense(tripId, payer(tripId, i % 2 == 0 ? "Asha" : "Ravi"), false, 100 + i, "Food", "Item " + i,
+                    cal.getTimeInMillis());
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (Expense expense : db.getTripExpenses(tripId)) {
+            expected.add(expense.id);
+        }
+
+        List<Integer> paged = new ArrayList<>();
+        long afterTime = Long.MAX_VALUE;
+        int afterId = Integer.MAX_VALUE;
+        List<Expense> page;
+        do {
+            page = db.getTripExpensesPage(tripId, afterTime, afterId, 7);
+            for (Expense expense : page) {
+                paged.add(expense.id);
+                afterTime = expense.time;
+                afterId = expense.id;
+            }
+        } while (page.size() == 7);
+
+        assertEquals(95, expected.size());
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void daySummaries_countWholeDays() {
+        int tripId = (int) db.addTrip("Manali", "01/05/2025", "", Arrays.asList("Asha"));
+        long asha = payer(tripId, "Asha");
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2025, Calendar.MAY, 1, 10, 0);
+        db.addExpense(tripId, asha, false, 1000, "Food", "Tea", cal.getTimeInMillis());
+        cal.set(2025, Calendar.MAY, 2, 10, 0);
+        db.addExpense(tripId, asha, false, 2000, "Food", "Lunch", cal.getTimeInMillis());
+        cal.set(2025, Calendar.MAY, 2, 20, 0);
+        db.addExpense(tripId, asha, false, 3000, "Food", "Dinner", cal.getTimeInMillis());
+        int secondDay = DayBuckets.dayOf(cal.getTimeInMillis());
+
+        List<DaySummary> days = db.getDaySummaries(tripId, secondDay - 1, secondDay);
+        assertEquals(2, days.size());
+        assertEquals(secondDay, days.get(0).day);
+        assertEquals(2, days.get(0).expenseCount);
+        assertEquals(5000, days.get(0).totalPaise);
+        assertEquals(1, days.get(1).expenseCount);
+        assertEquals(3, db.getTripExpenseCount(tripId));
+    }
+
+    @Test
+    public void lastExpenseDate_isCoveredByTripTimeIndex() {
+        String plan = queryPlan("SELECT expense_time FROM expenses WHERE trip_id = ? " +
+                "ORDER BY expense_time DESC LIMIT 1", "1");
+        assertTrue(plan, plan.contains("COVERING INDEX idx_expenses_trip_time"));
+    }
+
+    @Test
+    public void dayWiseExpenses_areCoveredByTripDayIndex() {
+        String plan = queryPlan("SELECT expense_day, SUM(amount_minor) FROM expenses WHERE trip_id = ? " +
+                "GROUP BY expense_day ORDER BY expense_day", "1");
+        assertTrue(plan, plan.contains("COVERING INDEX idx_expenses_trip_day"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void perPayerSums_areCoveredByTripPayerIndexWithoutSorting() {
+        String plan = queryPlan("SELECT paid_by_id, self_paid, SUM(amount_minor), COUNT(*) FROM expenses " +
+                "WHERE trip_id = ? GROUP BY paid_by_id, self_paid", "1");
+        assertTrue(plan, plan.contains("COVERING INDEX idx_expenses_trip_payer"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void tripsByStatus_filterInSqlAndKeepTotals() {
+        int goa = (int) db.addTrip("Goa", "01/01/2025", "", Arrays.asList("Asha"));
+        int pune = (int) db.addTrip("Pune", "01/02/2025", "", Arrays.asList("Asha"));
+        int ooty = (int) db.addTrip("Ooty", "01/03/2025", "", Arrays.asList("Asha"));
+        db.updateTripStatus(pune, "COMPLETED");
+        db.addExpense(goa, payer(goa, "Asha"), false, 1500, "Food", "Lunch", 0);
+        db.addExpense(goa, payer(goa, "Asha"), false, 2500, "Food", "Dinner", 0);
+        db.addExpense(pune, payer(pune, "Asha"), false, 900, "Fuel", "Petrol", 0);
+
+        List<Trip> ongoing = db.getTripsByStatus("ONGOING");
+        assertEquals(2, ongoing.size());
+        assertEquals(ooty, ongoing.get(0).id);
+        assertEquals(0, ongoing.get(0).totalPaise);
+        assertEquals(0, ongoing.get(0).expenseCount);
+        assertEquals(goa, ongoing.get(1).id);
+        assertEquals(4000, ongoing.get(1).totalPaise);
+        assertEquals(2, ongoing.get(1).expenseCount);
+
+        List<Trip> completed = db.getTripsByStatus("COMPLETED");
+        assertEquals(1, completed.size());
+        assertEquals(900, completed.get(0).totalPaise);
+        assertEquals(3, db.getTripsByStatus(null).size());
+
+        Map<String, Integer> counts = db.getTripStatusCounts();
+        assertEquals(Integer.valueOf(2), counts.get("ONGOING"));
+        assertEquals(Integer.valueOf(1), counts.get("COMPLETED"));
+        assertEquals(4000, db.getTripById(goa).totalPaise);
+    }
+
+    @Test
+    public void tripStatusFilterAndCounts_useStatusIndex() {
+        String plan = queryPlan("SELECT trip_id FROM trips WHERE status = ? ORDER BY trip_id DESC", "ONGOING");
+        assertTrue(plan, plan.contains("idx_trips_status"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+
+        plan = queryPlan("SELECT status, COUNT(*) FROM trips GROUP BY status");
+        assertTrue(plan, plan.contains("COVERING INDEX idx_trips_status"));
+    }
+
+    @Test
+    public void tripSummary_readsOneRowPerTripWithoutExpenses() {
+        String plan = queryPlan("SELECT t.trip_id, s.total_amount, s.expense_count, s.last_expense_time " +
+                "FROM trips t LEFT JOIN trip_summary s ON s.trip_id = t.trip_id WHERE t.status = ? " +
+                "ORDER BY t.trip_id DESC", "ONGOING");
+        assertTrue(plan, plan.contains("INTEGER PRIMARY KEY"));
+        assertFalse(plan, plan.contains("expenses"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void tripSummary_triggersMatchExpensesAfterRandomWrites() {
+        List<String> members = Arrays.asList("Asha", "Ravi");
+        int[] trips = {
+                (int) db.addTrip("Coorg", "01/06/2025", "", members),
+                (int) db.addTrip("Hampi", "01/06/2025", "", members),
+                (int) db.addTrip("Ooty", "01/06/2025", "", members)};
+        SQLiteDatabase database = db.getWritableDatabase();
+        Random random = new Random(7);
+        List<Integer> expenseIds = new ArrayList<>();
+
+        for (int step = 0; step < 400; step++) {
+            int action = random.nextInt(10);
+            if (expenseIds.isEmpty() || action < 6) {
+                int trip = trips[random.nextInt(trips.length)];
+                long paidBy = payer(trip, members.get(random.nextInt(members.size())));
+                long time = 1_700_000_000_000L + random.nextInt(1_000_000) * 1000L;
+                expenseIds.add((int) db.addExpense(trip, paidBy, random.nextInt(4) == 0,
+                        1 + random.nextInt(100_000), "Food", "Step " + step, time));
+            } else if (action < 8) {
+                db.deleteExpense(expenseIds.remove(random.nextInt(expenseIds.size())));
+            } else {
+                // Moves an expense to another trip and time, which the app never does but the trigger must handle
+                database.execSQL("UPDATE expenses SET trip_id = ?, amount_minor = ?, expense_time = ?, self_paid = ? " +
+                                "WHERE expense_id = ?",
+                        new Object[]{trips[random.nextInt(trips.length)], 1 + random.nextInt(100_000),
+                                1_700_000_000_000L + random.nextInt(1_000_000) * 1000L, random.nextInt(2),
+                                expenseIds.get(random.nextInt(expenseIds.size()))});
+            }
+        }
+
+        for (int tripId : trips) {
+            assertSummaryMatchesExpenses(tripId);
+        }
+        db.deleteTrip(trips[0]);
+        Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM trip_summary WHERE trip_id = ?",
+                new String[]{String.valueOf(trips[0])});
+        cursor.moveToFirst();
+        assertEquals(0, cursor.getInt(0));
+        cursor.close();
+    }
+
+    private void assertSummaryMatchesExpenses(int tripId) {
+        Cursor expected = db.getReadableDatabase().rawQuery("SELECT IFNULL(SUM(amount_minor), 0), " +
+                "IFNULL(SUM(CASE WHEN self_paid = 0 THEN amount_minor END), 0), COUNT(*), MAX(expense_time) " +
+                "FROM expenses WHERE trip_id = ?", new String[]{String.valueOf(tripId)});
+        Cursor actual = db.getReadableDatabase().rawQuery("SELECT total_amount, shared_total, expense_count, " +
+                "last_expense_time FROM trip_summary WHERE trip_id = ?", new String[]{String.valueOf(tripId)});
+        assertTrue(expected.moveToFirst());
+        assertTrue(actual.moveToFirst());
+        for (int column = 0; column < 3; column++) {
+            assertEquals(expected.getLong(column), actual.getLong(column));
+        }
+        assertEquals(expected.isNull(3), actual.isNull(3));
+        assertEquals(expected.getLong(3), actual.getLong(3));
+        expected.close();
+        actual.close();
+    }
+
+    @Test
+    public void aggregateCache_matchesSqlAfterRandomWrites() {
+        List<String> members = Arrays.asList("Asha", "Meera", "Ravi");
+        int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", members);
+        int otherTrip = (int) db.addTrip("Hampi", "01/06/2025", "", members);
+        Random random = new Random(42);
+        List<Integer> expenseIds = new ArrayList<>();
+
+        db.getSettlement(tripId); // load the entry so every write below goes through the cache
+        for (int step = 0; step < 300; step++) {
+            if (expenseIds.isEmpty() || random.nextInt(3) > 0) {
+                boolean selfPaid = random.nextInt(5) == 0;
+                long time = 1_700_000_000_000L + random.nextInt(1_000_000) * 1000L;
+                int trip = random.nextInt(4) == 0 ? otherTrip : tripId;
+                long paidBy = payer(trip, members.get(random.nextInt(members.size())));
+                long id;
+                if (random.nextInt(4) == 0) {
+                    long[] split = {payer(trip, "Asha"), payer(trip, members.get(1 + random.nextInt(2)))};
+                    id = db.addSplitExpense(trip, paidBy, 1 + random.nextInt(100_000), "Hotel", "Step " + step, time,
+                            split, new long[]{1 + random.nextInt(3), 1 + random.nextInt(3)});
+                } else {
+                    id = db.addExpense(trip, paidBy, selfPaid, 1 + random.nextInt(100_000), "Food", "Step " + step, time);
+                }
+                if (trip == tripId) {
+                    expenseIds.add((int) id);
+                }
+            } else {
+                db.deleteExpense(expenseIds.remove(random.nextInt(expenseIds.size())));
+            }
+
+            if (step % 25 == 0) {
+                assertMatchesSql(tripId);
+            }
+        }
+        assertMatchesSql(tripId);
+        // Split writes were applied as deltas too, so the entry was only ever loaded once
+        assertEquals(1, db.getAggregateCache().misses());
+        assertTrue(db.getAggregateCache().hits() > 0);
+
+        db.setVerifyAggregates(true);
+        db.getSettlement(tripId);
+        assertFalse(db.getAggregateCache().isPatched(tripId));
+        assertEquals(0, db.getAggregateCache().mismatches());
+
+        db.deleteTrip(tripId);
+        assertEquals(0, db.getTripTotalExpense(tripId));
+        assertNull(db.getLastExpenseDate(tripId));
+    }
+
+    // Each round races one write against a cold getSettlement, as TripRepository's two threads can
+    @Test
+    public void aggregateCache_matchesSqlWithConcurrentColdLoads() throws InterruptedException {
+        int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha", "Ravi"));
+        long asha = payer(tripId, "Asha");
+        long[] split = {asha, payer(tripId, "Ravi")};
+        List<Integer> expenseIds = new ArrayList<>();
+
+        for (int round = 0; round < 200; round++) {
+            db.getAggregateCache().remove(tripId);
+            CountDownLatch start = new CountDownLatch(1);
+            Thread loader = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                db.getSettlement(tripId);
+            });
+            loader.start();
+            start.countDown();
+            if (round % 4 == 1) {
+                expenseIds.add((int) db.addSplitExpense(tripId, asha, 100 + round, "Hotel", "Round " + round, 0,
+                        split, new long[]{1, 2}));
+            } else if (expenseIds.isEmpty() || round % 3 > 0) {
+                expenseIds.add((int) db.addExpense(tripId, asha, false, 100 + round, "Food", "Round " + round, 0));
+            } else {
+                db.deleteExpense(expenseIds.remove(0));
+            }
+            loader.join();
+            assertMatchesSql(tripId);
+        }
+    }
+
+    @Test
+    public void splitExpenses_settleByStoredSharesAndRestOfTripEqually() {
+        List<String> members = Arrays.asList("Asha", "Meera", "Ravi");
+        int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", members);
+        long asha = payer(tripId, "Asha");
+        long ravi = payer(tripId, "Ravi");
+        db.getSettlement(tripId);
+
+        // Asha pays 9.00 split 1:2 with Ravi, Ravi pays 3.00 split three ways
+        long splitId = db.addSplitExpense(tripId, asha, 900, "Food", "Dinner", 0,
+                new long[]{asha, ravi}, new long[]{1, 2});
+        db.addExpense(tripId, ravi, false, 300, "Travel", "Auto", 0);
+
+        Settlement settlement = db.getSettlement(tripId);
+        assertEquals(900, settlement.splitTotal);
+        assertArrayEquals(new long[]{300, 0, 600}, settlement.owed);
+        assertArrayEquals(new long[]{500, -100, -400}, settlement.balances);
+        assertMatchesSql(tripId);
+
+        db.deleteExpense((int) splitId);
+        settlement = db.getSettlement(tripId);
+        assertEquals(0, settlement.splitTotal);
+        assertArrayEquals(new long[]{-100, -100, 200}, settlement.balances);
+        assertMatchesSql(tripId);
+
+        db.addSplitExpense(tripId, asha, 900, "Food", "Dinner", 0, new long[]{asha, ravi}, new long[]{1, 2});
+        db.deleteTrip(tripId);
+        Cursor cursor = db.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM expense_splits", null);
+        cursor.moveToFirst();
+        assertEquals(0, cursor.getInt(0));
+        cursor.close();
+    }
+
+    @Test
+    public void owedSums_areCoveredBySplitTripIndexWithoutSorting() {
+        String plan = queryPlan("SELECT participant_id, SUM(owed_minor) FROM expense_splits " +
+                "WHERE trip_id = ? GROUP BY participant_id", "1");
+        assertTrue(plan, plan.contains("COVERING INDEX idx_expense_splits_trip"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void importExpenses_allOrNothingKeepsNothingOnFailure() {
+        int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha", "Ravi"));
+        List<Expense> rows = importRows(tripId, 1200);
+        failInsertOf("Receipt 1100");
+
+        DatabaseHelper.ImportResult result = db.importExpenses(tripId, rows.iterator(), true, null);
+        assertFalse(result.complete);
+        assertEquals(0, result.imported);
+        assertEquals(0, db.getTripExpenseCount(tripId));
+        assertSummaryMatchesExpenses(tripId);
+    }
+
+    @Test
+    public void importExpenses_chunkedKeepsCommittedChunksAndReportsProgress() {
+        int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha", "Ravi"));
+        db.getSettlement(tripId); // cached before the import, which must not leave it stale
+        List<Expense> rows = importRows(tripId, 1200);
+        failInsertOf("Receipt 1100");
+        List<Integer> progress = new ArrayList<>();
+
+        DatabaseHelper.ImportResult result = db.importExpenses(tripId, rows.iterator(), false, progress::add);
+        assertFalse(result.complete);
+        assertEquals(2 * DatabaseHelper.IMPORT_CHUNK_SIZE, result.imported);
+        assertEquals(Arrays.asList(500, 1000), progress);
+        assertMatchesSql(tripId);
+        assertSummaryMatchesExpenses(tripId);
+
+        result = db.importExpenses(tripId, importRows(tripId, 700).iterator(), false, null);
+        assertTrue(result.complete);
+        assertEquals(700, result.imported);
+        assertEquals(1700, db.getTripExpenseCount(tripId));
+        assertMatchesSql(tripId);
+    }
+
+    // Aborts, for this connection only, the insert of the expense with this description
+    private void failInsertOf(String description) {
+        db.getWritableDatabase().execSQL("CREATE TEMP TRIGGER fail_import BEFORE INSERT ON main.expenses " +
+                "WHEN NEW.description = '" + description + "' BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+    }
+
+    private List<Expense> importRows(int tripId, int count) {
+        long asha = payer(tripId, "Asha");
+        long ravi = payer(tripId, "Ravi");
+        List<Expense> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Expense expense = new Expense();
+            expense.selfPaid = i % 5 == 0;
+            expense.paidById = i % 2 == 0 ? asha : ravi;
+            expense.amountPaise = 100 + i;
+            expense.category = "Food";
+            expense.description = "Receipt " + i;
+            expense.time = 1_700_000_000_000L + i * 60_000L;
+            rows.add(expense);
+        }
+        return rows;
+    }
+
+    @Test
+    public void searchExpenses_matchesPrefixesAcrossTrips() {
+        int goa = (int) db.addTrip("Goa", "01/06/2025", "", Arrays.asList("Asha", "Ravi"));
+        int leh = (int) db.addTrip("Leh", "01/07/2025", "", Arrays.asList("Meera"));
+        long time = 1_750_000_000_000L;
+        long dinner = db.addExpense(goa, payer(goa, "Asha"), false, 1000, "Food", "Dinner by the beach", time);
+        long dinners = db.addExpense(goa, payer(goa, "Ravi"), false, 2000, "Food", "Dinner and dinner dessert", time - 1000);
+        long taxi = db.addExpense(leh, payer(leh, "Meera"), false, 3000, "Transport", "Taxi to dinner", time + 1000);
+        db.addExpense(leh, payer(leh, "Meera"), true, 4000, "Stay", "Hotel", time + 2000);
+
+        // Two hits ranks first, then newest first
+        assertEquals(Arrays.asList((int) dinners, (int) taxi, (int) dinner), ids(db.searchExpenses("DIN", 10, 0)));
+        assertEquals(Arrays.asList((int) taxi), ids(db.searchExpenses("din, trans", 10, 0)));
+        assertEquals(Arrays.asList((int) dinners), ids(db.searchExpenses("ravi", 10, 0)));
+        assertEquals(Arrays.asList((int) taxi), ids(db.searchExpenses("din", 1, 1)));
+        assertTrue(db.searchExpenses("\"OR NEAR -", 10, 0).isEmpty());
+        assertEquals(1, db.searchExpenses("self hot", 10, 0).size());
+
+        // The index keeps its own copy of payer names, which a rename has to reach
+        db.getWritableDatabase().execSQL("UPDATE participants SET name = 'Ravindra' WHERE participant_id = ?",
+                new Object[]{payer(goa, "Ravi")});
+        assertEquals(Arrays.asList((int) dinners), ids(db.searchExpenses("ravind", 10, 0)));
+        assertEquals("Ravindra", db.searchExpenses("ravind", 10, 0).get(0).paidBy);
+
+        db.deleteExpense((int) dinners);
+        db.getWritableDatabase().execSQL("UPDATE expenses SET description = 'Airport cab' WHERE expense_id = ?",
+                new Object[]{taxi});
+        assertEquals(Arrays.asList((int) dinner), ids(db.searchExpenses("dinner", 10, 0)));
+        assertEquals(Arrays.asList((int) taxi), ids(db.searchExpenses("airp", 10, 0)));
+    }
+
+    private static List<Integer> ids(List<Expense> expenses) {
+        List<Integer> ids = new ArrayList<>();
+        for (Expense expense : expenses) {
+            ids.add(expense.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void aggregateCache_evictsLeastRecentlyUsedTrips() {
+        int first = (int) db.addTrip("Trip 0", "01/06/2025", "", Arrays.asList("Asha"));
+        db.getSettlement(first);
+        for (int i = 1; i <= 40; i++) {
+            db.getSettlement((int) db.addTrip("Trip " + i, "01/06/2025", "", Arrays.asList("Asha")));
+        }
+
+        long misses = db.getAggregateCache().misses();
+        db.getSettlement(first);
+        assertEquals(misses + 1, db.getAggregateCache().misses());
+        assertTrue(db.getAggregateCache().evictions() > 0);
+    }
+
+    // Cached reads against the same values computed straight from the expenses table
+    private void assertMatchesSql(int tripId) {
+        SQLiteDatabase database = db.getReadableDatabase();
+        Cursor cursor = database.rawQuery("SELECT IFNULL(SUM(amount_minor), 0), COUNT(*), MAX(expense_time), " +
+                "IFNULL(SUM(CASE WHEN self_paid = 0 THEN amount_minor END), 0) " +
+                "FROM expenses WHERE trip_id = ?", new String[]{String.valueOf(tripId)});
+        cursor.moveToFirst();
+        long total = cursor.getLong(0);
+        int count = cursor.getInt(1);
+        String lastDate = cursor.isNull(2) ? null : DayBuckets.format(DayBuckets.dayOf(cursor.getLong(2)));
+        long shared = cursor.getLong(3);
+        cursor.close();
+
+        Settlement settlement = db.getSettlement(tripId);
+        assertEquals(total, db.getTripTotalExpense(tripId));
+        assertEquals(count, db.getTripExpenseCount(tripId));
+        assertEquals(lastDate, db.getLastExpenseDate(tripId));
+        assertEquals(total, settlement.total);
+        assertEquals(shared, settlement.sharedTotal);
+
+        long balanceSum = 0;
+        for (int i = 0; i < settlement.participants.length; i++) {
+            Cursor paid = database.rawQuery("SELECT IFNULL(SUM(e.amount_minor), 0) FROM expenses e " +
+                    "JOIN participants p ON p.participant_id = e.paid_by_id WHERE e.trip_id = ? AND e.self_paid = 0 " +
+                    "AND p.name = ?", new String[]{String.valueOf(tripId), settlement.participants[i]});
+            paid.moveToFirst();
+            assertEquals(paid.getLong(0), settlement.paid[i]);
+            paid.close();
+            Cursor owed = database.rawQuery("SELECT IFNULL(SUM(s.owed_minor), 0) FROM expense_splits s " +
+                    "JOIN participants p ON p.participant_id = s.participant_id WHERE s.trip_id = ? AND p.name = ?",
+                    new String[]{String.valueOf(tripId), settlement.participants[i]});
+            owed.moveToFirst();
+            assertEquals(owed.getLong(0), settlement.owed[i]);
+            owed.close();
+            balanceSum += settlement.balances[i];
+        }
+        assertEquals(0, balanceSum);
+    }
+
+    @Test
+    public void metrics_countQueriesRowsAndConnections() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        boolean wasEnabled = metrics.isEnabled();
+        metrics.reset();
+        metrics.setEnabled(true);
+        try {
+            int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha", "Meera", "Ravi"));
+            long asha = payer(tripId, "Asha");
+            db.addExpense(tripId, asha, false, 900, "Food", "Dinner", 0);
+            db.addExpense(tripId, asha, true, 300, "Travel", "Auto", 0);
+
+            // A cache miss reads the 3 participants, 2 payer groups, no split rows and the latest time
+            db.getSettlement(tripId);
+            MetricsRegistry.Operation settlement = metrics.getOperation("db.getSettlement");
+            assertEquals(1, settlement.calls());
+            assertEquals(4, settlement.queries());
+            assertEquals(6, settlement.rows());
+            // A hit reads nothing
+            db.getSettlement(tripId);
+            assertEquals(2, settlement.calls());
+            assertEquals(4, settlement.queries());
+
+            MetricsRegistry.Operation participants = metrics.getOperation("db.getParticipants");
+            assertEquals(2, participants.calls());
+            assertEquals(2, participants.queries());
+            assertEquals(6, participants.rows());
+            assertEquals(2, metrics.getOperation("db.addExpense").calls());
+            assertEquals(5, metrics.counter("db.queries"));
+            assertEquals(9, metrics.counter("db.rows"));
+
+            db.close();
+            db.getTripParticipants(tripId);
+            assertEquals(2, metrics.counter("db.connection.opens"));
+            assertEquals(1, metrics.counter("db.connection.closes"));
+        } finally {
+            metrics.setEnabled(wasEnabled);
+            metrics.reset();
+        }
+    }
+
+    @Test
+    public void cachedStatements_readAndWriteAcrossReopen() {
+        int tripId = (int) db.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha", "Ravi"));
+        // No trip_summary row yet: the scalar queries still return one row
+        assertEquals(0, db.getTripExpenseCount(tripId));
+        assertEquals(0, db.getTripTotalExpense(tripId));
+        assertNull(db.getLastExpenseDate(tripId));
+
+        long asha = payer(tripId, "Asha");
+        Calendar day = Calendar.getInstance();
+        day.set(2025, Calendar.JUNE, 2, 12, 0, 0);
+        db.addExpense(tripId, asha, false, 900, "Food", null, day.getTimeInMillis());
+        int selfPaid = (int) db.addExpense(tripId, asha, true, 300, null, "Auto", day.getTimeInMillis() + 1);
+
+        // Statements compiled on the closed connection are dropped, not reused
+        db.close();
+        assertEquals(2, db.getTripExpenseCount(tripId));
+        assertEquals(1200, db.getTripTotalExpense(tripId));
+        assertEquals("02/06/2025", db.getLastExpenseDate(tripId));
+
+        db.deleteExpense(selfPaid);
+        db.updateTripStatus(tripId, "COMPLETED");
+        assertEquals(900, db.getTripTotalExpense(tripId));
+        assertEquals("COMPLETED", db.getTripById(tripId).status);
+        Expense food = db.getTripExpenses(tripId).get(0);
+        assertEquals(asha, food.paidById);
+        assertNull(food.description);
+
+        db.deleteTrip(tripId);
+        assertNull(db.getTripById(tripId));
+        assertEquals(0, db.getTripExpenseCount(tripId));
+    }
+
+    @Test
+    public void inMemoryStore_readsTheSameAfterRandomWrites() {
+        TripStore memory = new InMemoryTripStore();
+        TripStore[] stores = {db, memory};
+        List<String> members = Arrays.asList("Ravi", "Asha", "Meera");
+        int[][] trips = new int[2][];
+        for (int s = 0; s < stores.length; s++) {
+            trips[s] = new int[]{
+                    (int) stores[s].addTrip("Coorg", "01/06/2025", "", members),
+                    (int) stores[s].addTrip("Hampi", "01/06/2025", "", members)};
+        }
+        Random random = new Random(9);
+        List<int[]> expenseIds = new ArrayList<>(); // per store
+
+        for (int step = 0; step < 300; step++) {
+            if (expenseIds.isEmpty() || random.nextInt(4) > 0) {
+                int trip = random.nextInt(2);
+                String payer = members.get(random.nextInt(members.size()));
+                boolean selfPaid = random.nextInt(5) == 0;
+                boolean split = !selfPaid && random.nextInt(3) == 0;
+                String other = members.get(random.nextInt(members.size()));
+                long[] shares = payer.equals(other) ? new long[]{2} : new long[]{1, 1 + random.nextInt(3)};
+                long amount = 1 + random.nextInt(100_000);
+                long time = 1_700_000_000_000L + random.nextInt(1_000_000) * 1000L;
+                int[] ids = new int[stores.length];
+                for (int s = 0; s < stores.length; s++) {
+                    long paidBy = participantId(stores[s], trips[s][trip], payer);
+                    if (split) {
+                        long[] splitIds = shares.length == 1 ? new long[]{paidBy}
+                                : new long[]{paidBy, participantId(stores[s], trips[s][trip], other)};
+                        ids[s] = (int) stores[s].addSplitExpense(trips[s][trip], paidBy, amount, "Food",
+                                "Step " + step, time, splitIds, shares);
+                    } else {
+                        ids[s] = (int) stores[s].addExpense(trips[s][trip], paidBy, selfPaid, amount, "Food",
+                                "Step " + step, time);
+                    }
+                }
+                expenseIds.add(ids);
+            } else {
+                int[] ids = expenseIds.remove(random.nextInt(expenseIds.size()));
+                for (int s = 0; s < stores.length; s++) {
+                    stores[s].deleteExpense(ids[s]);
+                }
+            }
+        }
+
+        for (int trip = 0; trip < 2; trip++) {
+            int dbTrip = trips[0][trip];
+            int memoryTrip = trips[1][trip];
+            assertEquals(db.getTripTotalExpense(dbTrip), memory.getTripTotalExpense(memoryTrip));
+            assertEquals(db.getTripExpenseCount(dbTrip), memory.getTripExpenseCount(memoryTrip));
+            assertEquals(db.getLastExpenseDate(dbTrip), memory.getLastExpenseDate(memoryTrip));
+            assertEquals(db.getDayWiseExpenses(dbTrip), memory.getDayWiseExpenses(memoryTrip));
+            assertEquals(db.getTripById(dbTrip).endDate, memory.getTripById(memoryTrip).endDate);
+
+            Settlement expected = db.getSettlement(dbTrip);
+            Settlement actual = memory.getSettlement(memoryTrip);
+            assertArrayEquals(expected.participants, actual.participants);
+            assertArrayEquals(expected.paid, actual.paid);
+            assertArrayEquals(expected.owed, actual.owed);
+            assertArrayEquals(expected.balances, actual.balances);
+
+            List<Expense> dbExpenses = db.getTripExpenses(dbTrip);
+            List<Expense> memoryExpenses = memory.getTripExpenses(memoryTrip);
+            assertEquals(dbExpenses.size(), memoryExpenses.size());
+            for (int i = 0; i < dbExpenses.size(); i++) {
+                assertEquals(dbExpenses.get(i).description, memoryExpenses.get(i).description);
+                assertEquals(dbExpenses.get(i).paidBy, memoryExpenses.get(i).paidBy);
+            }
+        }
+    }
+
+    private static long participantId(TripStore store, int tripId, String name) {
+        for (Participant participant : store.getParticipants(tripId)) {
+            if (participant.name.equals(name)) {
+                return participant.id;
+            }
+        }
+        throw new AssertionError(name + " is not on trip " + tripId);
+    }
+
+    @Test
+    public void tripParticipants_areCoveredByParticipantIndex() {
+        String plan = queryPlan("SELECT name FROM participants WHERE trip_id = ? ORDER BY name", "1");
+        assertTrue(plan, plan.contains("COVERING INDEX idx_participants_trip"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private long payer(int tripId, String name) {
+        for (Participant participant : db.getParticipants(tripId)) {
+            if (participant.name.equals(name)) {
+                return participant.id;
+            }
+        }
+        throw new AssertionError(name + " is not on trip " + tripId);
+    }
+
+    private String queryPlan(String sql, String... args) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        int detail = cursor.getColumnIndexOrThrow("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detail)).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+
+    private boolean indexExists(String name) {
+        Cursor cursor = db.getReadableDatabase().rawQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = ?", new String[]{name});
+        boolean exists = cursor.moveToFirst();
+        cursor.close();
+        return exists;
+    }
+}
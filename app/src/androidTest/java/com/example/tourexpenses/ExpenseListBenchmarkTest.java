@@ -0,0 +1,249 @@
+package com.example.tourexpenses;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls TripDetailActivity through a trip with every day expanded and logs view inflations and
+ * frame times under the "ListBenchmark" tag, along with the time from opening the trip to its first
+ * frame. The baseline runs the same scroll with a copy of the
+ * nested-container adapter the flat list replaced, so both sets of numbers are measured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExpenseListBenchmarkTest {
+
+    private static final String TAG = "ListBenchmark";
+    private static final int DAYS = 30;
+    private static final int EXPENSES_PER_DAY = 40;
+    private static final int SCROLL_STEPS = 300;
+    private static final int SCROLL_PIXELS = 250;
+    private static final int LAUNCHES = 10;
+
+    private Instrumentation instrumentation;
+    private DatabaseHelper db;
+    private int tripId;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        db = DatabaseHelper.getInstance(context);
+        tripId = (int) db.addTrip("List benchmark", "01/03/2025", "", Arrays.asList("Asha", "Meera", "Ravi"));
+
+        List<Participant> payers = db.getParticipants(tripId);
+        SQLiteDatabase database = db.getWritableDatabase();
+        Calendar cal = Calendar.getInstance();
+        database.beginTransaction();
+        try {
+            for (int d = 0; d < DAYS; d++) {
+                for (int e = 0; e < EXPENSES_PER_DAY; e++) {
+                    cal.set(2025, Calendar.MARCH, 1 + d, 8 + e / 4, (e % 4) * 15, 0);
+                    db.addExpense(tripId, payers.get(e % 3 == 0 ? 0 : 2).id, false, 1500 + e * 50, "Food",
+                            "Expense " + e, cal.getTimeInMillis());
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.deleteTrip(tripId);
+    }
+
+    @Test
+    public void scrollExpandedDays_recyclesExpenseRows() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.setEnabled(true);
+        metrics.reset();
+        Set<Integer> expandedDays = new HashSet<>();
+        FrameStats frames = scroll(list -> expandVisibleDays(list, expandedDays));
+
+        long headerInflations = metrics.counter("ui.expenseList.headerInflations");
+        long headerBinds = metrics.counter("ui.expenseList.headerBinds");
+        long rowInflations = metrics.counter("ui.expenseList.rowInflations");
+        long rowBinds = metrics.counter("ui.expenseList.rowBinds");
+        Log.i(TAG, "flat: header inflations " + headerInflations + ", binds " + headerBinds);
+        Log.i(TAG, "flat: expense row inflations " + rowInflations + ", binds " + rowBinds);
+        Log.i(TAG, "flat: frames while scrolling: " + frames);
+
+        // Rows are recycled: inflations stay around a screenful while binds grow with the scroll
+        assertTrue("row binds " + rowBinds, rowBinds > 3 * rowInflations);
+        assertTrue("row inflations " + rowInflations, rowInflations < 100);
+    }
+
+    @Test
+    public void scrollExpandedDays_nestedContainerBaseline() {
+        List<Expense> expenses = db.getTripExpensesPage(tripId, Long.MAX_VALUE, Integer.MAX_VALUE, DAYS * EXPENSES_PER_DAY);
+        List<DateGroup> groups = DayBuckets.groupByDay(expenses,
+                db.getDaySummaries(tripId, expenses.get(expenses.size() - 1).day, expenses.get(0).day));
+        NestedDayAdapter nested = new NestedDayAdapter(groups);
+        boolean[] swapped = new boolean[1];
+        FrameStats frames = scroll(list -> {
+            if (!swapped[0]) {
+                list.setAdapter(nested);
+                swapped[0] = true;
+            }
+        });
+
+        Log.i(TAG, "nested: header inflations " + nested.headerInflations + ", binds " + nested.headerBinds);
+        Log.i(TAG, "nested: expense row inflations " + nested.rowInflations);
+        Log.i(TAG, "nested: frames while scrolling: " + frames);
+        assertTrue(nested.headerBinds > 0);
+    }
+
+    @Test
+    public void openTrip_timeToFirstFrame() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.setEnabled(true);
+        metrics.reset();
+        for (int run = 0; run < LAUNCHES; run++) {
+            try (ActivityScenario<TripDetailActivity> scenario = ActivityScenario.launch(tripIntent())) {
+                instrumentation.waitForIdleSync();
+            }
+        }
+
+        // onCreate to the first frame drawn with the first page of expenses
+        MetricsRegistry.Operation firstFrame = metrics.getOperation("ui.tripDetail.firstFrame");
+        assertTrue(firstFrame != null && firstFrame.calls() == LAUNCHES);
+        LatencyHistogram latency = firstFrame.latency();
+        Log.i(TAG, String.format(Locale.US, "time to first frame over %d launches: p50 %.1f ms, max %.1f ms",
+                LAUNCHES, latency.valueAtPercentile(50) / 1e6, latency.max() / 1e6));
+    }
+
+    private Intent tripIntent() {
+        return new Intent(instrumentation.getTargetContext(), TripDetailActivity.class)
+                .putExtra("TRIP_ID", tripId)
+                .putExtra("TRIP_NAME", "List benchmark")
+                .putExtra("TRIP_STATUS", "ONGOING");
+    }
+
+    // Opens the trip and scrolls it, running beforeStep on the main thread before each step
+    private FrameStats scroll(Consumer<RecyclerView> beforeStep) {
+        FrameStats frames = new FrameStats();
+        try (ActivityScenario<TripDetailActivity> scenario = ActivityScenario.launch(tripIntent())) {
+            instrumentation.waitForIdleSync();
+            instrumentation.runOnMainSync(frames::start);
+            for (int step = 0; step < SCROLL_STEPS; step++) {
+                scenario.onActivity(activity -> {
+                    RecyclerView list = activity.findViewById(R.id.recyclerExpenses);
+                    beforeStep.accept(list);
+                    list.scrollBy(0, SCROLL_PIXELS);
+                });
+                instrumentation.waitForIdleSync();
+            }
+            instrumentation.runOnMainSync(frames::stop);
+        }
+        return frames;
+    }
+
+    // Same as tapping every collapsed day header on screen. Expanded days are tracked here, since
+    // the adapter's rows lag behind a toggle while its diff runs.
+    private void expandVisibleDays(RecyclerView list, Set<Integer> expandedDays) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) list.getLayoutManager();
+        TripDetailActivity.ExpenseListAdapter adapter = (TripDetailActivity.ExpenseListAdapter) list.getAdapter();
+        List<Object> rows = adapter.getCurrentList();
+        // Bottom up, so expanding a day doesn't shift the headers still to visit
+        for (int position = layoutManager.findLastVisibleItemPosition();
+             position >= 0 && position >= layoutManager.findFirstVisibleItemPosition(); position--) {
+            Object row = rows.get(position);
+            if (row instanceof ListDiffs.DayHeader && expandedDays.add(((ListDiffs.DayHeader) row).day)) {
+                adapter.toggle(position);
+            }
+        }
+    }
+
+    // The nested adapter the flat list replaced: every header bind inflates a fresh row for each
+    // of the day's expenses into a container under the header. All days are expanded.
+    private static class NestedDayAdapter extends RecyclerView.Adapter<NestedDayAdapter.Holder> {
+
+        private final List<DateGroup> groups;
+        int headerInflations;
+        int headerBinds;
+        int rowInflations;
+
+        NestedDayAdapter(List<DateGroup> groups) {
+            this.groups = groups;
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            headerInflations++;
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_date_group, parent, false);
+            // The old layout's expensesContainer, added back under the header
+            LinearLayout container = new LinearLayout(parent.getContext());
+            container.setOrientation(LinearLayout.VERTICAL);
+            ((ViewGroup) ((ViewGroup) view).getChildAt(0)).addView(container);
+            return new Holder(view, container);
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            headerBinds++;
+            DateGroup group = groups.get(position);
+            holder.tvDate.setText(DayBuckets.format(group.day));
+            holder.tvDateTotal.setText(Money.format(group.totalPaise));
+
+            holder.container.removeAllViews();
+            LayoutInflater inflater = LayoutInflater.from(holder.itemView.getContext());
+            for (Expense expense : group.expenses) {
+                rowInflations++;
+                View row = inflater.inflate(R.layout.item_expense_compact, holder.container, false);
+                ((TextView) row.findViewById(R.id.tvDescription)).setText(expense.description);
+                ((TextView) row.findViewById(R.id.tvCategory)).setText(expense.category);
+                ((TextView) row.findViewById(R.id.tvAmount)).setText(Money.format(expense.amountPaise));
+                ((TextView) row.findViewById(R.id.tvPaidBy)).setText("• Paid by " + expense.paidBy);
+                holder.container.addView(row);
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return groups.size();
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+            final TextView tvDate;
+            final TextView tvDateTotal;
+            final LinearLayout container;
+
+            Holder(View itemView, LinearLayout container) {
+                super(itemView);
+                this.container = container;
+                tvDate = itemView.findViewById(R.id.tvDate);
+                tvDateTotal = itemView.findViewById(R.id.tvDateTotal);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.tourexpenses;
+
+import android.view.Choreographer;
+
+import java.util.Locale;
+
+/**
+ * Frame interval counter for UI benchmarks. Start and stop it on the main thread.
+ */
+class FrameStats implements Choreographer.FrameCallback {
+
+    // Anything slower than one 60 Hz frame, with a little slack for vsync jitter
+    private static final long SLOW_FRAME_NANOS = 17_000_000L;
+
+    private long lastFrameNanos;
+    private boolean running;
+    int frames;
+    int slowFrames;
+    long totalNanos;
+    long maxNanos;
+
+    void start() {
+        running = true;
+        lastFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop() {
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        if (lastFrameNanos != 0) {
+            long interval = frameTimeNanos - lastFrameNanos;
+            frames++;
+            totalNanos += interval;
+            maxNanos = Math.max(maxNanos, interval);
+            if (interval > SLOW_FRAME_NANOS) {
+                slowFrames++;
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d frames, mean %.2f ms, max %.2f ms, %d slower than 17 ms",
+                frames,
+                frames == 0 ? 0 : totalNanos / (double) frames / 1_000_000.0,
+                maxNanos / 1_000_000.0,
+                slowFrames);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Exports a database, rebuilds a second one from the CSV and checks both export identically.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TripExporterTest {
+
+    private static final String SOURCE_DB = "export-source.db";
+    private static final String COPY_DB = "export-copy.db";
+
+    private Context context;
+    private DatabaseHelper source;
+    private DatabaseHelper copy;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(COPY_DB);
+        source = new DatabaseHelper(context, SOURCE_DB);
+        copy = new DatabaseHelper(context, COPY_DB);
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        copy.close();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(COPY_DB);
+    }
+
+    @Test
+    public void csvExport_roundTripsThroughImport() throws IOException {
+        int goa = (int) source.addTrip("Goa, \"North\"", "01/01/2025", "", Arrays.asList("Asha", "Ravi"));
+        int leh = (int) source.addTrip("लेह 🏔", "10/02/2025", "20/02/2025", Arrays.asList("Meera"));
+        source.updateTripStatus(leh, "COMPLETED");
+        List<Participant> goaPeople = source.getParticipants(goa);
+        long time = 1_735_700_000_000L;
+        source.addExpense(goa, goaPeople.get(0).id, false, 120050, "Hotel", "Room, two nights", time);
+        source.addExpense(goa, 0, true, 999, "", null, time + 60_000);
+        source.addExpense(goa, goaPeople.get(1).id, false, 45000, "Food", "Dinner\n\"thali\"\ttip", time + 120_000);
+        source.addExpense(leh, source.getParticipants(leh).get(0).id, false, 1, "Fuel", "", time + 86_400_000);
+
+        byte[] exported = export(source, TripExporter.Format.CSV);
+        rebuild(parseCsv(new String(exported, StandardCharsets.UTF_8)));
+        assertArrayEquals(exported, export(copy, TripExporter.Format.CSV));
+        assertEquals(source.getTripTotalExpense(goa), copy.getTripTotalExpense(goa));
+    }
+
+    @Test
+    public void jsonLinesExport_matchesCsvExport() throws IOException, JSONException {
+        int goa = (int) source.addTrip("Goa", "01/01/2025", "", Arrays.asList("Asha", "Ravi"));
+        List<Participant> people = source.getParticipants(goa);
+        source.addExpense(goa, people.get(0).id, false, 120050, "Hotel", "Room \\ \"deluxe\"\n", 1_735_700_000_000L);
+        source.addExpense(goa, people.get(1).id, true, 300, "Food", null, 1_735_700_060_000L);
+
+        List<List<String>> csv = parseCsv(new String(export(source, TripExporter.Format.CSV), StandardCharsets.UTF_8));
+        String[] lines = new String(export(source, TripExporter.Format.JSON_LINES), StandardCharsets.UTF_8).split("\n");
+        List<String> columns = null;
+        int line = 0;
+        for (List<String> record : csv) {
+            if (record.get(0).startsWith("#")) {
+                columns = record;
+                continue;
+            }
+            JSONObject json = new JSONObject(lines[line++]);
+            assertEquals(record.get(0), json.getString("table"));
+            for (int i = 1; i < record.size(); i++) {
+                String column = columns.get(i);
+                if (record.get(i) == null) {
+                    assertNull(column, json.isNull(column) ? null : json.get(column));
+                } else {
+                    assertEquals(column, record.get(i), json.get(column).toString());
+                }
+            }
+        }
+        assertEquals(lines.length, line);
+    }
+
+    private byte[] export(DatabaseHelper db, TripExporter.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        db.exportData(out, format);
+        return out.toByteArray();
+    }
+
+    // Replays the records through the app's own write paths, in id order so ids come out the same
+    private void rebuild(List<List<String>> records) {
+        for (List<String> trip : records) {
+            if (!trip.get(0).equals("trips")) {
+                continue;
+            }
+            List<String> names = new ArrayList<>();
+            for (List<String> participant : records) {
+                if (participant.get(0).equals("participants") && participant.get(2).equals(trip.get(1))) {
+                    names.add(participant.get(3));
+                }
+            }
+            int id = (int) copy.addTrip(trip.get(2), trip.get(3), trip.get(4), names);
+            copy.updateTripStatus(id, trip.get(5));
+        }
+
+        // Consecutive expenses of one trip go in as one import
+        List<Expense> run = new ArrayList<>();
+        int runTrip = -1;
+        for (List<String> record : records) {
+            if (!record.get(0).equals("expenses")) {
+                continue;
+            }
+            int tripId = Integer.parseInt(record.get(2));
+            if (tripId != runTrip && !run.isEmpty()) {
+                copy.importExpenses(runTrip, run.iterator(), true, null);
+                run.clear();
+            }
+            runTrip = tripId;
+            Expense expense = new Expense();
+            expense.paidById = record.get(3) == null ? 0 : Long.parseLong(record.get(3));
+            expense.selfPaid = record.get(4).equals("1");
+            expense.amountPaise = Long.parseLong(record.get(5));
+            expense.category = record.get(6);
+            expense.description = record.get(7);
+            expense.time = Long.parseLong(record.get(8));
+            run.add(expense);
+        }
+        copy.importExpenses(runTrip, run.iterator(), true, null);
+    }
+
+    // Records with the table name first; an unquoted empty field is NULL
+    private static List<List<String>> parseCsv(String text) {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',' || c == '\n') {
+                record.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+                if (c == '\n') {
+                    records.add(record);
+                    record = new ArrayList<>();
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return records;
+    }
+}
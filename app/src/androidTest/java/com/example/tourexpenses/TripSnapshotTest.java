@@ -0,0 +1,131 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Snapshots a database, restores it into another and checks both export identically.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TripSnapshotTest {
+
+    private static final String SOURCE_DB = "snapshot-source.db";
+    private static final String COPY_DB = "snapshot-copy.db";
+
+    private Context context;
+    private DatabaseHelper source;
+    private DatabaseHelper copy;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(COPY_DB);
+        source = new DatabaseHelper(context, SOURCE_DB);
+        copy = new DatabaseHelper(context, COPY_DB);
+
+        int goa = (int) source.addTrip("Goa", "01/01/2025", "", Arrays.asList("Asha", "Ravi"));
+        int leh = (int) source.addTrip("लेह 🏔", "10/02/2025", "20/02/2025", Arrays.asList("Meera"));
+        source.updateTripStatus(leh, "COMPLETED");
+        long asha = source.getParticipants(goa).get(0).id;
+        long meera = source.getParticipants(leh).get(0).id;
+        long time = 1_735_700_000_000L;
+        // More than one block, with deletes leaving gaps in the ids
+        for (int i = 0; i < TripSnapshot.BLOCK_ROWS + 100; i++) {
+            long id = source.addExpense(i % 3 == 0 ? leh : goa, i % 3 == 0 ? meera : asha, i % 5 == 0, 100 + i * 7,
+                    i % 4 == 0 ? null : "Food", i % 6 == 0 ? null : "Item " + i, time + i * 60_000L);
+            if (i % 11 == 0) {
+                source.deleteExpense((int) id);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        copy.close();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(COPY_DB);
+    }
+
+    @Test
+    public void restore_reproducesSourceDatabase() throws IOException {
+        for (boolean compress : new boolean[]{false, true}) {
+            copy.addTrip("Replaced by the restore", "01/01/2024", "", Arrays.asList("Nobody"));
+            byte[] snapshot = snapshot(source, compress);
+            assertEquals(2 + 3 + countExpenses(source),
+                    copy.restoreSnapshot(Channels.newChannel(new ByteArrayInputStream(snapshot))));
+
+            assertArrayEquals(export(source), export(copy));
+            for (Trip trip : source.getAllTrips()) {
+                Trip restored = copy.getTripById(trip.id);
+                assertEquals(trip.totalPaise, restored.totalPaise);
+                assertEquals(trip.expenseCount, restored.expenseCount);
+                assertEquals(trip.endDate, restored.endDate);
+                assertEquals(source.getSettlement(trip.id).sharedTotal, copy.getSettlement(trip.id).sharedTotal);
+            }
+            assertEquals(source.searchExpenses("self", 10_000, 0).size(), copy.searchExpenses("self", 10_000, 0).size());
+
+            // Triggers are back: later writes still update the summary and the search index
+            long ravi = copy.getParticipants(1).get(1).id;
+            copy.addExpense(1, ravi, false, 5000, "Fuel", "Petrol", 0);
+            assertEquals(source.getTripTotalExpense(1) + 5000, copy.getTripById(1).totalPaise);
+            assertEquals(1, copy.searchExpenses("ravi", 10, 0).size());
+        }
+    }
+
+    @Test
+    public void restore_rejectsCorruptSnapshotAndKeepsCurrentData() throws IOException {
+        copy.addTrip("Kept", "01/01/2024", "", Arrays.asList("Asha"));
+        copy.addExpense(1, copy.getParticipants(1).get(0).id, false, 1234, "Food", "Tea", 0);
+        byte[] before = export(copy);
+
+        byte[] snapshot = snapshot(source, true);
+        byte[] flipped = snapshot.clone();
+        flipped[flipped.length / 2] ^= 0x01;
+        byte[] truncated = Arrays.copyOf(snapshot, snapshot.length - 10);
+        for (byte[] bad : Arrays.asList(flipped, truncated)) {
+            try {
+                copy.restoreSnapshot(Channels.newChannel(new ByteArrayInputStream(bad)));
+                fail("Corrupt snapshot was restored");
+            } catch (TripSnapshot.CorruptSnapshotException expected) {
+                // the transaction rolled back
+            }
+            assertArrayEquals(before, export(copy));
+            assertEquals(1234, copy.getTripTotalExpense(1));
+        }
+    }
+
+    private byte[] snapshot(DatabaseHelper db, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        db.writeSnapshot(Channels.newChannel(out), compress);
+        return out.toByteArray();
+    }
+
+    private byte[] export(DatabaseHelper db) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        db.exportData(out, TripExporter.Format.CSV);
+        return out.toByteArray();
+    }
+
+    private long countExpenses(DatabaseHelper db) {
+        return db.getTripExpenseCount(1) + db.getTripExpenseCount(2);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.tourexpenses;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * MetricsRegistry in the app. Debuggable builds switch it on and write it to files/metrics.txt
+ * whenever a screen pauses; read it with "adb shell run-as com.example.tourexpenses cat
+ * files/metrics.txt". Release builds leave it off.
+ *
+ * The screen loads also mark android.os.Trace sections, so they show up by name in a system trace,
+ * and each screen records the time from onCreate to the first frame drawn with its data.
+ * Debuggable builds also check DatabaseHelper's incrementally kept aggregates against a full
+ * recompute; drift shows up as db.aggregates.mismatches.
+ */
+final class AppMetrics {
+
+    static final String DUMP_FILE = "metrics.txt";
+
+    private AppMetrics() {
+    }
+
+    static void init(Context context) {
+        if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            MetricsRegistry.getInstance().setEnabled(true);
+            DatabaseHelper.getInstance(context).setVerifyAggregates(true);
+        }
+    }
+
+    // Written on the repository's thread, after the work already queued there
+    static void dump(Context context, TripRepository repository) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        if (!metrics.isEnabled()) {
+            return;
+        }
+        File file = new File(context.getFilesDir(), DUMP_FILE);
+        repository.execute(db -> {
+            try {
+                metrics.dumpTo(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return null;
+        }, null);
+    }
+
+    // A trace section on this thread that is also timed as name; end it on the same thread
+    static long beginSection(String name) {
+        Trace.beginSection(name);
+        return MetricsRegistry.getInstance().startTimer();
+    }
+
+    static void endSection(String name, long start) {
+        MetricsRegistry.getInstance().record(name, start);
+        Trace.endSection();
+    }
+
+    // Records name from start to the next frame the window draws, then reports the activity fully
+    // drawn; call once, right after the first data has been handed to the views
+    static void recordFirstFrame(Activity activity, String name, long start) {
+        View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                MetricsRegistry.getInstance().record(name, start);
+                activity.reportFullyDrawn();
+                return true;
+            }
+        });
+    }
+}
@@ -1,23 +1,33 @@
 package com.example.tourexpenses;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import java.text.SimpleDateFormat;
+import android.database.sqlite.SQLiteStatement;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
 
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements TripStore {
 
     private static final String DATABASE_NAME = "TourExpenses.db";
-    private static final int DATABASE_VERSION = 5;
+    private static final int DATABASE_VERSION = 14;
+    // Oldest schema that can be migrated in place; anything older is rebuilt
+    private static final int BASE_SCHEMA_VERSION = 5;
+    // Snapshots before v13 name payers as text, which this schema no longer stores
+    private static final int OLDEST_SNAPSHOT_VERSION = 13;
 
     // Trips Table
     private static final String TABLE_TRIPS = "trips";
@@ -37,18 +47,440 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TABLE_EXPENSES = "expenses";
     private static final String EXPENSE_ID = "expense_id";
     private static final String EXPENSE_TRIP_ID = "trip_id";
-    private static final String EXPENSE_PAID_BY = "paid_by";
-    private static final String EXPENSE_AMOUNT = "amount";
+    private static final String EXPENSE_PAID_BY_ID = "paid_by_id"; // participant_id, NULL when self paid
+    private static final String EXPENSE_SELF_PAID = "self_paid"; // 1 when outside the shared split
+    private static final String EXPENSE_AMOUNT = "amount_minor"; // paise, see Money
     private static final String EXPENSE_CATEGORY = "category";
     private static final String EXPENSE_DESCRIPTION = "description";
-    private static final String EXPENSE_DATE = "expense_date";
+    private static final String EXPENSE_TIME = "expense_time"; // epoch millis
+    private static final String EXPENSE_DAY = "expense_day"; // local day bucket, see DayBuckets
+    // REAL rupee column replaced by EXPENSE_AMOUNT in v7
+    private static final String LEGACY_EXPENSE_AMOUNT = "amount";
+    // "yyyy-MM-dd HH:mm:ss" local time text replaced by EXPENSE_TIME and EXPENSE_DAY in v8
+    private static final String LEGACY_EXPENSE_DATE = "expense_date";
+    // Payer name or 'SELF_PAID' text replaced by EXPENSE_PAID_BY_ID and EXPENSE_SELF_PAID in v13
+    private static final String LEGACY_EXPENSE_PAID_BY = "paid_by";
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Trip Summary Table: per-trip expense aggregates kept current by triggers on expenses
+    private static final String TABLE_TRIP_SUMMARY = "trip_summary";
+    private static final String SUMMARY_TRIP_ID = "trip_id";
+    private static final String SUMMARY_TOTAL = "total_amount"; // paise
+    private static final String SUMMARY_SHARED_TOTAL = "shared_total"; // paise, excluding self paid
+    private static final String SUMMARY_COUNT = "expense_count";
+    private static final String SUMMARY_LAST_TIME = "last_expense_time"; // epoch millis, NULL without expenses
+
+    // Expense Splits Table: per-member shares of expenses not split equally, see SplitBalanceEngine
+    private static final String TABLE_EXPENSE_SPLITS = "expense_splits";
+    private static final String SPLIT_EXPENSE_ID = "expense_id";
+    private static final String SPLIT_PARTICIPANT_ID = "participant_id";
+    private static final String SPLIT_TRIP_ID = "trip_id"; // the expense's trip, so a trip's splits are one index range
+    private static final String SPLIT_SHARES = "shares";
+    private static final String SPLIT_OWED = "owed_minor"; // paise, fixed when the split is saved
+
+    // Expense Search Table: FTS4 index over expenses, docid = expense_id, payer holds the participant name
+    private static final String TABLE_EXPENSES_FTS = "expenses_fts";
+    private static final String FTS_PAYER = "payer";
+    // What self paid expenses index and match as payer
+    private static final String SELF_PAID_TEXT = "Self Paid";
+
+    // Trips whose aggregates stay in memory; a trip screen and its settlement only ever need one
+    private static final int AGGREGATE_CACHE_TRIPS = 32;
+
+    private static DatabaseHelper instance;
+
+    private final TripAggregateCache aggregateCache = new TripAggregateCache(AGGREGATE_CACHE_TRIPS);
+    // Every public operation is a span named "db.<method>"; see MetricsRegistry
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    // Whether patched aggregates are checked against a full recompute; see getAggregates
+    private volatile boolean verifyAggregates;
+    // Compiled statements for the fixed scalar queries and writes, keyed by their SQL; see statement()
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+    private SQLiteDatabase statementsDb;
+
+    // One helper per process so the connection, page cache and statement cache stay warm
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    // Lets tests and benchmarks work against a throwaway database file
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    // Runs for the primary connection only, so these per-connection pragmas are not pool-wide.
+    // Writes and reads inside a transaction get them; plain reads mostly go to the extra read-only
+    // connections Android opens for WAL, which keep SQLite's default page cache and temp store.
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA cache_size = -8000"); // 8 MB page cache
+        db.execSQL("PRAGMA synchronous = NORMAL"); // safe with WAL, avoids an fsync per commit
+        db.execSQL("PRAGMA temp_store = MEMORY"); // GROUP BY / ORDER BY temp b-trees stay off disk
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        metrics.increment("db.connection.opens");
+    }
+
+    @Override
+    public synchronized void close() {
+        synchronized (statements) {
+            closeStatements();
+            statementsDb = null;
+        }
+        super.close();
+        metrics.increment("db.connection.closes");
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
+        createBaseSchema(db);
+        applyMigrations(db, BASE_SCHEMA_VERSION, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < BASE_SCHEMA_VERSION) {
+            // Pre-release schemas have no migration path
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_PARTICIPANTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRIPS);
+            onCreate(db);
+            return;
+        }
+        applyMigrations(db, oldVersion, newVersion);
+    }
+
+    // Runs every migration step after fromVersion up to toVersion, in order.
+    // SQLiteOpenHelper already wraps onCreate/onUpgrade in a transaction.
+    private void applyMigrations(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            switch (version) {
+                case 6:
+                    migrateToV6(db);
+                    break;
+                case 7:
+                    migrateToV7(db);
+                    break;
+                case 8:
+                    migrateToV8(db);
+                    break;
+                case 9:
+                    migrateToV9(db);
+                    break;
+                case 10:
+                    migrateToV10(db);
+                    break;
+                case 11:
+                    migrateToV11(db);
+                    break;
+                case 12:
+                    migrateToV12(db);
+                    break;
+                case 13:
+                    migrateToV13(db);
+                    break;
+                case 14:
+                    migrateToV14(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to database version " + version);
+            }
+        }
+    }
+
+    // v6: covering indexes for the trip/date and trip/payer access patterns
+    private void migrateToV6(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_expenses_trip_date ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_DATE + ", " + LEGACY_EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_expenses_trip_payer ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " + LEGACY_EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_participants_trip ON " + TABLE_PARTICIPANTS + " (" +
+                PARTICIPANT_TRIP_ID + ", " + PARTICIPANT_NAME + ")");
+    }
+
+    // v7: amounts move from REAL rupees to INTEGER paise. SQLite cannot change a column type,
+    // so the table is rebuilt and its indexes recreated on the new column.
+    private void migrateToV7(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE expenses_v7 (" +
+                EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                EXPENSE_TRIP_ID + " INTEGER, " +
+                LEGACY_EXPENSE_PAID_BY + " TEXT NOT NULL, " +
+                EXPENSE_AMOUNT + " INTEGER NOT NULL, " +
+                EXPENSE_CATEGORY + " TEXT, " +
+                EXPENSE_DESCRIPTION + " TEXT, " +
+                LEGACY_EXPENSE_DATE + " TEXT, " +
+                "FOREIGN KEY(" + EXPENSE_TRIP_ID + ") REFERENCES " + TABLE_TRIPS + "(" + TRIP_ID + "))");
+        db.execSQL("INSERT INTO expenses_v7 (" + EXPENSE_ID + ", " + EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " +
+                EXPENSE_AMOUNT + ", " + EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " + LEGACY_EXPENSE_DATE + ")" +
+                " SELECT " + EXPENSE_ID + ", " + EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " +
+                "CAST(ROUND(" + LEGACY_EXPENSE_AMOUNT + " * 100) AS INTEGER), " +
+                EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " + LEGACY_EXPENSE_DATE + " FROM " + TABLE_EXPENSES);
+        db.execSQL("DROP TABLE " + TABLE_EXPENSES);
+        db.execSQL("ALTER TABLE expenses_v7 RENAME TO " + TABLE_EXPENSES);
+        db.execSQL("CREATE INDEX idx_expenses_trip_date ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_DATE + ", " + EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX idx_expenses_trip_payer ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " + EXPENSE_AMOUNT + ")");
+    }
+
+    // v8: the text timestamp becomes epoch millis plus a precomputed local day bucket. SQLite's
+    // 'utc' modifier reads the stored text as device local time, matching how it was written.
+    private void migrateToV8(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE expenses_v8 (" +
+                EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                EXPENSE_TRIP_ID + " INTEGER, " +
+                LEGACY_EXPENSE_PAID_BY + " TEXT NOT NULL, " +
+                EXPENSE_AMOUNT + " INTEGER NOT NULL, " +
+                EXPENSE_CATEGORY + " TEXT, " +
+                EXPENSE_DESCRIPTION + " TEXT, " +
+                EXPENSE_TIME + " INTEGER NOT NULL, " +
+                EXPENSE_DAY + " INTEGER NOT NULL, " +
+                "FOREIGN KEY(" + EXPENSE_TRIP_ID + ") REFERENCES " + TABLE_TRIPS + "(" + TRIP_ID + "))");
+        db.execSQL("INSERT INTO expenses_v8 (" + EXPENSE_ID + ", " + EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " +
+                EXPENSE_AMOUNT + ", " + EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " +
+                EXPENSE_TIME + ", " + EXPENSE_DAY + ")" +
+                " SELECT " + EXPENSE_ID + ", " + EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " +
+                EXPENSE_AMOUNT + ", " + EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " +
+                "IFNULL(CAST(strftime('%s', " + LEGACY_EXPENSE_DATE + ", 'utc') AS INTEGER) * 1000, 0), " +
+                "IFNULL(CAST(julianday(" + LEGACY_EXPENSE_DATE + ") - 2440587.5 AS INTEGER), 0)" +
+                " FROM " + TABLE_EXPENSES);
+        db.execSQL("DROP TABLE " + TABLE_EXPENSES);
+        db.execSQL("ALTER TABLE expenses_v8 RENAME TO " + TABLE_EXPENSES);
+        db.execSQL("CREATE INDEX idx_expenses_trip_time ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + EXPENSE_TIME + ", " + EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX idx_expenses_trip_day ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + EXPENSE_DAY + ", " + EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX idx_expenses_trip_payer ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + LEGACY_EXPENSE_PAID_BY + ", " + EXPENSE_AMOUNT + ")");
+    }
+
+    // v9: expense_id joins the time index so (expense_time, expense_id) keyset pages come straight
+    // off it; amount_minor stays on the end to keep the trip summary covered
+    private void migrateToV9(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS idx_expenses_trip_time");
+        db.execSQL("CREATE INDEX idx_expenses_trip_time ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + EXPENSE_TIME + ", " + EXPENSE_ID + ", " + EXPENSE_AMOUNT + ")");
+    }
+
+    // v10: status filter and per-status counts on the trip list
+    private void migrateToV10(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_trips_status ON " + TABLE_TRIPS + " (" + TRIP_STATUS + ")");
+    }
+
+    // v11: trip_summary holds each trip's totals so trip lists read one row per trip
+    private void migrateToV11(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TRIP_SUMMARY + " (" +
+                SUMMARY_TRIP_ID + " INTEGER PRIMARY KEY, " +
+                SUMMARY_TOTAL + " INTEGER NOT NULL DEFAULT 0, " +
+                SUMMARY_SHARED_TOTAL + " INTEGER NOT NULL DEFAULT 0, " +
+                SUMMARY_COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+                SUMMARY_LAST_TIME + " INTEGER)");
+        fillTripSummary(db, LEGACY_SELF_PAID_TEST);
+        createTripSummaryTriggers(db, LEGACY_SELF_PAID_TEST, LEGACY_EXPENSE_PAID_BY);
+    }
+
+    // SQL that is true for a self paid expense row, with %1$s standing for the row's alias
+    private static final String LEGACY_SELF_PAID_TEST = "%1$s." + LEGACY_EXPENSE_PAID_BY + " = 'SELF_PAID'";
+    private static final String SELF_PAID_TEST = "%1$s." + EXPENSE_SELF_PAID + " = 1";
+    private static final String PAYER_COLUMNS = EXPENSE_PAID_BY_ID + ", " + EXPENSE_SELF_PAID;
+
+    // One trip_summary row per trip, computed from expenses; the table must be empty
+    private void fillTripSummary(SQLiteDatabase db, String selfPaidTest) {
+        db.execSQL("INSERT INTO " + TABLE_TRIP_SUMMARY + " (" + SUMMARY_TRIP_ID + ", " + SUMMARY_TOTAL + ", " +
+                SUMMARY_SHARED_TOTAL + ", " + SUMMARY_COUNT + ", " + SUMMARY_LAST_TIME + ")" +
+                " SELECT t." + TRIP_ID + ", IFNULL(SUM(e." + EXPENSE_AMOUNT + "), 0), " +
+                "IFNULL(SUM(CASE WHEN NOT (" + String.format(selfPaidTest, "e") + ") THEN e." + EXPENSE_AMOUNT + " END), 0), " +
+                "COUNT(e." + EXPENSE_ID + "), MAX(e." + EXPENSE_TIME + ")" +
+                " FROM " + TABLE_TRIPS + " t LEFT JOIN " + TABLE_EXPENSES + " e ON e." + EXPENSE_TRIP_ID + " = t." + TRIP_ID +
+                " GROUP BY t." + TRIP_ID);
+    }
+
+    private static final String[] TRIP_SUMMARY_TRIGGERS = {"trg_expenses_summary_insert", "trg_expenses_summary_delete",
+            "trg_expenses_summary_update", "trg_trips_summary_insert", "trg_trips_summary_delete"};
+
+    private void dropTripSummaryTriggers(SQLiteDatabase db) {
+        for (String trigger : TRIP_SUMMARY_TRIGGERS) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+    }
+
+    // Triggers on expenses are dropped with the table, so any later rebuild of expenses calls this again.
+    // selfPaidTest and payerColumns describe how that version of expenses records the payer.
+    private void createTripSummaryTriggers(SQLiteDatabase db, String selfPaidTest, String payerColumns) {
+        String shared = "CASE WHEN NOT (" + selfPaidTest + ") THEN %1$s." + EXPENSE_AMOUNT + " ELSE 0 END";
+        String addRow = "UPDATE " + TABLE_TRIP_SUMMARY + " SET " +
+                SUMMARY_TOTAL + " = " + SUMMARY_TOTAL + " + NEW." + EXPENSE_AMOUNT + ", " +
+                SUMMARY_SHARED_TOTAL + " = " + SUMMARY_SHARED_TOTAL + " + " + String.format(shared, "NEW") + ", " +
+                SUMMARY_COUNT + " = " + SUMMARY_COUNT + " + 1, " +
+                SUMMARY_LAST_TIME + " = CASE WHEN " + SUMMARY_LAST_TIME + " IS NULL OR NEW." + EXPENSE_TIME + " > " +
+                SUMMARY_LAST_TIME + " THEN NEW." + EXPENSE_TIME + " ELSE " + SUMMARY_LAST_TIME + " END" +
+                " WHERE " + SUMMARY_TRIP_ID + " = NEW." + EXPENSE_TRIP_ID + ";";
+        // Only removing the latest expense needs the index lookup for the new latest time
+        String removeRow = "UPDATE " + TABLE_TRIP_SUMMARY + " SET " +
+                SUMMARY_TOTAL + " = " + SUMMARY_TOTAL + " - OLD." + EXPENSE_AMOUNT + ", " +
+                SUMMARY_SHARED_TOTAL + " = " + SUMMARY_SHARED_TOTAL + " - " + String.format(shared, "OLD") + ", " +
+                SUMMARY_COUNT + " = " + SUMMARY_COUNT + " - 1, " +
+                SUMMARY_LAST_TIME + " = CASE WHEN OLD." + EXPENSE_TIME + " < " + SUMMARY_LAST_TIME + " THEN " +
+                SUMMARY_LAST_TIME + " ELSE (SELECT MAX(" + EXPENSE_TIME + ") FROM " + TABLE_EXPENSES +
+                " WHERE " + EXPENSE_TRIP_ID + " = OLD." + EXPENSE_TRIP_ID + ") END" +
+                " WHERE " + SUMMARY_TRIP_ID + " = OLD." + EXPENSE_TRIP_ID + ";";
+        String ensureRow = "INSERT OR IGNORE INTO " + TABLE_TRIP_SUMMARY + " (" + SUMMARY_TRIP_ID + ") VALUES (NEW." +
+                EXPENSE_TRIP_ID + ");";
+
+        db.execSQL("CREATE TRIGGER trg_expenses_summary_insert AFTER INSERT ON " + TABLE_EXPENSES +
+                " BEGIN " + ensureRow + " " + addRow + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_summary_delete AFTER DELETE ON " + TABLE_EXPENSES +
+                " BEGIN " + removeRow + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_summary_update AFTER UPDATE OF " + EXPENSE_TRIP_ID + ", " +
+                payerColumns + ", " + EXPENSE_AMOUNT + ", " + EXPENSE_TIME + " ON " + TABLE_EXPENSES +
+                " BEGIN " + removeRow + " " + ensureRow + " " + addRow + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_trips_summary_insert AFTER INSERT ON " + TABLE_TRIPS +
+                " BEGIN INSERT OR IGNORE INTO " + TABLE_TRIP_SUMMARY + " (" + SUMMARY_TRIP_ID + ") VALUES (NEW." +
+                TRIP_ID + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_trips_summary_delete AFTER DELETE ON " + TABLE_TRIPS +
+                " BEGIN DELETE FROM " + TABLE_TRIP_SUMMARY + " WHERE " + SUMMARY_TRIP_ID + " = OLD." + TRIP_ID + "; END");
+    }
+
+    // v12: full-text index over description, category and payer. External content keeps the text
+    // in expenses only; prefix indexes on 2 and 3 characters keep short prefix queries cheap.
+    // v13 replaces the index and drops these triggers with the old expenses table.
+    private void migrateToV12(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_EXPENSES_FTS + " USING fts4(content=\"" + TABLE_EXPENSES + "\", " +
+                EXPENSE_DESCRIPTION + ", " + EXPENSE_CATEGORY + ", " + LEGACY_EXPENSE_PAID_BY + ", " +
+                "prefix=\"2,3\", tokenize=unicode61)");
+        db.execSQL("INSERT INTO " + TABLE_EXPENSES_FTS + " (" + TABLE_EXPENSES_FTS + ") VALUES ('rebuild')");
+
+        // An external content index has to drop a row's terms while the old text is still in expenses
+        String columns = EXPENSE_DESCRIPTION + ", " + EXPENSE_CATEGORY + ", " + LEGACY_EXPENSE_PAID_BY;
+        String remove = "DELETE FROM " + TABLE_EXPENSES_FTS + " WHERE docid = OLD." + EXPENSE_ID + ";";
+        String add = "INSERT INTO " + TABLE_EXPENSES_FTS + " (docid, " + columns + ") VALUES (NEW." + EXPENSE_ID +
+                ", NEW." + EXPENSE_DESCRIPTION + ", NEW." + EXPENSE_CATEGORY + ", NEW." + LEGACY_EXPENSE_PAID_BY + ");";
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_insert AFTER INSERT ON " + TABLE_EXPENSES + " BEGIN " + add + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_delete BEFORE DELETE ON " + TABLE_EXPENSES + " BEGIN " + remove + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_before_update BEFORE UPDATE OF " + columns + " ON " + TABLE_EXPENSES +
+                " BEGIN " + remove + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_after_update AFTER UPDATE OF " + columns + " ON " + TABLE_EXPENSES +
+                " BEGIN " + add + " END");
+    }
+
+    // v13: the payer becomes a participant_id plus a self paid flag, so settlement groups and joins
+    // on integers. Names are matched within the trip; a name with no participant keeps a NULL payer
+    // and still counts as shared, as it did before. The search index can no longer read the payer
+    // name from expenses, so it stores its own copy and is rebuilt.
+    private void migrateToV13(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE " + TABLE_EXPENSES_FTS);
+        db.execSQL("CREATE TABLE expenses_v13 (" +
+                EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                EXPENSE_TRIP_ID + " INTEGER, " +
+                EXPENSE_PAID_BY_ID + " INTEGER, " +
+                EXPENSE_SELF_PAID + " INTEGER NOT NULL DEFAULT 0, " +
+                EXPENSE_AMOUNT + " INTEGER NOT NULL, " +
+                EXPENSE_CATEGORY + " TEXT, " +
+                EXPENSE_DESCRIPTION + " TEXT, " +
+                EXPENSE_TIME + " INTEGER NOT NULL, " +
+                EXPENSE_DAY + " INTEGER NOT NULL, " +
+                "FOREIGN KEY(" + EXPENSE_TRIP_ID + ") REFERENCES " + TABLE_TRIPS + "(" + TRIP_ID + "), " +
+                "FOREIGN KEY(" + EXPENSE_PAID_BY_ID + ") REFERENCES " + TABLE_PARTICIPANTS + "(" + PARTICIPANT_ID + "))");
+        // idx_participants_trip turns each name lookup into an index seek
+        db.execSQL("INSERT INTO expenses_v13 (" + EXPENSE_ID + ", " + EXPENSE_TRIP_ID + ", " + EXPENSE_PAID_BY_ID + ", " +
+                EXPENSE_SELF_PAID + ", " + EXPENSE_AMOUNT + ", " + EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " +
+                EXPENSE_TIME + ", " + EXPENSE_DAY + ")" +
+                " SELECT e." + EXPENSE_ID + ", e." + EXPENSE_TRIP_ID + ", " +
+                "CASE WHEN " + String.format(LEGACY_SELF_PAID_TEST, "e") + " THEN NULL ELSE " +
+                "(SELECT MIN(p." + PARTICIPANT_ID + ") FROM " + TABLE_PARTICIPANTS + " p WHERE p." + PARTICIPANT_TRIP_ID +
+                " = e." + EXPENSE_TRIP_ID + " AND p." + PARTICIPANT_NAME + " = e." + LEGACY_EXPENSE_PAID_BY + ") END, " +
+                String.format(LEGACY_SELF_PAID_TEST, "e") + ", e." + EXPENSE_AMOUNT + ", e." + EXPENSE_CATEGORY + ", e." +
+                EXPENSE_DESCRIPTION + ", e." + EXPENSE_TIME + ", e." + EXPENSE_DAY + " FROM " + TABLE_EXPENSES + " e");
+        db.execSQL("DROP TABLE " + TABLE_EXPENSES);
+        db.execSQL("ALTER TABLE expenses_v13 RENAME TO " + TABLE_EXPENSES);
+        db.execSQL("CREATE INDEX idx_expenses_trip_time ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + EXPENSE_TIME + ", " + EXPENSE_ID + ", " + EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX idx_expenses_trip_day ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + EXPENSE_DAY + ", " + EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX idx_expenses_trip_payer ON " + TABLE_EXPENSES + " (" +
+                EXPENSE_TRIP_ID + ", " + EXPENSE_PAID_BY_ID + ", " + EXPENSE_SELF_PAID + ", " + EXPENSE_AMOUNT + ")");
+
+        // trip_summary rows are unchanged; only its triggers went with the old table
+        createTripSummaryTriggers(db, SELF_PAID_TEST, PAYER_COLUMNS);
+
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_EXPENSES_FTS + " USING fts4(" +
+                EXPENSE_DESCRIPTION + ", " + EXPENSE_CATEGORY + ", " + FTS_PAYER + ", " +
+                "prefix=\"2,3\", tokenize=unicode61)");
+        rebuildExpenseSearch(db);
+        createExpenseSearchTriggers(db);
+    }
+
+    // Payer text for the expense row aliased %1$s
+    private static final String PAYER_TEXT = "CASE WHEN " + SELF_PAID_TEST + " THEN '" + SELF_PAID_TEXT + "' ELSE " +
+            "(SELECT " + PARTICIPANT_NAME + " FROM " + TABLE_PARTICIPANTS + " WHERE " + PARTICIPANT_ID + " = %1$s." +
+            EXPENSE_PAID_BY_ID + ") END";
+
+    private static final String FTS_COLUMNS = EXPENSE_DESCRIPTION + ", " + EXPENSE_CATEGORY + ", " + FTS_PAYER;
+
+    private void rebuildExpenseSearch(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_EXPENSES_FTS);
+        db.execSQL("INSERT INTO " + TABLE_EXPENSES_FTS + " (docid, " + FTS_COLUMNS + ") SELECT e." + EXPENSE_ID + ", e." +
+                EXPENSE_DESCRIPTION + ", e." + EXPENSE_CATEGORY + ", " + String.format(PAYER_TEXT, "e") +
+                " FROM " + TABLE_EXPENSES + " e");
+    }
+
+    private static final String[] EXPENSE_SEARCH_TRIGGERS = {"trg_expenses_fts_insert", "trg_expenses_fts_delete",
+            "trg_expenses_fts_update", "trg_participants_fts_rename"};
+
+    private void dropExpenseSearchTriggers(SQLiteDatabase db) {
+        for (String trigger : EXPENSE_SEARCH_TRIGGERS) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+    }
+
+    // The index keeps its own text, so a row is rewritten from NEW alone, and renaming a
+    // participant rewrites the payer of the expenses they paid
+    private void createExpenseSearchTriggers(SQLiteDatabase db) {
+        String remove = "DELETE FROM " + TABLE_EXPENSES_FTS + " WHERE docid = OLD." + EXPENSE_ID + ";";
+        String add = "INSERT INTO " + TABLE_EXPENSES_FTS + " (docid, " + FTS_COLUMNS + ") VALUES (NEW." + EXPENSE_ID +
+                ", NEW." + EXPENSE_DESCRIPTION + ", NEW." + EXPENSE_CATEGORY + ", " + String.format(PAYER_TEXT, "NEW") + ");";
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_insert AFTER INSERT ON " + TABLE_EXPENSES + " BEGIN " + add + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_delete AFTER DELETE ON " + TABLE_EXPENSES + " BEGIN " + remove + " END");
+        db.execSQL("CREATE TRIGGER trg_expenses_fts_update AFTER UPDATE OF " + EXPENSE_ID + ", " + EXPENSE_DESCRIPTION +
+                ", " + EXPENSE_CATEGORY + ", " + PAYER_COLUMNS + " ON " + TABLE_EXPENSES +
+                " BEGIN " + remove + " " + add + " END");
+        db.execSQL("CREATE TRIGGER trg_participants_fts_rename AFTER UPDATE OF " + PARTICIPANT_NAME + " ON " +
+                TABLE_PARTICIPANTS + " BEGIN UPDATE " + TABLE_EXPENSES_FTS + " SET " + FTS_PAYER + " = NEW." +
+                PARTICIPANT_NAME + " WHERE docid IN (SELECT " + EXPENSE_ID + " FROM " + TABLE_EXPENSES + " WHERE " +
+                EXPENSE_TRIP_ID + " = NEW." + PARTICIPANT_TRIP_ID + " AND " + EXPENSE_PAID_BY_ID + " = NEW." +
+                PARTICIPANT_ID + " AND " + EXPENSE_SELF_PAID + " = 0); END");
+    }
+
+    // v14: custom splits. Expenses without rows here keep the equal split, so existing trips
+    // are unchanged. Balances sum owed_minor per participant straight off idx_expense_splits_trip.
+    private void migrateToV14(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_EXPENSE_SPLITS + " (" +
+                SPLIT_EXPENSE_ID + " INTEGER NOT NULL, " +
+                SPLIT_PARTICIPANT_ID + " INTEGER NOT NULL, " +
+                SPLIT_TRIP_ID + " INTEGER NOT NULL, " +
+                SPLIT_SHARES + " INTEGER NOT NULL, " +
+                SPLIT_OWED + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + SPLIT_EXPENSE_ID + ", " + SPLIT_PARTICIPANT_ID + "), " +
+                "FOREIGN KEY(" + SPLIT_EXPENSE_ID + ") REFERENCES " + TABLE_EXPENSES + "(" + EXPENSE_ID + "), " +
+                "FOREIGN KEY(" + SPLIT_PARTICIPANT_ID + ") REFERENCES " + TABLE_PARTICIPANTS + "(" + PARTICIPANT_ID + ")" +
+                ") WITHOUT ROWID");
+        db.execSQL("CREATE INDEX idx_expense_splits_trip ON " + TABLE_EXPENSE_SPLITS + " (" +
+                SPLIT_TRIP_ID + ", " + SPLIT_PARTICIPANT_ID + ", " + SPLIT_OWED + ")");
+    }
+
+    // Schema as of BASE_SCHEMA_VERSION; later changes live in the migrateToVx steps
+    private void createBaseSchema(SQLiteDatabase db) {
         String createTripsTable = "CREATE TABLE " + TABLE_TRIPS + " (" +
                 TRIP_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 TRIP_NAME + " TEXT NOT NULL, " +
@@ -67,353 +499,1134 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         String createExpensesTable = "CREATE TABLE " + TABLE_EXPENSES + " (" +
                 EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 EXPENSE_TRIP_ID + " INTEGER, " +
-                EXPENSE_PAID_BY + " TEXT NOT NULL, " +
-                EXPENSE_AMOUNT + " REAL NOT NULL, " +
+                LEGACY_EXPENSE_PAID_BY + " TEXT NOT NULL, " +
+                LEGACY_EXPENSE_AMOUNT + " REAL NOT NULL, " +
                 EXPENSE_CATEGORY + " TEXT, " +
                 EXPENSE_DESCRIPTION + " TEXT, " +
-                EXPENSE_DATE + " TEXT, " +
+                LEGACY_EXPENSE_DATE + " TEXT, " +
                 "FOREIGN KEY(" + EXPENSE_TRIP_ID + ") REFERENCES " + TABLE_TRIPS + "(" + TRIP_ID + "))";
         db.execSQL(createExpensesTable);
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PARTICIPANTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRIPS);
-        onCreate(db);
+    // rawQuery for the operations below; while metrics are on, the cursor reports the rows read
+    // through it to the current span when it is closed
+    private Cursor query(SQLiteDatabase db, String sql, String[] args) {
+        Cursor cursor = db.rawQuery(sql, args);
+        return metrics.isEnabled() ? new CountingCursor(cursor, metrics) : cursor;
+    }
+
+    private static class CountingCursor extends CursorWrapper {
+        private final MetricsRegistry metrics;
+        private int position = -1;
+        private int rows;
+        private boolean closed;
+
+        CountingCursor(Cursor cursor, MetricsRegistry metrics) {
+            super(cursor);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moved(super.moveToFirst(), 0);
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moved(super.moveToNext(), position + 1);
+        }
+
+        private boolean moved(boolean moved, int to) {
+            if (moved) {
+                position = to;
+                rows = Math.max(rows, to + 1);
+            }
+            return moved;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (!closed) {
+                closed = true;
+                metrics.queried(rows);
+            }
+        }
+    }
+
+    // The cached statement for sql, taken out of the cache until release() so its bindings are this
+    // thread's alone. Nothing is locked while it runs; a second thread wanting the same SQL meanwhile
+    // compiles its own. Statements belong to the database they were compiled on and go when it closes.
+    private SQLiteStatement statement(SQLiteDatabase db, String sql) {
+        synchronized (statements) {
+            if (db != statementsDb) {
+                closeStatements();
+                statementsDb = db;
+            }
+            SQLiteStatement statement = statements.remove(sql);
+            if (statement != null) {
+                return statement;
+            }
+        }
+        return db.compileStatement(sql);
+    }
+
+    private void release(SQLiteDatabase db, String sql, SQLiteStatement statement) {
+        synchronized (statements) {
+            if (db == statementsDb && !statements.containsKey(sql)) {
+                statements.put(sql, statement);
+                return;
+            }
+        }
+        statement.close();
+    }
+
+    private void closeStatements() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+
+    // A one-row, one-column query with one argument, read without a cursor; counted like query()
+    private long queryLong(SQLiteDatabase db, String sql, long arg) {
+        SQLiteStatement statement = statement(db, sql);
+        try {
+            statement.bindLong(1, arg);
+            long value = statement.simpleQueryForLong();
+            metrics.queried(1);
+            return value;
+        } finally {
+            release(db, sql, statement);
+        }
+    }
+
+    // An UPDATE or DELETE with one argument through its cached statement; returns the rows changed
+    private int updateOrDelete(SQLiteDatabase db, String sql, long arg) {
+        SQLiteStatement statement = statement(db, sql);
+        try {
+            statement.bindLong(1, arg);
+            return statement.executeUpdateDelete();
+        } finally {
+            release(db, sql, statement);
+        }
     }
 
     // TRIP OPERATIONS
+    private static final String INSERT_TRIP = "INSERT INTO " + TABLE_TRIPS + " (" + TRIP_NAME + ", " + TRIP_START_DATE +
+            ", " + TRIP_END_DATE + ", " + TRIP_STATUS + ") VALUES (?, ?, ?, 'ONGOING')";
+    private static final String INSERT_PARTICIPANT = "INSERT INTO " + TABLE_PARTICIPANTS + " (" + PARTICIPANT_TRIP_ID +
+            ", " + PARTICIPANT_NAME + ") VALUES (?, ?)";
+
+    @Override
     public long addTrip(String name, String startDate, String endDate, List<String> participants) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        MetricsRegistry.Span span = metrics.begin("db.addTrip");
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            long tripId;
 
-        ContentValues tripValues = new ContentValues();
-        tripValues.put(TRIP_NAME, name);
-        tripValues.put(TRIP_START_DATE, startDate);
-        tripValues.put(TRIP_END_DATE, endDate);
-        tripValues.put(TRIP_STATUS, "ONGOING");
-        long tripId = db.insert(TABLE_TRIPS, null, tripValues);
+            // The trip and its participants are saved together or not at all
+            db.beginTransaction();
+            try {
+                SQLiteStatement insertTrip = statement(db, INSERT_TRIP);
+                try {
+                    bindNullable(insertTrip, 1, name);
+                    bindNullable(insertTrip, 2, startDate);
+                    bindNullable(insertTrip, 3, endDate);
+                    tripId = insertTrip.executeInsert();
+                } finally {
+                    release(db, INSERT_TRIP, insertTrip);
+                }
 
-        if (tripId > 0 && participants != null && !participants.isEmpty()) {
-            for (String participant : participants) {
-                ContentValues participantValues = new ContentValues();
-                participantValues.put(PARTICIPANT_TRIP_ID, tripId);
-                participantValues.put(PARTICIPANT_NAME, participant.trim());
-                db.insert(TABLE_PARTICIPANTS, null, participantValues);
+                if (participants != null && !participants.isEmpty()) {
+                    SQLiteStatement insertParticipant = statement(db, INSERT_PARTICIPANT);
+                    try {
+                        for (String participant : participants) {
+                            insertParticipant.bindLong(1, tripId);
+                            insertParticipant.bindString(2, participant.trim());
+                            insertParticipant.executeInsert();
+                        }
+                    } finally {
+                        release(db, INSERT_PARTICIPANT, insertParticipant);
+                    }
+                }
+                db.setTransactionSuccessful();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                tripId = -1;
+            } finally {
+                db.endTransaction();
             }
-        }
 
-        db.close();
-        return tripId;
+            return tripId;
+        } finally {
+            metrics.end(span);
+        }
     }
 
+    // Trip rows plus their expense total, count and last expense time: one trip_summary row per
+    // trip, so the cost no longer grows with the number of expenses
+    private static final String TRIP_SUMMARY_SELECT = "SELECT t." + TRIP_ID + ", t." + TRIP_NAME + ", t." +
+            TRIP_START_DATE + ", t." + TRIP_END_DATE + ", t." + TRIP_STATUS + ", " +
+            "IFNULL(s." + SUMMARY_TOTAL + ", 0), IFNULL(s." + SUMMARY_COUNT + ", 0), s." + SUMMARY_LAST_TIME +
+            " FROM " + TABLE_TRIPS + " t LEFT JOIN " + TABLE_TRIP_SUMMARY + " s ON s." + SUMMARY_TRIP_ID + " = t." + TRIP_ID;
+    private static final String TRIP_SUMMARY_ORDER = " ORDER BY t." + TRIP_ID + " DESC";
+
+    @Override
     public List<Trip> getAllTrips() {
+        MetricsRegistry.Span span = metrics.begin("db.getAllTrips");
+        try {
+            return queryTripSummaries(TRIP_SUMMARY_SELECT + TRIP_SUMMARY_ORDER, null);
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // Trips with the given status, newest first; null returns every trip
+    @Override
+    public List<Trip> getTripsByStatus(String status) {
+        MetricsRegistry.Span span = metrics.begin("db.getTripsByStatus");
+        try {
+            if (status == null) {
+                return getAllTrips();
+            }
+            return queryTripSummaries(TRIP_SUMMARY_SELECT + " WHERE t." + TRIP_STATUS + " = ?" + TRIP_SUMMARY_ORDER,
+                    new String[]{status});
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    @Override
+    public Trip getTripById(int tripId) {
+        MetricsRegistry.Span span = metrics.begin("db.getTripById");
+        try {
+            List<Trip> trips = queryTripSummaries(TRIP_SUMMARY_SELECT + " WHERE t." + TRIP_ID + " = ?" + TRIP_SUMMARY_ORDER,
+                    new String[]{String.valueOf(tripId)});
+            return trips.isEmpty() ? null : trips.get(0);
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    private List<Trip> queryTripSummaries(String sql, String[] args) {
         List<Trip> trips = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_TRIPS + " ORDER BY " + TRIP_ID + " DESC", null);
+        Cursor cursor = query(db, sql, args);
 
         if (cursor.moveToFirst()) {
             do {
-                Trip trip = new Trip();
-                trip.id = cursor.getInt(0);
-                trip.name = cursor.getString(1);
-                trip.startDate = cursor.getString(2);
-                trip.endDate = cursor.getString(3);
-                trip.status = cursor.getString(4);
-                trip.totalExpense = getTripTotalExpense(trip.id);
-
-                // If no end date set, use last expense date
-                if (trip.endDate == null || trip.endDate.isEmpty()) {
-                    String lastExpenseDate = getLastExpenseDate(trip.id);
-                    if (lastExpenseDate != null && !lastExpenseDate.isEmpty()) {
-                        trip.endDate = lastExpenseDate;
-                    }
-                }
-
-                trips.add(trip);
+                trips.add(readTripSummary(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
-        db.close();
         return trips;
     }
 
-    public Trip getTripById(int tripId) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_TRIPS + " WHERE " + TRIP_ID + " = ?",
-                new String[]{String.valueOf(tripId)});
+    // Number of trips per status, from one pass over the status index
+    @Override
+    public Map<String, Integer> getTripStatusCounts() {
+        MetricsRegistry.Span span = metrics.begin("db.getTripStatusCounts");
+        try {
+            Map<String, Integer> counts = new HashMap<>();
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, "SELECT " + TRIP_STATUS + ", COUNT(*) FROM " + TABLE_TRIPS +
+                    " GROUP BY " + TRIP_STATUS, null);
 
-        Trip trip = null;
-        if (cursor.moveToFirst()) {
-            trip = new Trip();
-            trip.id = cursor.getInt(0);
-            trip.name = cursor.getString(1);
-            trip.startDate = cursor.getString(2);
-            trip.endDate = cursor.getString(3);
-            trip.status = cursor.getString(4);
-            trip.totalExpense = getTripTotalExpense(trip.id);
-
-            // If no end date set, use last expense date
-            if (trip.endDate == null || trip.endDate.isEmpty()) {
-                String lastExpenseDate = getLastExpenseDate(trip.id);
-                if (lastExpenseDate != null && !lastExpenseDate.isEmpty()) {
-                    trip.endDate = lastExpenseDate;
-                }
+            if (cursor.moveToFirst()) {
+                do {
+                    counts.put(cursor.getString(0), cursor.getInt(1));
+                } while (cursor.moveToNext());
             }
+            cursor.close();
+            return counts;
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    private Trip readTripSummary(Cursor cursor) {
+        Trip trip = new Trip();
+        trip.id = cursor.getInt(0);
+        trip.name = cursor.getString(1);
+        trip.startDate = cursor.getString(2);
+        trip.endDate = cursor.getString(3);
+        trip.status = cursor.getString(4);
+        trip.totalPaise = cursor.getLong(5);
+        trip.expenseCount = cursor.getInt(6);
+
+        // If no end date set, use last expense date
+        if ((trip.endDate == null || trip.endDate.isEmpty()) && !cursor.isNull(7)) {
+            trip.endDate = DayBuckets.format(DayBuckets.dayOf(cursor.getLong(7)));
         }
-        cursor.close();
-        db.close();
         return trip;
     }
 
+    @Override
     public String getLastExpenseDate(int tripId) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT " + EXPENSE_DATE + " FROM " + TABLE_EXPENSES +
-                        " WHERE " + EXPENSE_TRIP_ID + " = ? ORDER BY " + EXPENSE_DATE + " DESC LIMIT 1",
-                new String[]{String.valueOf(tripId)});
-
-        String lastDate = null;
-        if (cursor.moveToFirst()) {
-            String dateTime = cursor.getString(0);
-            try {
-                SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                SimpleDateFormat outputFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                Date date = inputFormat.parse(dateTime);
-                if (date != null) {
-                    lastDate = outputFormat.format(date);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+        MetricsRegistry.Span span = metrics.begin("db.getLastExpenseDate");
+        try {
+            TripAggregateCache.Entry cached = aggregateCache.get(tripId);
+            if (cached != null) {
+                return cached.expenseCount == 0 ? null : DayBuckets.format(DayBuckets.dayOf(cached.lastTime));
             }
+            // 0 when there is no summary row or no expense; saved times are always after 1970
+            long lastTime = queryLong(this.getReadableDatabase(), SUMMARY_LAST_TIME_QUERY, tripId);
+            return lastTime == 0 ? null : DayBuckets.format(DayBuckets.dayOf(lastTime));
+        } finally {
+            metrics.end(span);
         }
-        cursor.close();
-        db.close();
-        return lastDate;
     }
 
+    private static final String UPDATE_TRIP_STATUS = "UPDATE " + TABLE_TRIPS + " SET " + TRIP_STATUS + " = ? WHERE " +
+            TRIP_ID + " = ?";
+
+    @Override
     public void updateTripStatus(int tripId, String status) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(TRIP_STATUS, status);
-        db.update(TABLE_TRIPS, values, TRIP_ID + " = ?", new String[]{String.valueOf(tripId)});
-        db.close();
+        MetricsRegistry.Span span = metrics.begin("db.updateTripStatus");
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            SQLiteStatement update = statement(db, UPDATE_TRIP_STATUS);
+            try {
+                bindNullable(update, 1, status);
+                update.bindLong(2, tripId);
+                update.executeUpdateDelete();
+            } finally {
+                release(db, UPDATE_TRIP_STATUS, update);
+            }
+        } finally {
+            metrics.end(span);
+        }
     }
 
+    // Splits, expenses, participants, then the trip itself
+    private static final String[] DELETE_TRIP = {
+            "DELETE FROM " + TABLE_EXPENSE_SPLITS + " WHERE " + SPLIT_TRIP_ID + " = ?",
+            "DELETE FROM " + TABLE_EXPENSES + " WHERE " + EXPENSE_TRIP_ID + " = ?",
+            "DELETE FROM " + TABLE_PARTICIPANTS + " WHERE " + PARTICIPANT_TRIP_ID + " = ?",
+            "DELETE FROM " + TABLE_TRIPS + " WHERE " + TRIP_ID + " = ?"};
+
+    @Override
     public void deleteTrip(int tripId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_EXPENSES, EXPENSE_TRIP_ID + " = ?", new String[]{String.valueOf(tripId)});
-        db.delete(TABLE_PARTICIPANTS, PARTICIPANT_TRIP_ID + " = ?", new String[]{String.valueOf(tripId)});
-        db.delete(TABLE_TRIPS, TRIP_ID + " = ?", new String[]{String.valueOf(tripId)});
-        db.close();
+        MetricsRegistry.Span span = metrics.begin("db.deleteTrip");
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            // All or nothing, so a failure can't leave participants or expenses without their trip
+            aggregateCache.writeStarted();
+            try {
+                db.beginTransaction();
+                try {
+                    for (String delete : DELETE_TRIP) {
+                        updateOrDelete(db, delete, tripId);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                aggregateCache.remove(tripId);
+            } finally {
+                aggregateCache.writeFinished();
+            }
+        } finally {
+            metrics.end(span);
+        }
     }
 
     // PARTICIPANT OPERATIONS
+    @Override
     public List<String> getTripParticipants(int tripId) {
-        List<String> participants = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT " + PARTICIPANT_NAME + " FROM " + TABLE_PARTICIPANTS +
-                        " WHERE " + PARTICIPANT_TRIP_ID + " = ? ORDER BY " + PARTICIPANT_NAME,
-                new String[]{String.valueOf(tripId)});
+        MetricsRegistry.Span span = metrics.begin("db.getTripParticipants");
+        try {
+            List<String> participants = new ArrayList<>();
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, "SELECT " + PARTICIPANT_NAME + " FROM " + TABLE_PARTICIPANTS +
+                            " WHERE " + PARTICIPANT_TRIP_ID + " = ? ORDER BY " + PARTICIPANT_NAME,
+                    new String[]{String.valueOf(tripId)});
 
-        if (cursor.moveToFirst()) {
-            do {
-                participants.add(cursor.getString(0));
-            } while (cursor.moveToNext());
+            if (cursor.moveToFirst()) {
+                do {
+                    participants.add(cursor.getString(0));
+                } while (cursor.moveToNext());
+            }
+            cursor.close();
+            return participants;
+        } finally {
+            metrics.end(span);
         }
-        cursor.close();
-        db.close();
-        return participants;
-    }
-
-    // EXPENSE OPERATIONS - Updated to accept custom date
-    public long addExpense(int tripId, String paidBy, double amount, String category, String description, String customDate) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(EXPENSE_TRIP_ID, tripId);
-        values.put(EXPENSE_PAID_BY, paidBy);
-        values.put(EXPENSE_AMOUNT, amount);
-        values.put(EXPENSE_CATEGORY, category);
-        values.put(EXPENSE_DESCRIPTION, description);
-
-        // Use custom date if provided, otherwise use current date
-        if (customDate != null && !customDate.isEmpty()) {
-            values.put(EXPENSE_DATE, customDate);
+    }
+
+    // Ids and names of the trip's participants, sorted by name
+    @Override
+    public List<Participant> getParticipants(int tripId) {
+        MetricsRegistry.Span span = metrics.begin("db.getParticipants");
+        try {
+            List<Participant> participants = new ArrayList<>();
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, "SELECT " + PARTICIPANT_ID + ", " + PARTICIPANT_NAME + " FROM " + TABLE_PARTICIPANTS +
+                            " WHERE " + PARTICIPANT_TRIP_ID + " = ? ORDER BY " + PARTICIPANT_NAME,
+                    new String[]{String.valueOf(tripId)});
+
+            if (cursor.moveToFirst()) {
+                do {
+                    Participant participant = new Participant();
+                    participant.id = cursor.getLong(0);
+                    participant.name = cursor.getString(1);
+                    participants.add(participant);
+                } while (cursor.moveToNext());
+            }
+            cursor.close();
+            return participants;
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // EXPENSE OPERATIONS - expenseTime is epoch millis, or 0 for now. paidById is ignored when selfPaid.
+    @Override
+    public long addExpense(int tripId, long paidById, boolean selfPaid, long amountPaise, String category,
+                           String description, long expenseTime) {
+        MetricsRegistry.Span span = metrics.begin("db.addExpense");
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            if (expenseTime <= 0) {
+                expenseTime = System.currentTimeMillis();
+            }
+            long id;
+            aggregateCache.writeStarted();
+            try {
+                // Returns -1 on a failed insert, as SQLiteDatabase.insert did
+                try {
+                    id = insertExpense(db, tripId, paidById, selfPaid, amountPaise, category, description, expenseTime);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    id = -1;
+                }
+                if (id != -1) {
+                    aggregateCache.expenseAdded(tripId, selfPaid ? 0 : paidById, selfPaid, amountPaise, expenseTime);
+                }
+            } finally {
+                aggregateCache.writeFinished();
+            }
+            return id;
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // A shared expense split by shares among some of the trip's participants; participantIds and
+    // shares are parallel and every share is positive. The expense and its split are saved together.
+    @Override
+    public long addSplitExpense(int tripId, long paidById, long amountPaise, String category, String description,
+                                long expenseTime, long[] participantIds, long[] shares) {
+        MetricsRegistry.Span span = metrics.begin("db.addSplitExpense");
+        try {
+            if (participantIds.length == 0 || participantIds.length != shares.length) {
+                throw new IllegalArgumentException("Need one share per participant in the split");
+            }
+            long[] owed = SplitBalanceEngine.allocate(amountPaise, shares);
+            if (expenseTime <= 0) {
+                expenseTime = System.currentTimeMillis();
+            }
+
+            SQLiteDatabase db = this.getWritableDatabase();
+            long id;
+            aggregateCache.writeStarted();
+            try {
+                db.beginTransaction();
+                try {
+                    id = insertExpense(db, tripId, paidById, false, amountPaise, category, description, expenseTime);
+                    SQLiteStatement insertSplit = statement(db, INSERT_SPLIT);
+                    try {
+                        for (int i = 0; i < participantIds.length; i++) {
+                            insertSplit.bindLong(1, id);
+                            insertSplit.bindLong(2, participantIds[i]);
+                            insertSplit.bindLong(3, tripId);
+                            insertSplit.bindLong(4, shares[i]);
+                            insertSplit.bindLong(5, owed[i]);
+                            insertSplit.executeInsert();
+                        }
+                    } finally {
+                        release(db, INSERT_SPLIT, insertSplit);
+                    }
+                    db.setTransactionSuccessful();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    id = -1;
+                } finally {
+                    db.endTransaction();
+                }
+                if (id != -1) {
+                    aggregateCache.splitExpenseAdded(tripId, paidById, false, amountPaise, expenseTime, participantIds, owed);
+                }
+            } finally {
+                aggregateCache.writeFinished();
+            }
+            return id;
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    private static final String INSERT_EXPENSE = "INSERT INTO " + TABLE_EXPENSES + " (" + EXPENSE_TRIP_ID + ", " +
+            PAYER_COLUMNS + ", " + EXPENSE_AMOUNT + ", " + EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " +
+            EXPENSE_TIME + ", " + EXPENSE_DAY + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SPLIT = "INSERT INTO " + TABLE_EXPENSE_SPLITS + " (" + SPLIT_EXPENSE_ID + ", " +
+            SPLIT_PARTICIPANT_ID + ", " + SPLIT_TRIP_ID + ", " + SPLIT_SHARES + ", " + SPLIT_OWED + ") VALUES (?, ?, ?, ?, ?)";
+
+    // One expense row through the cached insert; throws SQLException if it fails
+    private long insertExpense(SQLiteDatabase db, int tripId, long paidById, boolean selfPaid, long amountPaise,
+                               String category, String description, long expenseTime) {
+        SQLiteStatement insert = statement(db, INSERT_EXPENSE);
+        try {
+            bindExpense(insert, tripId, selfPaid ? 0 : paidById, selfPaid, amountPaise, category, description, expenseTime);
+            return insert.executeInsert();
+        } finally {
+            release(db, INSERT_EXPENSE, insert);
+        }
+    }
+
+    // Binds INSERT_EXPENSE; a paidById of 0 or less is stored as NULL
+    private static void bindExpense(SQLiteStatement insert, int tripId, long paidById, boolean selfPaid, long amountPaise,
+                                    String category, String description, long expenseTime) {
+        insert.bindLong(1, tripId);
+        if (paidById <= 0) {
+            insert.bindNull(2);
         } else {
-            values.put(EXPENSE_DATE, getCurrentDateTime());
+            insert.bindLong(2, paidById);
         }
+        insert.bindLong(3, selfPaid ? 1 : 0);
+        insert.bindLong(4, amountPaise);
+        bindNullable(insert, 5, category);
+        bindNullable(insert, 6, description);
+        insert.bindLong(7, expenseTime);
+        insert.bindLong(8, DayBuckets.dayOf(expenseTime));
+    }
+
+    // Rows per transaction for importExpenses when a failure may keep the chunks already written
+    public static final int IMPORT_CHUNK_SIZE = 500;
+
+    public interface ImportListener {
+        // Called on the importing thread after each chunk with the rows written so far
+        void onProgress(int imported);
+    }
+
+    public static class ImportResult {
+        public int imported;
+        // False when a row failed; with allOrNothing nothing was kept, otherwise the earlier chunks were
+        public boolean complete;
+    }
+
+    // Bulk insert into one trip through a single compiled statement. With allOrNothing every row
+    // goes in one transaction; otherwise each IMPORT_CHUNK_SIZE rows commit on their own, which
+    // keeps the WAL small on very large imports. Expense.tripId and paidBy are ignored; time <= 0 means now.
+    public ImportResult importExpenses(int tripId, Iterator<Expense> expenses, boolean allOrNothing, ImportListener listener) {
+        MetricsRegistry.Span span = metrics.begin("db.importExpenses");
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ImportResult result = new ImportResult();
+            SQLiteStatement insert = statement(db, INSERT_EXPENSE);
+            long now = System.currentTimeMillis();
+            int written = 0;
+
+            if (allOrNothing) {
+                db.beginTransaction();
+            }
+            try {
+                while (expenses.hasNext()) {
+                    if (!allOrNothing) {
+                        db.beginTransaction();
+                    }
+                    try {
+                        int chunk = 0;
+                        while (chunk < IMPORT_CHUNK_SIZE && expenses.hasNext()) {
+                            Expense expense = expenses.next();
+                            long time = expense.time > 0 ? expense.time : now;
+                            bindExpense(insert, tripId, expense.selfPaid ? 0 : expense.paidById, expense.selfPaid,
+                                    expense.amountPaise, expense.category, expense.description, time);
+                            insert.executeInsert();
+                            chunk++;
+                        }
+                        if (!allOrNothing) {
+                            db.setTransactionSuccessful();
+                        }
+                        written += chunk;
+                    } finally {
+                        if (!allOrNothing) {
+                            db.endTransaction();
+                        }
+                    }
+                    if (!allOrNothing) {
+                        result.imported = written;
+                    }
+                    if (listener != null) {
+                        listener.onProgress(written);
+                    }
+                }
+                if (allOrNothing) {
+                    db.setTransactionSuccessful();
+                    result.imported = written;
+                }
+                result.complete = true;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                if (allOrNothing) {
+                    db.endTransaction();
+                }
+                release(db, INSERT_EXPENSE, insert);
+                // Rows went in behind the cache's back; trip_summary is kept by its triggers
+                aggregateCache.remove(tripId);
+            }
+            return result;
+        } finally {
+            metrics.end(span);
+        }
+    }
 
-        long id = db.insert(TABLE_EXPENSES, null, values);
-        db.close();
-        return id;
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
     }
 
+    // Expense rows aliased e, with the payer's name looked up by primary key
+    private static final String EXPENSE_COLUMNS = prefixed("e.", EXPENSE_ID + ", " + EXPENSE_TRIP_ID + ", " +
+            PAYER_COLUMNS + ", " + EXPENSE_AMOUNT + ", " + EXPENSE_CATEGORY + ", " + EXPENSE_DESCRIPTION + ", " +
+            EXPENSE_TIME + ", " + EXPENSE_DAY) + ", p." + PARTICIPANT_NAME;
+    private static final String EXPENSE_FROM = " FROM " + TABLE_EXPENSES + " e LEFT JOIN " + TABLE_PARTICIPANTS +
+            " p ON p." + PARTICIPANT_ID + " = e." + EXPENSE_PAID_BY_ID;
+    // EXPENSE_COLUMNS is built at class load, so the queries using it are too rather than per call
+    private static final String TRIP_EXPENSES_QUERY = "SELECT " + EXPENSE_COLUMNS + EXPENSE_FROM + " WHERE e." +
+            EXPENSE_TRIP_ID + " = ? ORDER BY e." + EXPENSE_TIME + " DESC, e." + EXPENSE_ID + " DESC";
+    // The redundant "time <= ?" gives SQLite a range to seek to instead of skipping earlier pages
+    private static final String TRIP_EXPENSES_PAGE_QUERY = "SELECT " + EXPENSE_COLUMNS + EXPENSE_FROM +
+            " WHERE e." + EXPENSE_TRIP_ID + " = ? AND e." + EXPENSE_TIME + " <= ?" +
+            " AND (e." + EXPENSE_TIME + " < ? OR e." + EXPENSE_ID + " < ?)" +
+            " ORDER BY e." + EXPENSE_TIME + " DESC, e." + EXPENSE_ID + " DESC LIMIT ?";
+
+    @Override
     public List<Expense> getTripExpenses(int tripId) {
-        List<Expense> expenses = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_EXPENSES +
-                        " WHERE " + EXPENSE_TRIP_ID + " = ? ORDER BY " + EXPENSE_DATE + " DESC",
-                new String[]{String.valueOf(tripId)});
+        MetricsRegistry.Span span = metrics.begin("db.getTripExpenses");
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, TRIP_EXPENSES_QUERY, new String[]{String.valueOf(tripId)});
+            return readExpenses(cursor);
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // One page of a trip's expenses, newest first, starting after the (time, id) of the previous
+    // page's last row. Pass Long.MAX_VALUE and Integer.MAX_VALUE for the first page.
+    @Override
+    public List<Expense> getTripExpensesPage(int tripId, long afterTime, int afterId, int limit) {
+        MetricsRegistry.Span span = metrics.begin("db.getTripExpensesPage");
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, TRIP_EXPENSES_PAGE_QUERY, new String[]{String.valueOf(tripId),
+                    String.valueOf(afterTime), String.valueOf(afterTime), String.valueOf(afterId), String.valueOf(limit)});
+            return readExpenses(cursor);
+        } finally {
+            metrics.end(span);
+        }
+    }
 
+    private List<Expense> readExpenses(Cursor cursor) {
+        List<Expense> expenses = new ArrayList<>(cursor.getCount());
         if (cursor.moveToFirst()) {
             do {
                 Expense expense = new Expense();
                 expense.id = cursor.getInt(0);
                 expense.tripId = cursor.getInt(1);
-                expense.paidBy = cursor.getString(2);
-                expense.amount = cursor.getDouble(3);
-                expense.category = cursor.getString(4);
-                expense.description = cursor.getString(5);
-                expense.date = cursor.getString(6);
+                expense.paidById = cursor.isNull(2) ? 0 : cursor.getLong(2);
+                expense.selfPaid = cursor.getInt(3) != 0;
+                expense.amountPaise = cursor.getLong(4);
+                expense.category = cursor.getString(5);
+                expense.description = cursor.getString(6);
+                expense.time = cursor.getLong(7);
+                expense.day = cursor.getInt(8);
+                expense.paidBy = expense.selfPaid ? null : cursor.getString(9);
                 expenses.add(expense);
             } while (cursor.moveToNext());
         }
         cursor.close();
-        db.close();
         return expenses;
     }
 
+    // Expense count and total per day for days fromDay..toDay, newest first
+    @Override
+    public List<DaySummary> getDaySummaries(int tripId, int fromDay, int toDay) {
+        MetricsRegistry.Span span = metrics.begin("db.getDaySummaries");
+        try {
+            List<DaySummary> days = new ArrayList<>();
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, "SELECT " + EXPENSE_DAY + ", COUNT(*), SUM(" + EXPENSE_AMOUNT + ") FROM " +
+                            TABLE_EXPENSES + " WHERE " + EXPENSE_TRIP_ID + " = ? AND " + EXPENSE_DAY + " BETWEEN ? AND ?" +
+                            " GROUP BY " + EXPENSE_DAY + " ORDER BY " + EXPENSE_DAY + " DESC",
+                    new String[]{String.valueOf(tripId), String.valueOf(fromDay), String.valueOf(toDay)});
+
+            if (cursor.moveToFirst()) {
+                do {
+                    DaySummary day = new DaySummary();
+                    day.day = cursor.getInt(0);
+                    day.expenseCount = cursor.getInt(1);
+                    day.totalPaise = cursor.getLong(2);
+                    days.add(day);
+                } while (cursor.moveToNext());
+            }
+            cursor.close();
+            return days;
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // A primary key range; no rows for an equal split
+    private static final String EXPENSE_SPLIT_QUERY = "SELECT " + SPLIT_PARTICIPANT_ID + ", " + SPLIT_OWED + " FROM " +
+            TABLE_EXPENSE_SPLITS + " WHERE " + SPLIT_EXPENSE_ID + " = ?";
+    private static final String DELETE_EXPENSE_SPLITS = "DELETE FROM " + TABLE_EXPENSE_SPLITS + " WHERE " +
+            SPLIT_EXPENSE_ID + " = ?";
+    private static final String DELETE_EXPENSE = "DELETE FROM " + TABLE_EXPENSES + " WHERE " + EXPENSE_ID + " = ?";
+
+    @Override
     public void deleteExpense(int expenseId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_EXPENSES, EXPENSE_ID + " = ?", new String[]{String.valueOf(expenseId)});
-        db.close();
+        MetricsRegistry.Span span = metrics.begin("db.deleteExpense");
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            int tripId;
+            long paidById;
+            boolean selfPaid;
+            long amount;
+            long lastTime;
+            long[] splitIds;
+            long[] splitOwed;
+
+            // No load may store the trip between the delete and its delta
+            aggregateCache.writeStarted();
+            try {
+                // Read what the aggregates need to give back, delete, then find the trip's new latest time
+                db.beginTransaction();
+                try {
+                    Cursor cursor = query(db, "SELECT " + EXPENSE_TRIP_ID + ", " + PAYER_COLUMNS + ", " + EXPENSE_AMOUNT +
+                            " FROM " + TABLE_EXPENSES + " WHERE " + EXPENSE_ID + " = ?", new String[]{String.valueOf(expenseId)});
+                    if (!cursor.moveToFirst()) {
+                        cursor.close();
+                        return;
+                    }
+                    tripId = cursor.getInt(0);
+                    paidById = cursor.isNull(1) ? 0 : cursor.getLong(1);
+                    selfPaid = cursor.getInt(2) != 0;
+                    amount = cursor.getLong(3);
+                    cursor.close();
+
+                    cursor = query(db, EXPENSE_SPLIT_QUERY, new String[]{String.valueOf(expenseId)});
+                    splitIds = new long[cursor.getCount()];
+                    splitOwed = new long[splitIds.length];
+                    for (int i = 0; cursor.moveToNext(); i++) {
+                        splitIds[i] = cursor.getLong(0);
+                        splitOwed[i] = cursor.getLong(1);
+                    }
+                    cursor.close();
+
+                    if (splitIds.length > 0) {
+                        updateOrDelete(db, DELETE_EXPENSE_SPLITS, expenseId);
+                    }
+                    updateOrDelete(db, DELETE_EXPENSE, expenseId);
+                    lastTime = queryLastExpenseTime(db, tripId);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                aggregateCache.splitExpenseDeleted(tripId, paidById, selfPaid, amount, lastTime, splitIds, splitOwed);
+            } finally {
+                aggregateCache.writeFinished();
+            }
+        } finally {
+            metrics.end(span);
+        }
     }
 
     // CALCULATIONS
-    public double getTripTotalExpense(int tripId) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT SUM(" + EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                " WHERE " + EXPENSE_TRIP_ID + " = ?", new String[]{String.valueOf(tripId)});
-        double total = 0;
-        if (cursor.moveToFirst()) {
-            total = cursor.getDouble(0);
+    private static final String SUMMARY_COUNT_QUERY = summaryQuery(SUMMARY_COUNT);
+    private static final String SUMMARY_TOTAL_QUERY = summaryQuery(SUMMARY_TOTAL);
+    private static final String SUMMARY_LAST_TIME_QUERY = summaryQuery(SUMMARY_LAST_TIME);
+
+    // From the aggregate cache when the trip is in it, otherwise from its trip_summary row
+    @Override
+    public int getTripExpenseCount(int tripId) {
+        MetricsRegistry.Span span = metrics.begin("db.getTripExpenseCount");
+        try {
+            TripAggregateCache.Entry cached = aggregateCache.get(tripId);
+            if (cached != null) {
+                return cached.expenseCount;
+            }
+            return (int) queryLong(this.getReadableDatabase(), SUMMARY_COUNT_QUERY, tripId);
+        } finally {
+            metrics.end(span);
         }
-        cursor.close();
-        db.close();
-        return total;
     }
 
-    public Map<String, Double> getParticipantBalances(int tripId) {
-        Map<String, Double> balances = new HashMap<>();
-        List<String> participants = getTripParticipants(tripId);
+    @Override
+    public long getTripTotalExpense(int tripId) {
+        MetricsRegistry.Span span = metrics.begin("db.getTripTotalExpense");
+        try {
+            TripAggregateCache.Entry cached = aggregateCache.get(tripId);
+            if (cached != null) {
+                return cached.total;
+            }
+            return queryLong(this.getReadableDatabase(), SUMMARY_TOTAL_QUERY, tripId);
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // The trip_summary column as a subquery, so a trip without a summary row still gives one row,
+    // of NULL, which simpleQueryForLong reads as 0
+    private static String summaryQuery(String column) {
+        return "SELECT (SELECT " + column + " FROM " + TABLE_TRIP_SUMMARY + " WHERE " + SUMMARY_TRIP_ID + " = ?)";
+    }
+
+    // Totals, per-payer sums and split-aware balances, from the aggregate cache
+    @Override
+    public Settlement getSettlement(int tripId) {
+        MetricsRegistry.Span span = metrics.begin("db.getSettlement");
+        try {
+            return Settlement.of(getAggregates(tripId));
+        } finally {
+            metrics.end(span);
+        }
+    }
 
-        if (participants.isEmpty()) {
-            return balances;
+    // Cache hit, or a full recompute. With verifyAggregates on, the first read of an entry patched
+    // by writes also recomputes it, and an entry that drifted from SQL is replaced and counted.
+    private TripAggregateCache.Entry getAggregates(int tripId) {
+        TripAggregateCache.Entry aggregates = aggregateCache.get(tripId);
+        if (aggregates != null && !(verifyAggregates && aggregateCache.isPatched(tripId))) {
+            return aggregates;
         }
 
-        SQLiteDatabase db = this.getReadableDatabase();
+        long generation = aggregateCache.generation();
+        TripAggregateCache.Entry loaded = loadAggregates(tripId);
+        if (aggregates == null) {
+            aggregateCache.putIfUnchanged(tripId, loaded, generation);
+        } else if (!aggregateCache.check(tripId, loaded, generation)) {
+            metrics.increment("db.aggregates.mismatches");
+        }
+        return loaded;
+    }
 
-        Cursor sharedCursor = db.rawQuery("SELECT SUM(" + EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + EXPENSE_TRIP_ID + " = ? AND " + EXPENSE_PAID_BY + " != 'SELF_PAID'",
+    // One GROUP BY over the integer payer columns, read straight off idx_expenses_trip_payer, one
+    // over the trip's split rows and an index lookup for the latest time
+    private TripAggregateCache.Entry loadAggregates(int tripId) {
+        List<Participant> participants = getParticipants(tripId);
+        long[] ids = new long[participants.size()];
+        String[] names = new String[participants.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = participants.get(i).id;
+            names[i] = participants.get(i).name;
+        }
+        TripAggregateCache.Entry aggregates = new TripAggregateCache.Entry(ids, names);
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = query(db, "SELECT " + PAYER_COLUMNS + ", SUM(" + EXPENSE_AMOUNT + "), COUNT(*) FROM " + TABLE_EXPENSES +
+                        " WHERE " + EXPENSE_TRIP_ID + " = ? GROUP BY " + PAYER_COLUMNS,
                 new String[]{String.valueOf(tripId)});
 
-        double totalShared = 0;
-        if (sharedCursor.moveToFirst()) {
-            totalShared = sharedCursor.getDouble(0);
+        if (cursor.moveToFirst()) {
+            do {
+                aggregates.addPaid(cursor.isNull(0) ? 0 : cursor.getLong(0), cursor.getInt(1) != 0, cursor.getLong(2));
+                aggregates.expenseCount += cursor.getInt(3);
+            } while (cursor.moveToNext());
         }
-        sharedCursor.close();
+        cursor.close();
 
-        double perPersonShare = totalShared / participants.size();
+        cursor = query(db, "SELECT " + SPLIT_PARTICIPANT_ID + ", SUM(" + SPLIT_OWED + ") FROM " + TABLE_EXPENSE_SPLITS +
+                        " WHERE " + SPLIT_TRIP_ID + " = ? GROUP BY " + SPLIT_PARTICIPANT_ID,
+                new String[]{String.valueOf(tripId)});
+        while (cursor.moveToNext()) {
+            aggregates.addOwed(cursor.getLong(0), cursor.getLong(1));
+        }
+        cursor.close();
+        aggregates.lastTime = queryLastExpenseTime(db, tripId);
 
-        for (String participant : participants) {
-            Cursor paidCursor = db.rawQuery("SELECT SUM(" + EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                            " WHERE " + EXPENSE_TRIP_ID + " = ? AND " + EXPENSE_PAID_BY + " = ?",
-                    new String[]{String.valueOf(tripId), participant});
+        return aggregates;
+    }
 
-            double paid = 0;
-            if (paidCursor.moveToFirst()) {
-                paid = paidCursor.getDouble(0);
-            }
-            paidCursor.close();
+    // Debuggable builds turn this on; the checks cost a full recompute after each write
+    void setVerifyAggregates(boolean verify) {
+        verifyAggregates = verify;
+    }
 
-            double balance = paid - perPersonShare;
-            balances.put(participant, balance);
-        }
+    // A bare MAX() so SQLite answers it with one index seek; NULL for a trip without expenses reads as 0
+    static final String LAST_EXPENSE_TIME_QUERY = "SELECT MAX(" + EXPENSE_TIME + ") FROM " + TABLE_EXPENSES +
+            " WHERE " + EXPENSE_TRIP_ID + " = ?";
 
-        db.close();
-        return balances;
+    private long queryLastExpenseTime(SQLiteDatabase db, int tripId) {
+        return queryLong(db, LAST_EXPENSE_TIME_QUERY, tripId);
     }
 
-    public Map<String, Double> getParticipantTotalSpending(int tripId) {
-        Map<String, Double> spending = new HashMap<>();
-        List<String> participants = getTripParticipants(tripId);
+    // Hit, miss and eviction counts for the aggregate cache
+    TripAggregateCache getAggregateCache() {
+        return aggregateCache;
+    }
 
-        SQLiteDatabase db = this.getReadableDatabase();
+    // SEARCH
+    // Most matches one search ranks. A short prefix can match most of the table, and offsets()
+    // re-reads and re-tokenizes every row it runs on, so only the newest candidates are ranked.
+    static final int SEARCH_CANDIDATES = 500;
+    // Shorter words are matched whole rather than as prefixes; see toPrefixMatch
+    static final int MIN_PREFIX_LENGTH = 2;
 
-        for (String participant : participants) {
-            Cursor cursor = db.rawQuery("SELECT SUM(" + EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                            " WHERE " + EXPENSE_TRIP_ID + " = ? AND " + EXPENSE_PAID_BY + " = ?",
-                    new String[]{String.valueOf(tripId), participant});
+    // offsets() lists four numbers per matching word, so counting its spaces counts the hits.
+    // docid order lets FTS stop after the candidates without ranking the rest.
+    private static final String SEARCH_QUERY = "SELECT " + EXPENSE_COLUMNS + " FROM (SELECT docid, " +
+            "offsets(" + TABLE_EXPENSES_FTS + ") AS hits FROM " + TABLE_EXPENSES_FTS +
+            " WHERE " + TABLE_EXPENSES_FTS + " MATCH ? ORDER BY docid DESC LIMIT " + SEARCH_CANDIDATES +
+            ") f JOIN " + TABLE_EXPENSES + " e ON e." + EXPENSE_ID +
+            " = f.docid LEFT JOIN " + TABLE_PARTICIPANTS + " p ON p." + PARTICIPANT_ID + " = e." +
+            EXPENSE_PAID_BY_ID + " ORDER BY length(f.hits) - length(replace(f.hits, ' ', '')) DESC, e." +
+            EXPENSE_TIME + " DESC, e." + EXPENSE_ID + " DESC LIMIT ? OFFSET ?";
 
-            double total = 0;
-            if (cursor.moveToFirst()) {
-                total = cursor.getDouble(0);
+    // Expenses of every trip whose description, category or payer has words starting with each word
+    // of query. Of the SEARCH_CANDIDATES most recently added matches, ranked by how many matching
+    // words the expense has, then newest first; results past them are not returned.
+    public List<Expense> searchExpenses(String query, int limit, int offset) {
+        MetricsRegistry.Span span = metrics.begin("db.searchExpenses");
+        try {
+            String match = toPrefixMatch(query);
+            if (match.isEmpty()) {
+                return new ArrayList<>();
             }
-            cursor.close();
-            spending.put(participant, total);
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = query(db, SEARCH_QUERY, new String[]{match, String.valueOf(limit), String.valueOf(offset)});
+            return readExpenses(cursor);
+        } finally {
+            metrics.end(span);
         }
+    }
 
-        db.close();
-        return spending;
+    // "Din, Goa" -> "din* goa*". Words split where unicode61 splits them, and lower case keeps
+    // "OR" or "NEAR" from being read as operators, so no FTS syntax from the user gets through.
+    // One-letter words must match whole: the prefix index starts at two letters, and without it a
+    // one-letter prefix merges the doclists of every word that starts with that letter.
+    static String toPrefixMatch(String query) {
+        StringBuilder match = new StringBuilder();
+        int i = 0;
+        while (i < query.length()) {
+            int cp = query.codePointAt(i);
+            if (isWordChar(cp)) {
+                int start = i;
+                while (i < query.length() && isWordChar(query.codePointAt(i))) {
+                    i += Character.charCount(query.codePointAt(i));
+                }
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(query.substring(start, i).toLowerCase(Locale.ROOT));
+                if (query.codePointCount(start, i) >= MIN_PREFIX_LENGTH) {
+                    match.append('*');
+                }
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return match.toString();
     }
 
-    public Map<String, Double> getDayWiseExpenses(int tripId) {
-        Map<String, Double> dayWiseExpenses = new TreeMap<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+    // Letters, digits and combining marks, so Devanagari vowel signs stay inside their word
+    private static boolean isWordChar(int cp) {
+        int type = Character.getType(cp);
+        return Character.isLetterOrDigit(cp) || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK;
+    }
 
-        Cursor cursor = db.rawQuery("SELECT " + EXPENSE_DATE + ", " + EXPENSE_AMOUNT + " FROM " + TABLE_EXPENSES +
-                " WHERE " + EXPENSE_TRIP_ID + " = ? ORDER BY " + EXPENSE_DATE, new String[]{String.valueOf(tripId)});
+    private static String prefixed(String alias, String columns) {
+        return alias + columns.replace(", ", ", " + alias);
+    }
 
-        SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        SimpleDateFormat outputFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+    // Day totals in date order, keyed by "dd/MM/yyyy"
+    @Override
+    public Map<String, Long> getDayWiseExpenses(int tripId) {
+        MetricsRegistry.Span span = metrics.begin("db.getDayWiseExpenses");
+        try {
+            Map<String, Long> dayWiseExpenses = new LinkedHashMap<>();
+            SQLiteDatabase db = this.getReadableDatabase();
 
-        if (cursor.moveToFirst()) {
-            do {
-                String dateTime = cursor.getString(0);
-                double amount = cursor.getDouble(1);
+            Cursor cursor = query(db, "SELECT " + EXPENSE_DAY + ", SUM(" + EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
+                    " WHERE " + EXPENSE_TRIP_ID + " = ? GROUP BY " + EXPENSE_DAY + " ORDER BY " + EXPENSE_DAY,
+                    new String[]{String.valueOf(tripId)});
 
-                try {
-                    Date date = inputFormat.parse(dateTime);
-                    String dayKey = outputFormat.format(date);
+            if (cursor.moveToFirst()) {
+                do {
+                    dayWiseExpenses.put(DayBuckets.format(cursor.getInt(0)), cursor.getLong(1));
+                } while (cursor.moveToNext());
+            }
 
-                    if (dayWiseExpenses.containsKey(dayKey)) {
-                        dayWiseExpenses.put(dayKey, dayWiseExpenses.get(dayKey) + amount);
-                    } else {
-                        dayWiseExpenses.put(dayKey, amount);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
+            cursor.close();
+            return dayWiseExpenses;
+        } finally {
+            metrics.end(span);
+        }
+    }
+
+    // EXPORT
+    // Streams trips, participants, expenses and splits in id order to out and returns the row count.
+    // Rows come off the cursors a window at a time, so memory does not grow with the table sizes.
+    public long exportData(OutputStream out, TripExporter.Format format) throws IOException {
+        MetricsRegistry.Span span = metrics.begin("db.exportData");
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            TripExporter exporter = new TripExporter(out, format);
+            long rows = 0;
+            for (int t = 0; t < BACKUP_TABLES.length; t++) {
+                Cursor cursor = queryBackupTable(db, t);
+                try {
+                    rows += exporter.writeTable(BACKUP_TABLES[t], cursor);
+                } finally {
+                    cursor.close();
                 }
-            } while (cursor.moveToNext());
+            }
+            exporter.flush();
+            return rows;
+        } finally {
+            metrics.end(span);
         }
+    }
 
-        cursor.close();
-        db.close();
-        return dayWiseExpenses;
+    // Tables in export and snapshot order, parents first, with their columns and column types
+    private static final String[] BACKUP_TABLES = {TABLE_TRIPS, TABLE_PARTICIPANTS, TABLE_EXPENSES, TABLE_EXPENSE_SPLITS};
+    private static final String[][] BACKUP_COLUMNS = {
+            {TRIP_ID, TRIP_NAME, TRIP_START_DATE, TRIP_END_DATE, TRIP_STATUS},
+            {PARTICIPANT_ID, PARTICIPANT_TRIP_ID, PARTICIPANT_NAME},
+            {EXPENSE_ID, EXPENSE_TRIP_ID, EXPENSE_PAID_BY_ID, EXPENSE_SELF_PAID, EXPENSE_AMOUNT, EXPENSE_CATEGORY,
+                    EXPENSE_DESCRIPTION, EXPENSE_TIME, EXPENSE_DAY},
+            {SPLIT_EXPENSE_ID, SPLIT_PARTICIPANT_ID, SPLIT_TRIP_ID, SPLIT_SHARES, SPLIT_OWED}};
+    private static final byte[][] BACKUP_TYPES = {
+            {TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_TEXT, TripSnapshot.TYPE_TEXT, TripSnapshot.TYPE_TEXT,
+                    TripSnapshot.TYPE_TEXT},
+            {TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_TEXT},
+            {TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER,
+                    TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_TEXT, TripSnapshot.TYPE_TEXT, TripSnapshot.TYPE_INTEGER,
+                    TripSnapshot.TYPE_INTEGER},
+            {TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER, TripSnapshot.TYPE_INTEGER,
+                    TripSnapshot.TYPE_INTEGER}};
+
+    // Rows in primary key order, so restored tables come back in the same order
+    private Cursor queryBackupTable(SQLiteDatabase db, int table) {
+        String[] columns = BACKUP_COLUMNS[table];
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns[i]);
+        }
+        sql.append(" FROM ").append(BACKUP_TABLES[table]).append(" ORDER BY ").append(columns[0]);
+        return query(db, sql.toString(), null);
     }
 
-    private String getCurrentDateTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
+    // Binary snapshot of trips, participants, expenses and splits; see TripSnapshot for the format
+    public long writeSnapshot(WritableByteChannel out, boolean compress) throws IOException {
+        MetricsRegistry.Span span = metrics.begin("db.writeSnapshot");
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            TripSnapshot.Writer writer = new TripSnapshot.Writer(out, DATABASE_VERSION, compress);
+            long rows = 0;
+            for (int t = 0; t < BACKUP_TABLES.length; t++) {
+                Cursor cursor = queryBackupTable(db, t);
+                try {
+                    rows += writer.writeTable(BACKUP_TABLES[t], cursor, BACKUP_TYPES[t]);
+                } finally {
+                    cursor.close();
+                }
+            }
+            writer.finish();
+            return rows;
+        } finally {
+            metrics.end(span);
+        }
     }
 
-    // DATA MODELS
-    public static class Trip {
-        public int id;
-        public String name;
-        public String startDate;
-        public String endDate;
-        public String status;
-        public double totalExpense;
+    // Replaces every trip, participant, expense and split with the snapshot's rows in one transaction, so
+    // a bad checksum or truncated file leaves the current data untouched. The summary and search
+    // triggers are off during the load, and trip_summary and the search index are rebuilt at the end.
+    public long restoreSnapshot(ReadableByteChannel in) throws IOException {
+        MetricsRegistry.Span span = metrics.begin("db.restoreSnapshot");
+        try {
+            TripSnapshot.Reader reader = new TripSnapshot.Reader(in);
+            if (reader.schemaVersion() > DATABASE_VERSION) {
+                throw new TripSnapshot.CorruptSnapshotException("Snapshot is from a newer app version");
+            }
+            if (reader.schemaVersion() < OLDEST_SNAPSHOT_VERSION) {
+                throw new TripSnapshot.CorruptSnapshotException("Snapshot is from an app version before payer ids");
+            }
+
+            SQLiteDatabase db = this.getWritableDatabase();
+            long rows = 0;
+            db.beginTransaction();
+            try {
+                dropTripSummaryTriggers(db);
+                dropExpenseSearchTriggers(db);
+                db.execSQL("DELETE FROM " + TABLE_EXPENSE_SPLITS);
+                db.execSQL("DELETE FROM " + TABLE_EXPENSES);
+                db.execSQL("DELETE FROM " + TABLE_PARTICIPANTS);
+                db.execSQL("DELETE FROM " + TABLE_TRIPS);
+                db.execSQL("DELETE FROM " + TABLE_TRIP_SUMMARY);
+
+                while (reader.nextTable()) {
+                    SQLiteStatement insert = compileRestoreInsert(db, reader.table(), reader.columns());
+                    int columnCount = reader.columns().length;
+                    try {
+                        for (int blockRows = reader.nextBlock(); blockRows > 0; blockRows = reader.nextBlock()) {
+                            for (int r = 0; r < blockRows; r++) {
+                                for (int c = 0; c < columnCount; c++) {
+                                    if (reader.isNull(c, r)) {
+                                        insert.bindNull(c + 1);
+                                    } else if (reader.isText(c)) {
+                                        insert.bindString(c + 1, reader.getText(c, r));
+                                    } else {
+                                        insert.bindLong(c + 1, reader.getLong(c, r));
+                                    }
+                                }
+                                insert.executeInsert();
+                            }
+                            rows += blockRows;
+                        }
+                    } finally {
+                        insert.close();
+                    }
+                }
+
+                fillTripSummary(db, SELF_PAID_TEST);
+                createTripSummaryTriggers(db, SELF_PAID_TEST, PAYER_COLUMNS);
+                rebuildExpenseSearch(db);
+                createExpenseSearchTriggers(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                aggregateCache.clear();
+            }
+            return rows;
+        } finally {
+            metrics.end(span);
+        }
     }
 
-    public static class Expense {
-        public int id;
-        public int tripId;
-        public String paidBy;
-        public double amount;
-        public String category;
-        public String description;
-        public String date;
+    // Only tables and columns this schema knows are accepted, since names come from the file
+    private SQLiteStatement compileRestoreInsert(SQLiteDatabase db, String table, String[] columns)
+            throws TripSnapshot.CorruptSnapshotException {
+        int t = Arrays.asList(BACKUP_TABLES).indexOf(table);
+        if (t < 0) {
+            throw new TripSnapshot.CorruptSnapshotException("Unknown table " + table);
+        }
+        List<String> known = Arrays.asList(BACKUP_COLUMNS[t]);
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (!known.contains(columns[i])) {
+                throw new TripSnapshot.CorruptSnapshotException("Unknown column " + table + "." + columns[i]);
+            }
+            sql.append(i == 0 ? "" : ", ").append(columns[i]);
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        return db.compileStatement(sql.append(") VALUES (").append(values).append(")").toString());
     }
-}
\ No newline at end of file
+}
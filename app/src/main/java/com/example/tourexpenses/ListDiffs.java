@@ -0,0 +1,85 @@
+package com.example.tourexpenses;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.Objects;
+
+/**
+ * DiffUtil callbacks for the trip list and the flat expense list. Rows are matched by database id
+ * (or by day for expense list headers) and compared on everything the row displays, so a reload
+ * that changes one trip or adds one expense rebinds only the rows it touched.
+ */
+public final class ListDiffs {
+
+    private ListDiffs() {
+    }
+
+    public static final DiffUtil.ItemCallback<Trip> TRIPS = new DiffUtil.ItemCallback<Trip>() {
+        @Override
+        public boolean areItemsTheSame(Trip a, Trip b) {
+            return a.id == b.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Trip a, Trip b) {
+            return a.totalPaise == b.totalPaise
+                    && a.expenseCount == b.expenseCount
+                    && Objects.equals(a.name, b.name)
+                    && Objects.equals(a.startDate, b.startDate)
+                    && Objects.equals(a.endDate, b.endDate)
+                    && Objects.equals(a.status, b.status);
+        }
+    };
+
+    // Rows of TripDetailActivity's expense list: DayHeader or Expense
+    public static final DiffUtil.ItemCallback<Object> EXPENSE_ROWS = new DiffUtil.ItemCallback<Object>() {
+        @Override
+        public boolean areItemsTheSame(Object a, Object b) {
+            if (a instanceof DayHeader && b instanceof DayHeader) {
+                return ((DayHeader) a).day == ((DayHeader) b).day;
+            }
+            if (a instanceof Expense && b instanceof Expense) {
+                return ((Expense) a).id == ((Expense) b).id;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Object a, Object b) {
+            if (a instanceof DayHeader) {
+                DayHeader x = (DayHeader) a;
+                DayHeader y = (DayHeader) b;
+                return x.expenseCount == y.expenseCount && x.totalPaise == y.totalPaise && x.expanded == y.expanded;
+            }
+            Expense x = (Expense) a;
+            Expense y = (Expense) b;
+            return x.amountPaise == y.amountPaise
+                    && x.time == y.time
+                    && x.paidById == y.paidById
+                    && x.selfPaid == y.selfPaid
+                    && Objects.equals(x.paidBy, y.paidBy)
+                    && Objects.equals(x.category, y.category)
+                    && Objects.equals(x.description, y.description);
+        }
+    };
+
+    // Header row of the expense list; a new one is built on every change so diffs see old and new
+    public static class DayHeader {
+        public final int day;
+        public final int expenseCount;
+        public final long totalPaise;
+        public final boolean expanded;
+
+        public DayHeader(int day, int expenseCount, long totalPaise, boolean expanded) {
+            this.day = day;
+            this.expenseCount = expenseCount;
+            this.totalPaise = totalPaise;
+            this.expanded = expanded;
+        }
+
+        // Negative so header ids never collide with expense ids
+        public long stableId() {
+            return Long.MIN_VALUE + day;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.ExtendedFloatingActionButton;
 import java.text.SimpleDateFormat;
@@ -22,12 +23,13 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class MainActivity extends AppCompatActivity {
 
     private RecyclerView recyclerView;
     private TripAdapter adapter;
-    private DatabaseHelper db;
+    private TripRepository repository;
     private ExtendedFloatingActionButton fabAddTrip;
     private TextView tvActiveTrips, tvCompletedTrips, tvTripCount;
     private LinearLayout emptyState;
@@ -35,13 +37,20 @@ public class MainActivity extends AppCompatActivity {
     private Button btnCreateFirstTrip;
 
     private String currentFilter = "ALL";
+    // Timer started in onCreate for the first frame that shows trips
+    private long firstFrameStart;
+    private boolean firstFrameRecorded;
+
+    private static final String KEY_TRIPS = "trips";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        db = new DatabaseHelper(this);
+        AppMetrics.init(this);
+        firstFrameStart = MetricsRegistry.getInstance().startTimer();
+        repository = TripRepository.getInstance(this);
 
         // Initialize views
         recyclerView = findViewById(R.id.recyclerTrips);
@@ -57,6 +66,8 @@ public class MainActivity extends AppCompatActivity {
 
 
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new TripAdapter();
+        recyclerView.setAdapter(adapter);
 
         // Set click listeners
         fabAddTrip.setOnClickListener(v -> showAddTripDialog());
@@ -68,7 +79,6 @@ public class MainActivity extends AppCompatActivity {
         btnFilterCompleted.setOnClickListener(v -> setFilter("COMPLETED"));
 
         loadTrips();
-        updateStats();
     }
 
     private void setFilter(String filter) {
@@ -109,21 +119,32 @@ public class MainActivity extends AppCompatActivity {
         button.setElevation(8);
     }
 
+    // Timed from the request to the list being shown, with trace sections for the query and the bind
     private void loadTrips() {
-        List<DatabaseHelper.Trip> allTrips = db.getAllTrips();
-        List<DatabaseHelper.Trip> filteredTrips = new ArrayList<>();
-
-        // Filter trips based on current filter
-        for (DatabaseHelper.Trip trip : allTrips) {
-            if (currentFilter.equals("ALL")) {
-                filteredTrips.add(trip);
-            } else if (currentFilter.equals(trip.status)) {
-                filteredTrips.add(trip);
+        long requested = MetricsRegistry.getInstance().startTimer();
+        // "ALL" is no status filter
+        String status = "ALL".equals(currentFilter) ? null : currentFilter;
+        repository.load(KEY_TRIPS, db -> {
+            long section = AppMetrics.beginSection("ui.loadTrips.query");
+            try {
+                TripList list = new TripList();
+                list.trips = db.getTripsByStatus(status);
+                list.statusCounts = db.getTripStatusCounts();
+                return list;
+            } finally {
+                AppMetrics.endSection("ui.loadTrips.query", section);
             }
-        }
+        }, list -> {
+            long section = AppMetrics.beginSection("ui.loadTrips.show");
+            showTrips(list);
+            AppMetrics.endSection("ui.loadTrips.show", section);
+            MetricsRegistry.getInstance().record("ui.loadTrips", requested);
+        }, e -> Toast.makeText(this, "Could not load trips", Toast.LENGTH_SHORT).show());
+    }
 
-        adapter = new TripAdapter(filteredTrips);
-        recyclerView.setAdapter(adapter);
+    private void showTrips(TripList list) {
+        List<Trip> filteredTrips = list.trips;
+        adapter.submitList(filteredTrips);
 
         // Show/hide empty state
         if (filteredTrips.isEmpty()) {
@@ -136,23 +157,21 @@ public class MainActivity extends AppCompatActivity {
 
         // Update trip count
         tvTripCount.setText(filteredTrips.size() + (filteredTrips.size() == 1 ? " trip" : " trips"));
-    }
 
-    private void updateStats() {
-        List<DatabaseHelper.Trip> allTrips = db.getAllTrips();
-        int activeCount = 0;
-        int completedCount = 0;
+        updateStats(list.statusCounts);
 
-        for (DatabaseHelper.Trip trip : allTrips) {
-            if ("ONGOING".equals(trip.status)) {
-                activeCount++;
-            } else if ("COMPLETED".equals(trip.status)) {
-                completedCount++;
-            }
+        if (!firstFrameRecorded) {
+            firstFrameRecorded = true;
+            AppMetrics.recordFirstFrame(this, "ui.main.firstFrame", firstFrameStart);
         }
+    }
 
-        tvActiveTrips.setText(String.valueOf(activeCount));
-        tvCompletedTrips.setText(String.valueOf(completedCount));
+    private void updateStats(Map<String, Integer> statusCounts) {
+        Integer activeCount = statusCounts.get("ONGOING");
+        Integer completedCount = statusCounts.get("COMPLETED");
+
+        tvActiveTrips.setText(String.valueOf(activeCount == null ? 0 : activeCount));
+        tvCompletedTrips.setText(String.valueOf(completedCount == null ? 0 : completedCount));
     }
 
     private void showAddTripDialog() {
@@ -241,13 +260,13 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
 
-            long id = db.addTrip(name, startDate, endDate, participants);
-            if (id > 0) {
-                Toast.makeText(this, "Trip created with " + participants.size() + " members", Toast.LENGTH_SHORT).show();
-                loadTrips();
-                updateStats();
-                dialog.dismiss();
-            }
+            repository.execute(db -> db.addTrip(name, startDate, endDate, participants), id -> {
+                if (id > 0) {
+                    Toast.makeText(this, "Trip created with " + participants.size() + " members", Toast.LENGTH_SHORT).show();
+                    loadTrips();
+                    dialog.dismiss();
+                }
+            }, e -> Toast.makeText(this, "Could not create trip", Toast.LENGTH_SHORT).show());
         });
 
         btnCancel.setOnClickListener(v -> dialog.dismiss());
@@ -259,28 +278,104 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         loadTrips();
-        updateStats();
     }
 
-    // RecyclerView Adapter
-    class TripAdapter extends RecyclerView.Adapter<TripAdapter.TripViewHolder> {
+    @Override
+    protected void onPause() {
+        super.onPause();
+        AppMetrics.dump(this, repository);
+    }
 
-        private List<DatabaseHelper.Trip> trips;
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.cancel(KEY_TRIPS);
+    }
 
-        public TripAdapter(List<DatabaseHelper.Trip> trips) {
-            this.trips = trips;
+    // Results loaded off the main thread
+    static class TripList {
+        List<Trip> trips;
+        Map<String, Integer> statusCounts;
+    }
+
+    // RecyclerView Adapter; reloads are diffed against the shown list so only changed trips rebind
+    class TripAdapter extends ListAdapter<Trip, TripAdapter.TripViewHolder> {
+
+        TripAdapter() {
+            super(ListDiffs.TRIPS);
+            setHasStableIds(true);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return getItem(position).id;
         }
 
         @Override
         public TripViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
             View view = LayoutInflater.from(parent.getContext())
                     .inflate(R.layout.item_trip, parent, false);
-            return new TripViewHolder(view);
+            TripViewHolder holder = new TripViewHolder(view);
+
+            holder.itemView.setOnClickListener(v -> {
+                Trip trip = tripAt(holder);
+                if (trip == null) {
+                    return;
+                }
+                Intent intent = new Intent(MainActivity.this, TripDetailActivity.class);
+                intent.putExtra("TRIP_ID", trip.id);
+                intent.putExtra("TRIP_NAME", trip.name);
+                intent.putExtra("TRIP_STATUS", trip.status);
+                startActivity(intent);
+            });
+
+            holder.btnMarkComplete.setOnClickListener(v -> {
+                Trip trip = tripAt(holder);
+                if (trip == null) {
+                    return;
+                }
+                String newStatus = "ONGOING".equals(trip.status) ? "COMPLETED" : "ONGOING";
+                repository.execute(db -> {
+                    db.updateTripStatus(trip.id, newStatus);
+                    return null;
+                }, result -> {
+                    loadTrips();
+                    Toast.makeText(MainActivity.this, "Trip status updated", Toast.LENGTH_SHORT).show();
+                }, e -> Toast.makeText(MainActivity.this, "Could not update trip", Toast.LENGTH_SHORT).show());
+            });
+
+            holder.btnDelete.setOnClickListener(v -> {
+                Trip trip = tripAt(holder);
+                if (trip == null) {
+                    return;
+                }
+                new AlertDialog.Builder(MainActivity.this)
+                        .setTitle("Delete Trip")
+                        .setMessage("Are you sure? All expenses and participants will be deleted.")
+                        .setPositiveButton("Delete", (d, w) -> {
+                            repository.execute(db -> {
+                                db.deleteTrip(trip.id);
+                                return null;
+                            }, result -> {
+                                loadTrips();
+                                Toast.makeText(MainActivity.this, "Trip deleted", Toast.LENGTH_SHORT).show();
+                            }, e -> Toast.makeText(MainActivity.this, "Could not delete trip",
+                                    Toast.LENGTH_SHORT).show());
+                        })
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            });
+            return holder;
+        }
+
+        private Trip tripAt(TripViewHolder holder) {
+            int position = holder.getBindingAdapterPosition();
+            return position == RecyclerView.NO_POSITION ? null : getItem(position);
         }
 
         @Override
         public void onBindViewHolder(TripViewHolder holder, int position) {
-            DatabaseHelper.Trip trip = trips.get(position);
+            Trip trip = getItem(position);
             holder.tvTripName.setText(trip.name);
 
             String dateRange = "";
@@ -294,7 +389,7 @@ public class MainActivity extends AppCompatActivity {
             }
             holder.tvTripDates.setText(dateRange);
 
-            holder.tvTotalExpense.setText("₹" + String.format("%.2f", trip.totalExpense));
+            holder.tvTotalExpense.setText(Money.format(trip.totalPaise));
             holder.tvStatus.setText(trip.status);
 
             if ("COMPLETED".equals(trip.status)) {
@@ -308,41 +403,6 @@ public class MainActivity extends AppCompatActivity {
                 holder.btnMarkComplete.setText("Complete");
                 holder.btnMarkComplete.setIcon(getResources().getDrawable(android.R.drawable.ic_menu_upload));
             }
-
-            holder.itemView.setOnClickListener(v -> {
-                Intent intent = new Intent(MainActivity.this, TripDetailActivity.class);
-                intent.putExtra("TRIP_ID", trip.id);
-                intent.putExtra("TRIP_NAME", trip.name);
-                intent.putExtra("TRIP_STATUS", trip.status);
-                startActivity(intent);
-            });
-
-            holder.btnMarkComplete.setOnClickListener(v -> {
-                String newStatus = "ONGOING".equals(trip.status) ? "COMPLETED" : "ONGOING";
-                db.updateTripStatus(trip.id, newStatus);
-                loadTrips();
-                updateStats();
-                Toast.makeText(MainActivity.this, "Trip status updated", Toast.LENGTH_SHORT).show();
-            });
-
-            holder.btnDelete.setOnClickListener(v -> {
-                new AlertDialog.Builder(MainActivity.this)
-                        .setTitle("Delete Trip")
-                        .setMessage("Are you sure? All expenses and participants will be deleted.")
-                        .setPositiveButton("Delete", (d, w) -> {
-                            db.deleteTrip(trip.id);
-                            loadTrips();
-                            updateStats();
-                            Toast.makeText(MainActivity.this, "Trip deleted", Toast.LENGTH_SHORT).show();
-                        })
-                        .setNegativeButton("Cancel", null)
-                        .show();
-            });
-        }
-
-        @Override
-        public int getItemCount() {
-            return trips.size();
         }
 
         class TripViewHolder extends RecyclerView.ViewHolder {
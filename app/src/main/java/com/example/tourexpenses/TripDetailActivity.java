@@ -16,6 +16,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import java.text.ParseException;
@@ -23,19 +24,30 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 public class TripDetailActivity extends AppCompatActivity {
 
-    private DatabaseHelper db;
+    private TripRepository repository;
     private int tripId;
     private String tripName;
     private String tripStatus;
     private RecyclerView recyclerView;
-    private DateGroupAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    private ExpenseListAdapter adapter;
+    // Keyset position of the last loaded expense; loads from an older generation are dropped
+    private long nextPageTime;
+    private int nextPageId;
+    private boolean hasMorePages;
+    private boolean pageLoading;
+    private int pageGeneration;
+    // Timer started in onCreate for the first frame that shows expenses
+    private long firstFrameStart;
+    private boolean firstFrameRecorded;
     private TextView tvTripTotal, tvMyShare, tvExpenseCount;
     private FloatingActionButton fabAddExpense;
     private LinearLayout emptyState;
@@ -44,12 +56,19 @@ public class TripDetailActivity extends AppCompatActivity {
     private boolean isSelfPaid = false;
     private String selectedExpenseDate = "";
 
+    private static final int PAGE_SIZE = 100;
+    // Start loading the next page when the last loaded row is this close to the screen
+    private static final int PREFETCH_ROWS = 10;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_trip_detail);
 
-        db = new DatabaseHelper(this);
+        // Also here, since a restored process can start on this screen
+        AppMetrics.init(this);
+        firstFrameStart = MetricsRegistry.getInstance().startTimer();
+        repository = TripRepository.getInstance(this);
         tripId = getIntent().getIntExtra("TRIP_ID", -1);
         tripName = getIntent().getStringExtra("TRIP_NAME");
         tripStatus = getIntent().getStringExtra("TRIP_STATUS");
@@ -74,7 +93,19 @@ public class TripDetailActivity extends AppCompatActivity {
         emptyState = findViewById(R.id.emptyState);
         btnViewSettlement = findViewById(R.id.btnViewSettlement);
 
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new ExpenseListAdapter();
+        recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView rv, int dx, int dy) {
+                // Also called with 0, 0 after a layout, which keeps loading until the screen is full
+                if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
 
         fabAddExpense.setOnClickListener(v -> showAddExpenseDialog());
         btnViewSettlement.setOnClickListener(v -> showSettlementReport());
@@ -121,11 +152,15 @@ public class TripDetailActivity extends AppCompatActivity {
         });
 
         // Setup participants spinner
-        List<String> participants = db.getTripParticipants(tripId);
-        ArrayAdapter<String> adapterSpinner = new ArrayAdapter<>(this,
-                R.layout.spinner_item, participants);
+        ArrayAdapter<Participant> adapterSpinner = new ArrayAdapter<>(this,
+                R.layout.spinner_item, new ArrayList<>());
         adapterSpinner.setDropDownViewResource(R.layout.spinner_dropdown_item);
         spinnerPaidBy.setAdapter(adapterSpinner);
+        repository.load(participantsKey(), db -> db.getParticipants(tripId), participants -> {
+            adapterSpinner.clear();
+            adapterSpinner.addAll(participants);
+            adapterSpinner.notifyDataSetChanged();
+        });
 
         // Reset category selection
         selectedCategory = "Food";
@@ -209,43 +244,49 @@ public class TripDetailActivity extends AppCompatActivity {
                 return;
             }
 
-            try {
-                double amount = Double.parseDouble(amountStr);
-                String paidBy = isSelfPaid ? "SELF_PAID" : spinnerPaidBy.getSelectedItem().toString();
+            if (!isSelfPaid && spinnerPaidBy.getSelectedItem() == null) {
+                Toast.makeText(this, "Please select who paid", Toast.LENGTH_SHORT).show();
+                return;
+            }
 
-                // Convert selected date to database format (yyyy-MM-dd HH:mm:ss)
-                SimpleDateFormat displayFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                SimpleDateFormat dbFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+            try {
+                long amount = Money.parse(amountStr);
+                boolean selfPaid = isSelfPaid;
+                long paidById = selfPaid ? 0 : ((Participant) spinnerPaidBy.getSelectedItem()).id;
 
-                String dbDateTime;
+                // Selected day at the current time of day, to keep chronological order within the day
+                long expenseTime;
                 try {
-                    Date date = displayFormat.parse(selectedExpenseDate);
-                    // Set time to current time to maintain chronological order within the day
+                    Date date = dateFormat.parse(selectedExpenseDate);
+                    Calendar now = Calendar.getInstance();
                     Calendar cal = Calendar.getInstance();
                     cal.setTime(date);
-                    cal.set(Calendar.HOUR_OF_DAY, Calendar.getInstance().get(Calendar.HOUR_OF_DAY));
-                    cal.set(Calendar.MINUTE, Calendar.getInstance().get(Calendar.MINUTE));
-                    cal.set(Calendar.SECOND, Calendar.getInstance().get(Calendar.SECOND));
-                    dbDateTime = dbFormat.format(cal.getTime());
+                    cal.set(Calendar.HOUR_OF_DAY, now.get(Calendar.HOUR_OF_DAY));
+                    cal.set(Calendar.MINUTE, now.get(Calendar.MINUTE));
+                    cal.set(Calendar.SECOND, now.get(Calendar.SECOND));
+                    expenseTime = cal.getTimeInMillis();
                 } catch (ParseException e) {
                     e.printStackTrace();
-                    dbDateTime = dbFormat.format(new Date());
+                    expenseTime = System.currentTimeMillis();
                 }
 
-                long id = db.addExpense(tripId, paidBy, amount, selectedCategory, description, dbDateTime);
-
-                if (id > 0) {
-                    // Show success message with date indicator
-                    String todayDate = dateFormat.format(new Date());
-                    String message = selectedExpenseDate.equals(todayDate)
-                            ? "Expense added successfully"
-                            : "Expense added to " + selectedExpenseDate;
-                    Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
-
-                    loadExpenses();
-                    updateTotals();
-                    dialog.dismiss();
-                }
+                String category = selectedCategory;
+                String expenseDate = selectedExpenseDate;
+                long time = expenseTime;
+                repository.execute(db -> db.addExpense(tripId, paidById, selfPaid, amount, category, description, time), id -> {
+                    if (id > 0) {
+                        // Show success message with date indicator
+                        String todayDate = dateFormat.format(new Date());
+                        String message = expenseDate.equals(todayDate)
+                                ? "Expense added successfully"
+                                : "Expense added to " + expenseDate;
+                        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+
+                        loadExpenses();
+                        updateTotals();
+                        dialog.dismiss();
+                    }
+                }, e -> Toast.makeText(this, "Could not save expense", Toast.LENGTH_SHORT).show());
             } catch (NumberFormatException e) {
                 Toast.makeText(this, "Invalid amount", Toast.LENGTH_SHORT).show();
             }
@@ -260,41 +301,89 @@ public class TripDetailActivity extends AppCompatActivity {
         category.setBackgroundResource(R.drawable.category_selector);
     }
 
-    private void loadExpenses() {
-        List<DatabaseHelper.Expense> expenses = db.getTripExpenses(tripId);
+    private String expensesKey() {
+        return "expenses:" + tripId;
+    }
 
-        // Group expenses by date
-        Map<String, DateGroup> dateGroups = new LinkedHashMap<>();
-        SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        SimpleDateFormat outputFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+    private String totalsKey() {
+        return "totals:" + tripId;
+    }
 
-        for (DatabaseHelper.Expense expense : expenses) {
-            try {
-                Date date = inputFormat.parse(expense.date);
-                String dateKey = outputFormat.format(date);
-
-                if (!dateGroups.containsKey(dateKey)) {
-                    DateGroup group = new DateGroup();
-                    group.date = dateKey;
-                    group.expenses = new ArrayList<>();
-                    group.totalAmount = 0;
-                    dateGroups.put(dateKey, group);
-                }
+    private String settlementKey() {
+        return "settlement:" + tripId;
+    }
 
-                DateGroup group = dateGroups.get(dateKey);
-                group.expenses.add(expense);
-                group.totalAmount += expense.amount;
+    private String participantsKey() {
+        return "participants:" + tripId;
+    }
+
+    private String expensePageKey() {
+        return "expenses:page:" + tripId;
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+    // Reloads the list from the newest expense; timed and traced like MainActivity.loadTrips
+    private void loadExpenses() {
+        long requested = MetricsRegistry.getInstance().startTimer();
+        pageGeneration++;
+        repository.cancel(expensePageKey());
+        pageLoading = true;
+        int generation = pageGeneration;
+        // Reload as many rows as are already shown, so the diff only touches what changed
+        int limit = Math.max(PAGE_SIZE, adapter.loadedExpenseCount());
+        repository.load(expensesKey(), db -> {
+            long section = AppMetrics.beginSection("ui.loadExpenses.query");
+            try {
+                return loadPage(db, Long.MAX_VALUE, Integer.MAX_VALUE, limit);
+            } finally {
+                AppMetrics.endSection("ui.loadExpenses.query", section);
             }
-        }
+        }, page -> {
+            if (generation == pageGeneration) {
+                long section = AppMetrics.beginSection("ui.loadExpenses.show");
+                showExpenses(page);
+                AppMetrics.endSection("ui.loadExpenses.show", section);
+                MetricsRegistry.getInstance().record("ui.loadExpenses", requested);
+            }
+        }, e -> onPageFailed(generation));
+    }
 
-        List<DateGroup> groupList = new ArrayList<>(dateGroups.values());
-        adapter = new DateGroupAdapter(groupList);
-        recyclerView.setAdapter(adapter);
+    private void loadNextPage() {
+        if (!hasMorePages || pageLoading) {
+            return;
+        }
+        pageLoading = true;
+        int generation = pageGeneration;
+        long afterTime = nextPageTime;
+        int afterId = nextPageId;
+        repository.load(expensePageKey(), db -> loadPage(db, afterTime, afterId, PAGE_SIZE), page -> {
+            if (generation == pageGeneration) {
+                appendExpenses(page);
+            }
+        }, e -> onPageFailed(generation));
+    }
 
+    // Runs on the repository thread: one keyset page plus the header totals of the days it touches
+    private ExpensePage loadPage(DatabaseHelper db, long afterTime, int afterId, int limit) {
+        ExpensePage page = new ExpensePage();
+        List<Expense> expenses = db.getTripExpensesPage(tripId, afterTime, afterId, limit);
+        page.hasMore = expenses.size() == limit;
         if (expenses.isEmpty()) {
+            page.groups = new ArrayList<>();
+            return page;
+        }
+
+        Expense last = expenses.get(expenses.size() - 1);
+        page.nextTime = last.time;
+        page.nextId = last.id;
+        page.groups = DayBuckets.groupByDay(expenses, db.getDaySummaries(tripId, last.day, expenses.get(0).day));
+        return page;
+    }
+
+    private void showExpenses(ExpensePage page) {
+        adapter.setGroups(page.groups);
+        onPageLoaded(page);
+
+        if (adapter.isEmpty()) {
             emptyState.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
@@ -302,51 +391,105 @@ public class TripDetailActivity extends AppCompatActivity {
             recyclerView.setVisibility(View.VISIBLE);
         }
 
-        tvExpenseCount.setText(expenses.size() + (expenses.size() == 1 ? " item" : " items"));
+        if (!firstFrameRecorded) {
+            firstFrameRecorded = true;
+            AppMetrics.recordFirstFrame(this, "ui.tripDetail.firstFrame", firstFrameStart);
+        }
+    }
+
+    private void appendExpenses(ExpensePage page) {
+        adapter.appendGroups(page.groups);
+        onPageLoaded(page);
+    }
+
+    private void onPageLoaded(ExpensePage page) {
+        nextPageTime = page.nextTime;
+        nextPageId = page.nextId;
+        hasMorePages = page.hasMore;
+        pageLoading = false;
+    }
+
+    // Lets the next scroll or reload try again
+    private void onPageFailed(int generation) {
+        if (generation == pageGeneration) {
+            pageLoading = false;
+            Toast.makeText(this, "Could not load expenses", Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void updateTotals() {
-        double total = db.getTripTotalExpense(tripId);
-        tvTripTotal.setText("₹" + String.format("%.2f", total));
+        repository.load(totalsKey(), db -> {
+            TripTotals totals = new TripTotals();
+            // All three come from the cached trip aggregates
+            Settlement settlement = db.getSettlement(tripId);
+            totals.total = settlement.total;
+            totals.expenseCount = db.getTripExpenseCount(tripId);
+            totals.participantCount = settlement.participants.length;
+            return totals;
+        }, this::showTotals);
+    }
+
+    private void showTotals(TripTotals totals) {
+        long total = totals.total;
+        tvTripTotal.setText(Money.format(total));
+        tvExpenseCount.setText(totals.expenseCount + (totals.expenseCount == 1 ? " item" : " items"));
 
-        List<String> participants = db.getTripParticipants(tripId);
-        if (!participants.isEmpty()) {
-            double perPerson = total / participants.size();
-            tvMyShare.setText("₹" + String.format("%.2f", perPerson) + " per person");
+        if (totals.participantCount > 0) {
+            long perPerson = total / totals.participantCount;
+            tvMyShare.setText(Money.format(perPerson) + " per person");
         } else {
             tvMyShare.setText("No participants");
         }
     }
 
     private void showSettlementReport() {
+        long requested = MetricsRegistry.getInstance().startTimer();
+        repository.load(settlementKey(), db -> {
+            long section = AppMetrics.beginSection("ui.showSettlementReport.query");
+            try {
+                SettlementData data = new SettlementData();
+                data.settlement = db.getSettlement(tripId);
+                data.dayWiseExpenses = db.getDayWiseExpenses(tripId);
+                data.transfers = SettlementSolver.solve(data.settlement.participants, data.settlement.balances);
+                return data;
+            } finally {
+                AppMetrics.endSection("ui.showSettlementReport.query", section);
+            }
+        }, data -> {
+            long section = AppMetrics.beginSection("ui.showSettlementReport.show");
+            showSettlementDialog(data);
+            AppMetrics.endSection("ui.showSettlementReport.show", section);
+            MetricsRegistry.getInstance().record("ui.showSettlementReport", requested);
+        }, e -> Toast.makeText(this, "Could not load settlement", Toast.LENGTH_SHORT).show());
+    }
+
+    private void showSettlementDialog(SettlementData data) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         View view = LayoutInflater.from(this).inflate(R.layout.dialog_settlement, null);
 
         LinearLayout settlementContent = view.findViewById(R.id.settlementContent);
         Button btnClose = view.findViewById(R.id.btnCloseSettlement);
 
-        // Get all data
-        Map<String, Double> balances = db.getParticipantBalances(tripId);
-        Map<String, Double> spending = db.getParticipantTotalSpending(tripId);
-        Map<String, Double> dayWiseExpenses = db.getDayWiseExpenses(tripId);
-        double totalExpense = db.getTripTotalExpense(tripId);
-        List<String> participants = db.getTripParticipants(tripId);
+        Settlement settlement = data.settlement;
+        String[] participants = settlement.participants;
+        Map<String, Long> dayWiseExpenses = data.dayWiseExpenses;
+        long totalExpense = settlement.total;
 
         // 1. TRIP OVERVIEW SECTION
         addSectionTitle(settlementContent, "📊 Trip Overview");
 
         View overviewCard = createInfoCard(
                 "Total Trip Expense",
-                "₹" + String.format("%.2f", totalExpense),
+                Money.format(totalExpense),
                 "#6366F1"
         );
         settlementContent.addView(overviewCard);
 
-        if (!participants.isEmpty()) {
-            double perPerson = totalExpense / participants.size();
+        if (participants.length > 0) {
+            long perPerson = totalExpense / participants.length;
             View perPersonCard = createInfoCard(
                     "Per Person Share",
-                    "₹" + String.format("%.2f", perPerson),
+                    Money.format(perPerson),
                     "#10B981"
             );
             settlementContent.addView(perPersonCard);
@@ -358,7 +501,7 @@ public class TripDetailActivity extends AppCompatActivity {
         if (!dayWiseExpenses.isEmpty()) {
             addSectionTitle(settlementContent, "📅 Day-wise Expenses");
 
-            for (Map.Entry<String, Double> entry : dayWiseExpenses.entrySet()) {
+            for (Map.Entry<String, Long> entry : dayWiseExpenses.entrySet()) {
                 View dayView = createDayWiseView(entry.getKey(), entry.getValue());
                 settlementContent.addView(dayView);
             }
@@ -369,11 +512,8 @@ public class TripDetailActivity extends AppCompatActivity {
         // 3. INDIVIDUAL SPENDING SECTION
         addSectionTitle(settlementContent, "💳 Individual Spending");
 
-        for (Map.Entry<String, Double> entry : spending.entrySet()) {
-            String name = entry.getKey();
-            double spent = entry.getValue();
-
-            View spendingView = createSpendingView(name, spent, totalExpense);
+        for (int i = 0; i < participants.length; i++) {
+            View spendingView = createSpendingView(participants[i], settlement.paid[i], totalExpense);
             settlementContent.addView(spendingView);
         }
 
@@ -383,7 +523,9 @@ public class TripDetailActivity extends AppCompatActivity {
         addSectionTitle(settlementContent, "⚖️ Who Owes Whom");
 
         TextView balanceInfo = new TextView(this);
-        balanceInfo.setText("Based on equal split among all participants");
+        balanceInfo.setText(settlement.splitTotal > 0
+                ? "Based on each expense's split; the rest split equally"
+                : "Based on equal split among all participants");
         balanceInfo.setTextSize(11);
         balanceInfo.setTextColor(android.graphics.Color.parseColor("#6B7280"));
         LinearLayout.LayoutParams infoParams = new LinearLayout.LayoutParams(
@@ -394,10 +536,10 @@ public class TripDetailActivity extends AppCompatActivity {
         balanceInfo.setLayoutParams(infoParams);
         settlementContent.addView(balanceInfo);
 
-        for (Map.Entry<String, Double> entry : balances.entrySet()) {
-            String name = entry.getKey();
-            double balance = entry.getValue();
-            double spent = spending.get(name) != null ? spending.get(name) : 0;
+        for (int i = 0; i < participants.length; i++) {
+            String name = participants[i];
+            long balance = settlement.balances[i];
+            long spent = settlement.paid[i];
 
             // Create custom balance view instead of using item_settlement_entry
             LinearLayout balanceCard = new LinearLayout(this);
@@ -444,7 +586,7 @@ public class TripDetailActivity extends AppCompatActivity {
             infoLayout.addView(nameView);
 
             TextView paidView = new TextView(this);
-            paidView.setText("Paid: ₹" + String.format("%.2f", spent));
+            paidView.setText("Paid: " + Money.format(spent));
             paidView.setTextSize(11);
             paidView.setTextColor(android.graphics.Color.parseColor("#6B7280"));
             LinearLayout.LayoutParams paidParams = new LinearLayout.LayoutParams(
@@ -463,10 +605,10 @@ public class TripDetailActivity extends AppCompatActivity {
             balanceView.setTypeface(null, android.graphics.Typeface.BOLD);
 
             if (balance > 0) {
-                balanceView.setText("Gets ₹" + String.format("%.2f", Math.abs(balance)));
+                balanceView.setText("Gets " + Money.format(Math.abs(balance)));
                 balanceView.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
             } else if (balance < 0) {
-                balanceView.setText("Owes ₹" + String.format("%.2f", Math.abs(balance)));
+                balanceView.setText("Owes " + Money.format(Math.abs(balance)));
                 balanceView.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
             } else {
                 balanceView.setText("Settled ✓");
@@ -477,6 +619,16 @@ public class TripDetailActivity extends AppCompatActivity {
             settlementContent.addView(balanceCard);
         }
 
+        // 5. SETTLE UP SECTION
+        if (!data.transfers.isEmpty()) {
+            addDivider(settlementContent);
+            addSectionTitle(settlementContent, "💸 Settle Up");
+
+            for (SettlementSolver.Transfer transfer : data.transfers) {
+                settlementContent.addView(createTransferView(transfer));
+            }
+        }
+
         builder.setView(view);
         AlertDialog dialog = builder.create();
 
@@ -547,7 +699,7 @@ public class TripDetailActivity extends AppCompatActivity {
         return card;
     }
 
-    private View createDayWiseView(String date, double amount) {
+    private View createDayWiseView(String date, long amount) {
         LinearLayout dayView = new LinearLayout(this);
         dayView.setOrientation(LinearLayout.HORIZONTAL);
         dayView.setBackgroundResource(R.drawable.input_background);
@@ -589,7 +741,7 @@ public class TripDetailActivity extends AppCompatActivity {
 
         // Amount
         TextView amountView = new TextView(this);
-        amountView.setText("₹" + String.format("%.2f", amount));
+        amountView.setText(Money.format(amount));
         amountView.setTextSize(15);
         amountView.setTypeface(null, android.graphics.Typeface.BOLD);
         amountView.setTextColor(android.graphics.Color.parseColor("#6366F1"));
@@ -598,7 +750,46 @@ public class TripDetailActivity extends AppCompatActivity {
         return dayView;
     }
 
-    private View createSpendingView(String name, double spent, double totalExpense) {
+    private View createTransferView(SettlementSolver.Transfer transfer) {
+        LinearLayout transferView = new LinearLayout(this);
+        transferView.setOrientation(LinearLayout.HORIZONTAL);
+        transferView.setBackgroundResource(R.drawable.input_background);
+        int padding = (int) (12 * getResources().getDisplayMetrics().density);
+        transferView.setPadding(padding, padding, padding, padding);
+        transferView.setGravity(android.view.Gravity.CENTER_VERTICAL);
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+        );
+        params.setMargins(0, 0, 0, 8);
+        transferView.setLayoutParams(params);
+
+        // Payer to payee
+        TextView namesView = new TextView(this);
+        namesView.setText(transfer.from + " → " + transfer.to);
+        namesView.setTextSize(14);
+        namesView.setTypeface(null, android.graphics.Typeface.BOLD);
+        namesView.setTextColor(android.graphics.Color.parseColor("#1F2937"));
+        LinearLayout.LayoutParams namesParams = new LinearLayout.LayoutParams(
+                0,
+                LinearLayout.LayoutParams.WRAP_CONTENT,
+                1
+        );
+        namesView.setLayoutParams(namesParams);
+        transferView.addView(namesView);
+
+        // Amount
+        TextView amountView = new TextView(this);
+        amountView.setText(Money.format(transfer.amountPaise));
+        amountView.setTextSize(15);
+        amountView.setTypeface(null, android.graphics.Typeface.BOLD);
+        amountView.setTextColor(android.graphics.Color.parseColor("#6366F1"));
+        transferView.addView(amountView);
+
+        return transferView;
+    }
+
+    private View createSpendingView(String name, long spent, long totalExpense) {
         LinearLayout spendingView = new LinearLayout(this);
         spendingView.setOrientation(LinearLayout.VERTICAL);
         spendingView.setBackgroundResource(R.drawable.input_background);
@@ -630,7 +821,7 @@ public class TripDetailActivity extends AppCompatActivity {
         headerRow.addView(nameView);
 
         TextView amountView = new TextView(this);
-        amountView.setText("₹" + String.format("%.2f", spent));
+        amountView.setText(Money.format(spent));
         amountView.setTextSize(15);
         amountView.setTypeface(null, android.graphics.Typeface.BOLD);
         amountView.setTextColor(android.graphics.Color.parseColor("#10B981"));
@@ -639,7 +830,7 @@ public class TripDetailActivity extends AppCompatActivity {
         spendingView.addView(headerRow);
 
         // Percentage text (removed progress bar)
-        double percentage = totalExpense > 0 ? (spent / totalExpense) * 100 : 0;
+        double percentage = totalExpense > 0 ? (spent * 100.0) / totalExpense : 0;
 
         TextView percentView = new TextView(this);
         percentView.setText(String.format("%.1f%% of total expenses", percentage));
@@ -663,104 +854,208 @@ public class TripDetailActivity extends AppCompatActivity {
         updateTotals();
     }
 
-    // Date Group Data Class
-    class DateGroup {
-        String date;
-        List<DatabaseHelper.Expense> expenses;
-        double totalAmount;
-        boolean isExpanded = false;
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (repository != null) {
+            AppMetrics.dump(this, repository);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (repository != null) {
+            repository.cancel(expensesKey());
+            repository.cancel(expensePageKey());
+            repository.cancel(totalsKey());
+            repository.cancel(settlementKey());
+            repository.cancel(participantsKey());
+        }
     }
 
-    // RecyclerView Adapter for Date Groups
-    class DateGroupAdapter extends RecyclerView.Adapter<DateGroupAdapter.DateGroupViewHolder> {
+    // Results loaded off the main thread
+    static class TripTotals {
+        long total;
+        int expenseCount;
+        int participantCount;
+    }
 
-        private List<DateGroup> dateGroups;
+    static class ExpensePage {
+        List<DateGroup> groups;
+        long nextTime;
+        int nextId;
+        boolean hasMore;
+    }
 
-        public DateGroupAdapter(List<DateGroup> dateGroups) {
-            this.dateGroups = dateGroups;
+    static class SettlementData {
+        Settlement settlement;
+        Map<String, Long> dayWiseExpenses;
+        List<SettlementSolver.Transfer> transfers;
+    }
+
+    // Flat list of rows: a header per day, followed by that day's loaded expenses while it is
+    // expanded. Every change publishes a new row list and the diff runs off the main thread, so
+    // only rows that changed are rebound and expense views get recycled. Inflations and binds are
+    // counted in MetricsRegistry, which only debuggable builds switch on.
+    class ExpenseListAdapter extends ListAdapter<Object, RecyclerView.ViewHolder> {
+
+        static final int TYPE_HEADER = 0;
+        static final int TYPE_EXPENSE = 1;
+
+        private final List<DateGroup> dateGroups = new ArrayList<>();
+        private final Set<Integer> expandedDays = new HashSet<>();
+
+        ExpenseListAdapter() {
+            super(ListDiffs.EXPENSE_ROWS);
+            setHasStableIds(true);
         }
 
-        @Override
-        public DateGroupViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            View view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.item_date_group, parent, false);
-            return new DateGroupViewHolder(view);
+        void setGroups(List<DateGroup> groups) {
+            dateGroups.clear();
+            dateGroups.addAll(groups);
+            publish();
         }
 
-        @Override
-        public void onBindViewHolder(DateGroupViewHolder holder, int position) {
-            DateGroup group = dateGroups.get(position);
+        void appendGroups(List<DateGroup> groups) {
+            int start = 0;
+            // A day split across two pages continues in the group already on screen
+            if (!groups.isEmpty() && !dateGroups.isEmpty()) {
+                DateGroup tail = dateGroups.get(dateGroups.size() - 1);
+                if (tail.day == groups.get(0).day) {
+                    tail.expenses.addAll(groups.get(0).expenses);
+                    start = 1;
+                }
+            }
+            dateGroups.addAll(groups.subList(start, groups.size()));
+            publish();
+        }
+
+        private void publish() {
+            List<Object> rows = new ArrayList<>();
+            for (DateGroup group : dateGroups) {
+                boolean expanded = expandedDays.contains(group.day);
+                rows.add(new ListDiffs.DayHeader(group.day, group.expenseCount, group.totalPaise, expanded));
+                if (expanded) {
+                    rows.addAll(group.expenses);
+                }
+            }
+            submitList(rows);
+        }
 
-            holder.tvDate.setText(group.date);
-            holder.tvExpenseCount.setText(group.expenses.size() + " expense" + (group.expenses.size() > 1 ? "s" : ""));
-            holder.tvDateTotal.setText("₹" + String.format("%.2f", group.totalAmount));
+        boolean isEmpty() {
+            return dateGroups.isEmpty();
+        }
 
-            // Toggle expand/collapse
-            if (group.isExpanded) {
-                holder.expensesContainer.setVisibility(View.VISIBLE);
-                holder.ivExpandIcon.setRotation(180);
-            } else {
-                holder.expensesContainer.setVisibility(View.GONE);
-                holder.ivExpandIcon.setRotation(0);
+        int loadedExpenseCount() {
+            int count = 0;
+            for (DateGroup group : dateGroups) {
+                count += group.expenses.size();
             }
+            return count;
+        }
 
-            // Populate expenses
-            holder.expensesContainer.removeAllViews();
-            for (DatabaseHelper.Expense expense : group.expenses) {
-                View expenseView = createExpenseView(expense);
-                holder.expensesContainer.addView(expenseView);
+        void toggle(int headerPosition) {
+            int day = ((ListDiffs.DayHeader) getItem(headerPosition)).day;
+            if (!expandedDays.remove(day)) {
+                expandedDays.add(day);
+            }
+            publish();
+        }
+
+        @Override
+        public long getItemId(int position) {
+            Object row = getItem(position);
+            if (row instanceof ListDiffs.DayHeader) {
+                return ((ListDiffs.DayHeader) row).stableId();
             }
+            return ((Expense) row).id;
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return getItem(position) instanceof ListDiffs.DayHeader ? TYPE_HEADER : TYPE_EXPENSE;
+        }
 
-            // Click listener for date header
-            holder.dateHeader.setOnClickListener(v -> {
-                group.isExpanded = !group.isExpanded;
-                notifyItemChanged(position);
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+            if (viewType == TYPE_HEADER) {
+                MetricsRegistry.getInstance().increment("ui.expenseList.headerInflations");
+                DateGroupViewHolder holder = new DateGroupViewHolder(
+                        inflater.inflate(R.layout.item_date_group, parent, false));
+                holder.dateHeader.setOnClickListener(v -> {
+                    int position = holder.getBindingAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        toggle(position);
+                    }
+                });
+                return holder;
+            }
+
+            MetricsRegistry.getInstance().increment("ui.expenseList.rowInflations");
+            ExpenseViewHolder holder = new ExpenseViewHolder(
+                    inflater.inflate(R.layout.item_expense_compact, parent, false));
+            holder.itemView.setOnLongClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    confirmDelete((Expense) getItem(position));
+                }
+                return true;
             });
+            return holder;
         }
 
-        private View createExpenseView(DatabaseHelper.Expense expense) {
-            View view = LayoutInflater.from(TripDetailActivity.this)
-                    .inflate(R.layout.item_expense_compact, null);
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            if (holder instanceof DateGroupViewHolder) {
+                bindHeader((DateGroupViewHolder) holder, (ListDiffs.DayHeader) getItem(position));
+            } else {
+                bindExpense((ExpenseViewHolder) holder, (Expense) getItem(position));
+            }
+        }
+
+        private void bindHeader(DateGroupViewHolder holder, ListDiffs.DayHeader header) {
+            MetricsRegistry.getInstance().increment("ui.expenseList.headerBinds");
+
+            holder.tvDate.setText(DayBuckets.format(header.day));
+            holder.tvExpenseCount.setText(header.expenseCount + " expense" + (header.expenseCount > 1 ? "s" : ""));
+            holder.tvDateTotal.setText(Money.format(header.totalPaise));
+            holder.ivExpandIcon.setRotation(header.expanded ? 180 : 0);
+        }
 
-            TextView tvCategoryIcon = view.findViewById(R.id.tvCategoryIcon);
-            TextView tvDescription = view.findViewById(R.id.tvDescription);
-            TextView tvCategory = view.findViewById(R.id.tvCategory);
-            TextView tvPaidBy = view.findViewById(R.id.tvPaidBy);
-            TextView tvAmount = view.findViewById(R.id.tvAmount);
+        private void bindExpense(ExpenseViewHolder holder, Expense expense) {
+            MetricsRegistry.getInstance().increment("ui.expenseList.rowBinds");
 
-            tvCategoryIcon.setText(getCategoryIcon(expense.category));
-            tvDescription.setText(expense.description);
-            tvCategory.setText(expense.category);
-            tvAmount.setText("₹" + String.format("%.2f", expense.amount));
+            holder.tvCategoryIcon.setText(getCategoryIcon(expense.category));
+            holder.tvDescription.setText(expense.description);
+            holder.tvCategory.setText(expense.category);
+            holder.tvAmount.setText(Money.format(expense.amountPaise));
 
-            if ("SELF_PAID".equals(expense.paidBy)) {
-                tvPaidBy.setText("• Self Paid");
+            if (expense.selfPaid) {
+                holder.tvPaidBy.setText("• Self Paid");
             } else {
-                tvPaidBy.setText("• Paid by " + expense.paidBy);
+                holder.tvPaidBy.setText("• Paid by " + expense.paidBy);
             }
+        }
 
-            // Long click to delete
-            view.setOnLongClickListener(v -> {
-                new AlertDialog.Builder(TripDetailActivity.this)
-                        .setTitle("Delete Expense")
-                        .setMessage("Are you sure you want to delete this expense?")
-                        .setPositiveButton("Delete", (d, w) -> {
+        private void confirmDelete(Expense expense) {
+            new AlertDialog.Builder(TripDetailActivity.this)
+                    .setTitle("Delete Expense")
+                    .setMessage("Are you sure you want to delete this expense?")
+                    .setPositiveButton("Delete", (d, w) -> {
+                        repository.execute(db -> {
                             db.deleteExpense(expense.id);
+                            return null;
+                        }, result -> {
                             loadExpenses();
                             updateTotals();
                             Toast.makeText(TripDetailActivity.this, "Expense deleted", Toast.LENGTH_SHORT).show();
-                        })
-                        .setNegativeButton("Cancel", null)
-                        .show();
-                return true;
-            });
-
-            return view;
-        }
-
-        @Override
-        public int getItemCount() {
-            return dateGroups.size();
+                        }, e -> Toast.makeText(TripDetailActivity.this, "Could not delete expense",
+                                Toast.LENGTH_SHORT).show());
+                    })
+                    .setNegativeButton("Cancel", null)
+                    .show();
         }
 
         private String getCategoryIcon(String category) {
@@ -776,19 +1071,31 @@ public class TripDetailActivity extends AppCompatActivity {
         }
 
         class DateGroupViewHolder extends RecyclerView.ViewHolder {
-            LinearLayout dateHeader, expensesContainer;
+            LinearLayout dateHeader;
             TextView tvDate, tvExpenseCount, tvDateTotal;
             ImageView ivExpandIcon;
 
             public DateGroupViewHolder(View itemView) {
                 super(itemView);
                 dateHeader = itemView.findViewById(R.id.dateHeader);
-                expensesContainer = itemView.findViewById(R.id.expensesContainer);
                 tvDate = itemView.findViewById(R.id.tvDate);
                 tvExpenseCount = itemView.findViewById(R.id.tvExpenseCount);
                 tvDateTotal = itemView.findViewById(R.id.tvDateTotal);
                 ivExpandIcon = itemView.findViewById(R.id.ivExpandIcon);
             }
         }
+
+        class ExpenseViewHolder extends RecyclerView.ViewHolder {
+            TextView tvCategoryIcon, tvDescription, tvCategory, tvPaidBy, tvAmount;
+
+            public ExpenseViewHolder(View itemView) {
+                super(itemView);
+                tvCategoryIcon = itemView.findViewById(R.id.tvCategoryIcon);
+                tvDescription = itemView.findViewById(R.id.tvDescription);
+                tvCategory = itemView.findViewById(R.id.tvCategory);
+                tvPaidBy = itemView.findViewById(R.id.tvPaidBy);
+                tvAmount = itemView.findViewById(R.id.tvAmount);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.example.tourexpenses;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams table rows from a cursor straight into CSV or JSON Lines bytes. Each value is copied
+ * out of the cursor into one reused char buffer and encoded into one reused byte buffer, so
+ * memory stays flat however many rows are exported.
+ *
+ * CSV output puts every table in one file: a "#table,column,..." header row, then one row per
+ * record whose first field is the table name. NULL is an empty field and an empty string is "".
+ * JSON Lines output writes one object per record with a "table" key before the columns.
+ */
+public final class TripExporter {
+
+    public enum Format {CSV, JSON_LINES}
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final OutputStream out;
+    private final Format format;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position;
+    private final CharArrayBuffer chars = new CharArrayBuffer(256);
+
+    public TripExporter(OutputStream out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    // Writes every remaining row of cursor under table and returns the row count; the caller closes it
+    public long writeTable(String table, Cursor cursor) throws IOException {
+        String[] columns = cursor.getColumnNames();
+        // Per table, not per row: the bytes that start each row and precede each value
+        byte[] rowPrefix;
+        byte[][] valuePrefixes = new byte[columns.length][];
+        if (format == Format.CSV) {
+            StringBuilder header = new StringBuilder("#").append(table);
+            for (String column : columns) {
+                header.append(',').append(column);
+            }
+            writeAscii(header.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+            rowPrefix = table.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < columns.length; i++) {
+                valuePrefixes[i] = new byte[]{','};
+            }
+        } else {
+            rowPrefix = ("{\"table\":\"" + table + "\"").getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < columns.length; i++) {
+                valuePrefixes[i] = (",\"" + columns[i] + "\":").getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        long rows = 0;
+        while (cursor.moveToNext()) {
+            writeAscii(rowPrefix);
+            for (int i = 0; i < columns.length; i++) {
+                writeAscii(valuePrefixes[i]);
+                writeValue(cursor, i);
+            }
+            if (format == Format.JSON_LINES) {
+                writeByte('}');
+            }
+            writeByte('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    private void writeValue(Cursor cursor, int column) throws IOException {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                if (format == Format.JSON_LINES) {
+                    writeAscii(NULL);
+                }
+                break;
+            case Cursor.FIELD_TYPE_INTEGER:
+                writeLong(cursor.getLong(column));
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                // No REAL columns are left in the schema; kept for completeness
+                writeAscii(Double.toString(cursor.getDouble(column)).getBytes(StandardCharsets.US_ASCII));
+                break;
+            case Cursor.FIELD_TYPE_STRING:
+                cursor.copyStringToBuffer(column, chars);
+                if (format == Format.CSV) {
+                    writeCsvText(chars.data, chars.sizeCopied);
+                } else {
+                    writeJsonText(chars.data, chars.sizeCopied);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Cannot export BLOB column " + column);
+        }
+    }
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    // Quoted only when needed; an empty string is quoted so it reads back differently from NULL
+    private void writeCsvText(char[] text, int length) throws IOException {
+        boolean quote = length == 0;
+        for (int i = 0; i < length && !quote; i++) {
+            char c = text[i];
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writeUtf8(text, 0, length);
+            return;
+        }
+        writeByte('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (text[i] == '"') {
+                writeUtf8(text, start, i + 1);
+                start = i; // the quote is written again, doubling it
+            }
+        }
+        writeUtf8(text, start, length);
+        writeByte('"');
+    }
+
+    private void writeJsonText(char[] text, int length) throws IOException {
+        writeByte('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text[i];
+            if (c == '"' || c == '\\' || c < 0x20) {
+                writeUtf8(text, start, i);
+                start = i + 1;
+                writeByte('\\');
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        writeByte(c);
+                        break;
+                    case '\n':
+                        writeByte('n');
+                        break;
+                    case '\r':
+                        writeByte('r');
+                        break;
+                    case '\t':
+                        writeByte('t');
+                        break;
+                    default:
+                        writeByte('u');
+                        writeByte('0');
+                        writeByte('0');
+                        writeByte(HEX[c >> 4]);
+                        writeByte(HEX[c & 0xF]);
+                }
+            }
+        }
+        writeUtf8(text, start, length);
+        writeByte('"');
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private void writeUtf8(char[] text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = text[i];
+            if (position + 4 > buffer.length) {
+                drain();
+            }
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text[i + 1])) {
+                int codePoint = Character.toCodePoint(c, text[++i]);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?'; // unpaired surrogate, as String.getBytes would write it
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    // Decimal digits written backwards into the buffer, no String in between
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (position + 20 > buffer.length) {
+            drain();
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    private void writeAscii(byte[] bytes) throws IOException {
+        if (position + bytes.length > buffer.length) {
+            drain();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
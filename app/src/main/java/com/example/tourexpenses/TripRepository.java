@@ -0,0 +1,206 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs DatabaseHelper work on a small background pool and hands results back on the main thread.
+ *
+ * Reads are keyed: a load for a key that is still queued picks up the new caller and the new
+ * query instead of querying twice, and a load for a key that is already running is treated as stale and replaced,
+ * since it may have started before the write that triggered the new request.
+ *
+ * A query that throws is logged and its ErrorCallbacks, if any, run on the main thread instead.
+ */
+public class TripRepository {
+
+    public interface Query<T> {
+        T run(DatabaseHelper db);
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public interface ErrorCallback {
+        void onError(Exception e);
+    }
+
+    private static final String TAG = "TripRepository";
+    private static final int THREADS = 2;
+
+    private static TripRepository instance;
+
+    private final DatabaseHelper db;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Request<?>> inFlight = new HashMap<>(); // guarded by this
+
+    public static synchronized TripRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new TripRepository(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private TripRepository(DatabaseHelper db) {
+        this.db = db;
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "trip-repository");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Keyed read: merged with a queued load for the same key, whose query it replaces since the
+    // caller's arguments may have changed, and replaces a running one
+    public <T> void load(String key, Query<T> query, Callback<T> callback) {
+        load(key, query, callback, null);
+    }
+
+    // As above; onError may be null
+    public <T> void load(String key, Query<T> query, Callback<T> callback, ErrorCallback onError) {
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Request<T> existing = (Request<T>) inFlight.get(key);
+            if (existing != null && !existing.started) {
+                existing.query = query;
+                existing.callbacks.add(callback);
+                if (onError != null) {
+                    existing.errorCallbacks.add(onError);
+                }
+                return;
+            }
+
+            Request<T> request = new Request<>(key, query);
+            if (existing != null) {
+                existing.cancelled = true;
+                request.callbacks.addAll(existing.callbacks);
+                request.errorCallbacks.addAll(existing.errorCallbacks);
+            }
+            request.callbacks.add(callback);
+            if (onError != null) {
+                request.errorCallbacks.add(onError);
+            }
+            inFlight.put(key, request);
+            request.future = executor.submit(() -> run(request));
+        }
+    }
+
+    // Unkeyed work, used for writes; callback may be null
+    public <T> void execute(Query<T> query, Callback<T> callback) {
+        execute(query, callback, null);
+    }
+
+    // As above; onError may be null
+    public <T> void execute(Query<T> query, Callback<T> callback, ErrorCallback onError) {
+        executor.execute(() -> {
+            T result;
+            try {
+                result = query.run(db);
+            } catch (Exception e) {
+                Log.e(TAG, "Write failed", e);
+                if (onError != null) {
+                    mainHandler.post(() -> onError.onError(e));
+                }
+                return;
+            }
+            if (callback != null) {
+                mainHandler.post(() -> callback.onResult(result));
+            }
+        });
+    }
+
+    // Drops a pending load so its callbacks never fire, e.g. when the screen goes away
+    public synchronized void cancel(String key) {
+        Request<?> request = inFlight.remove(key);
+        if (request != null) {
+            request.cancelled = true;
+            if (request.future != null) {
+                request.future.cancel(false);
+            }
+        }
+    }
+
+    private <T> void run(Request<T> request) {
+        Query<T> query;
+        synchronized (this) {
+            if (request.cancelled) {
+                return;
+            }
+            request.started = true;
+            query = request.query;
+        }
+
+        T result;
+        try {
+            result = query.run(db);
+        } catch (Exception e) {
+            Log.e(TAG, "Load failed: " + request.key, e);
+            mainHandler.post(() -> fail(request, e));
+            return;
+        }
+
+        mainHandler.post(() -> deliver(request, result));
+    }
+
+    private <T> void deliver(Request<T> request, T result) {
+        List<Callback<T>> callbacks;
+        synchronized (this) {
+            if (request.cancelled) {
+                return;
+            }
+            if (inFlight.get(request.key) == request) {
+                inFlight.remove(request.key);
+            }
+            callbacks = new ArrayList<>(request.callbacks);
+        }
+        for (Callback<T> callback : callbacks) {
+            callback.onResult(result);
+        }
+    }
+
+    private void fail(Request<?> request, Exception e) {
+        List<ErrorCallback> errorCallbacks;
+        synchronized (this) {
+            if (request.cancelled) {
+                return;
+            }
+            if (inFlight.get(request.key) == request) {
+                inFlight.remove(request.key);
+            }
+            errorCallbacks = new ArrayList<>(request.errorCallbacks);
+        }
+        for (ErrorCallback errorCallback : errorCallbacks) {
+            errorCallback.onError(e);
+        }
+    }
+
+    private static class Request<T> {
+        final String key;
+        Query<T> query; // guarded by TripRepository.this until started
+        final List<Callback<T>> callbacks = new ArrayList<>();
+        final List<ErrorCallback> errorCallbacks = new ArrayList<>();
+        Future<?> future;
+        boolean started;
+        volatile boolean cancelled;
+
+        Request(String key, Query<T> query) {
+            this.key = key;
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.example.tourexpenses;
+
+import android.database.Cursor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary snapshot of whole tables for backup and restore.
+ *
+ * A snapshot is a 16-byte header (magic, format version, schema version, flags) followed by
+ * frames. Each frame is [raw length][stored length][CRC32 of the raw bytes] and then the stored
+ * bytes, deflated when the snapshot is compressed. A frame holds either a table header (name,
+ * column names and types), a block of up to BLOCK_ROWS rows, or the end marker.
+ *
+ * Blocks are columnar: each column has an optional null bitmap, then its values. Integers are
+ * zigzag varints of the difference from the previous row, so ids, times and days mostly take a
+ * byte or two. Text is a varint byte length and UTF-8.
+ */
+public final class TripSnapshot {
+
+    public static final byte TYPE_INTEGER = 1;
+    public static final byte TYPE_TEXT = 2;
+    public static final int BLOCK_ROWS = 4096;
+
+    private static final int MAGIC = 0x54455331; // "TES1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int FRAME_HEADER_BYTES = 12;
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private static final byte FRAME_TABLE = 'T';
+    private static final byte FRAME_BLOCK = 'B';
+    private static final byte FRAME_END = 'E';
+
+    private TripSnapshot() {
+    }
+
+    // Thrown for anything that is not a complete, intact snapshot
+    public static class CorruptSnapshotException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CorruptSnapshotException(String message) {
+            super(message);
+        }
+    }
+
+    public static final class Writer {
+        private final WritableByteChannel channel;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final Bytes raw = new Bytes(64 * 1024);
+        private byte[] stored = new byte[64 * 1024];
+
+        public Writer(WritableByteChannel channel, int schemaVersion, boolean compress) throws IOException {
+            this.channel = channel;
+            this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(schemaVersion).putInt(compress ? FLAG_DEFLATE : 0);
+            header.flip();
+            writeFully(header);
+        }
+
+        // Writes every remaining row of cursor; types holds TYPE_INTEGER or TYPE_TEXT per column
+        public long writeTable(String table, Cursor cursor, byte[] types) throws IOException {
+            String[] columns = cursor.getColumnNames();
+            raw.reset();
+            raw.writeByte(FRAME_TABLE);
+            raw.writeText(table);
+            raw.writeVarLong(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                raw.writeText(columns[i]);
+                raw.writeByte(types[i]);
+            }
+            writeFrame();
+
+            long[][] longs = new long[columns.length][];
+            String[][] texts = new String[columns.length][];
+            boolean[][] nulls = new boolean[columns.length][BLOCK_ROWS];
+            for (int i = 0; i < columns.length; i++) {
+                if (types[i] == TYPE_INTEGER) {
+                    longs[i] = new long[BLOCK_ROWS];
+                } else {
+                    texts[i] = new String[BLOCK_ROWS];
+                }
+            }
+
+            long total = 0;
+            int rows;
+            do {
+                rows = 0;
+                while (rows < BLOCK_ROWS && cursor.moveToNext()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        nulls[i][rows] = cursor.isNull(i);
+                        if (longs[i] != null) {
+                            longs[i][rows] = nulls[i][rows] ? 0 : cursor.getLong(i);
+                        } else {
+                            texts[i][rows] = cursor.getString(i);
+                        }
+                    }
+                    rows++;
+                }
+                if (rows > 0) {
+                    writeBlock(rows, longs, texts, nulls);
+                    total += rows;
+                }
+            } while (rows == BLOCK_ROWS);
+            return total;
+        }
+
+        public void finish() throws IOException {
+            raw.reset();
+            raw.writeByte(FRAME_END);
+            writeFrame();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        private void writeBlock(int rows, long[][] longs, String[][] texts, boolean[][] nulls) throws IOException {
+            raw.reset();
+            raw.writeByte(FRAME_BLOCK);
+            raw.writeVarLong(rows);
+            for (int i = 0; i < longs.length; i++) {
+                boolean hasNulls = false;
+                for (int r = 0; r < rows && !hasNulls; r++) {
+                    hasNulls = nulls[i][r];
+                }
+                raw.writeByte(hasNulls ? 1 : 0);
+                if (hasNulls) {
+                    for (int r = 0; r < rows; r += 8) {
+                        int bits = 0;
+                        for (int b = 0; b < 8 && r + b < rows; b++) {
+                            bits |= nulls[i][r + b] ? 1 << b : 0;
+                        }
+                        raw.writeByte(bits);
+                    }
+                }
+                long previous = 0;
+                for (int r = 0; r < rows; r++) {
+                    if (nulls[i][r]) {
+                        continue;
+                    }
+                    if (longs[i] != null) {
+                        long delta = longs[i][r] - previous;
+                        raw.writeVarLong((delta << 1) ^ (delta >> 63));
+                        previous = longs[i][r];
+                    } else {
+                        raw.writeText(texts[i][r]);
+                    }
+                }
+            }
+            writeFrame();
+        }
+
+        private void writeFrame() throws IOException {
+            crc.reset();
+            crc.update(raw.data, 0, raw.length);
+            byte[] body = raw.data;
+            int storedLength = raw.length;
+            if (deflater != null) {
+                deflater.reset();
+                deflater.setInput(raw.data, 0, raw.length);
+                deflater.finish();
+                storedLength = 0;
+                while (!deflater.finished()) {
+                    if (storedLength == stored.length) {
+                        stored = Arrays.copyOf(stored, stored.length * 2);
+                    }
+                    storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+                }
+                body = stored;
+            }
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+            header.putInt(raw.length).putInt(storedLength).putInt((int) crc.getValue());
+            header.flip();
+            writeFully(header);
+            writeFully(ByteBuffer.wrap(body, 0, storedLength));
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static final class Reader {
+        private final ReadableByteChannel channel;
+        private final int schemaVersion;
+        private final Inflater inflater;
+        private final CRC32 crc = new CRC32();
+        private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        private byte[] stored = new byte[64 * 1024];
+        private byte[] raw = new byte[64 * 1024];
+        private ByteBuffer frame;
+        // frame was peeked by nextBlock and not consumed yet
+        private boolean pending;
+        private boolean inTable;
+
+        private String table;
+        private String[] columns;
+        private byte[] types;
+        private int rows;
+        private long[][] longs;
+        private String[][] texts;
+        private boolean[][] nulls;
+
+        public Reader(ReadableByteChannel channel) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(header);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new CorruptSnapshotException("Not a snapshot");
+            }
+            if (header.getInt() != FORMAT_VERSION) {
+                throw new CorruptSnapshotException("Unsupported snapshot format");
+            }
+            schemaVersion = header.getInt();
+            inflater = (header.getInt() & FLAG_DEFLATE) != 0 ? new Inflater() : null;
+        }
+
+        // DATABASE_VERSION of the database the snapshot was taken from
+        public int schemaVersion() {
+            return schemaVersion;
+        }
+
+        // Moves to the next table; false once the end marker is read
+        public boolean nextTable() throws IOException {
+            while (inTable) {
+                nextBlock();
+            }
+            readFrame();
+            byte kind = frame.get();
+            if (kind == FRAME_END) {
+                if (inflater != null) {
+                    inflater.end();
+                }
+                return false;
+            }
+            if (kind != FRAME_TABLE) {
+                throw new CorruptSnapshotException("Expected a table, found frame " + kind);
+            }
+            table = readText();
+            columns = new String[(int) readVarLong()];
+            types = new byte[columns.length];
+            longs = new long[columns.length][];
+            texts = new String[columns.length][];
+            nulls = new boolean[columns.length][BLOCK_ROWS];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = readText();
+                types[i] = frame.get();
+                if (types[i] == TYPE_INTEGER) {
+                    longs[i] = new long[BLOCK_ROWS];
+                } else if (types[i] == TYPE_TEXT) {
+                    texts[i] = new String[BLOCK_ROWS];
+                } else {
+                    throw new CorruptSnapshotException("Unknown column type " + types[i]);
+                }
+            }
+            inTable = true;
+            return true;
+        }
+
+        public String table() {
+            return table;
+        }
+
+        public String[] columns() {
+            return columns;
+        }
+
+        // Decodes the next block of the current table and returns its row count, 0 at the table's end
+        public int nextBlock() throws IOException {
+            if (!inTable) {
+                return 0;
+            }
+            // The table ends at the first frame that is not a block, which nextTable then reads
+            readFrame();
+            if (frame.get(frame.position()) != FRAME_BLOCK) {
+                rows = 0;
+                inTable = false;
+                pending = true;
+                return 0;
+            }
+            frame.get();
+            rows = (int) readVarLong();
+            if (rows <= 0 || rows > BLOCK_ROWS) {
+                throw new CorruptSnapshotException("Bad block size " + rows);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                boolean hasNulls = frame.get() != 0;
+                for (int r = 0; r < rows; r += 8) {
+                    int bits = hasNulls ? frame.get() : 0;
+                    for (int b = 0; b < 8 && r + b < rows; b++) {
+                        nulls[i][r + b] = (bits & (1 << b)) != 0;
+                    }
+                }
+                long previous = 0;
+                for (int r = 0; r < rows; r++) {
+                    if (nulls[i][r]) {
+                        continue;
+                    }
+                    if (longs[i] != null) {
+                        long zigzag = readVarLong();
+                        previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                        longs[i][r] = previous;
+                    } else {
+                        texts[i][r] = readText();
+                    }
+                }
+            }
+            if (frame.hasRemaining()) {
+                throw new CorruptSnapshotException("Trailing bytes in block");
+            }
+            return rows;
+        }
+
+        public boolean isNull(int column, int row) {
+            return nulls[column][row];
+        }
+
+        public long getLong(int column, int row) {
+            return longs[column][row];
+        }
+
+        public String getText(int column, int row) {
+            return texts[column][row];
+        }
+
+        public boolean isText(int column) {
+            return types[column] == TYPE_TEXT;
+        }
+
+        private void readFrame() throws IOException {
+            if (pending) {
+                pending = false;
+                return;
+            }
+            frameHeader.clear();
+            readFully(frameHeader);
+            frameHeader.flip();
+            int rawLength = frameHeader.getInt();
+            int storedLength = frameHeader.getInt();
+            int expectedCrc = frameHeader.getInt();
+            if (rawLength <= 0 || rawLength > MAX_FRAME_BYTES || storedLength <= 0 || storedLength > MAX_FRAME_BYTES) {
+                throw new CorruptSnapshotException("Bad frame length");
+            }
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+            }
+            if (inflater == null) {
+                if (storedLength != rawLength) {
+                    throw new CorruptSnapshotException("Bad frame length");
+                }
+                readFully(ByteBuffer.wrap(raw, 0, rawLength));
+            } else {
+                if (stored.length < storedLength) {
+                    stored = new byte[storedLength];
+                }
+                readFully(ByteBuffer.wrap(stored, 0, storedLength));
+                inflater.reset();
+                inflater.setInput(stored, 0, storedLength);
+                try {
+                    if (inflater.inflate(raw, 0, rawLength) != rawLength || !inflater.finished()) {
+                        throw new CorruptSnapshotException("Frame does not inflate to its length");
+                    }
+                } catch (DataFormatException e) {
+                    throw new CorruptSnapshotException("Bad compressed frame: " + e.getMessage());
+                }
+            }
+            crc.reset();
+            crc.update(raw, 0, rawLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new CorruptSnapshotException("Checksum mismatch");
+            }
+            frame = ByteBuffer.wrap(raw, 0, rawLength);
+        }
+
+        private long readVarLong() throws CorruptSnapshotException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!frame.hasRemaining()) {
+                    throw new CorruptSnapshotException("Truncated value");
+                }
+                byte b = frame.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new CorruptSnapshotException("Varint too long");
+        }
+
+        private String readText() throws CorruptSnapshotException {
+            long length = readVarLong();
+            if (length < 0 || length > frame.remaining()) {
+                throw new CorruptSnapshotException("Truncated text");
+            }
+            String text = new String(frame.array(), frame.position(), (int) length, StandardCharsets.UTF_8);
+            frame.position(frame.position() + (int) length);
+            return text;
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new CorruptSnapshotException("Snapshot ends early");
+                }
+            }
+        }
+    }
+
+    // Growable byte array for encoding one frame
+    private static final class Bytes {
+        byte[] data;
+        int length;
+
+        Bytes(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            data[length++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void writeText(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.tourexpenses;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ListDiffsTest {
+
+    @Test
+    public void unchangedReload_rebindsNothing() {
+        BindCounter counter = diff(ListDiffs.TRIPS,
+                Arrays.asList(trip(1, "ONGOING", 1000), trip(2, "ONGOING", 2000)),
+                Arrays.asList(trip(1, "ONGOING", 1000), trip(2, "ONGOING", 2000)));
+        assertEquals(0, counter.total());
+    }
+
+    @Test
+    public void togglingOneTripStatus_rebindsOnlyThatTrip() {
+        BindCounter counter = diff(ListDiffs.TRIPS,
+                Arrays.asList(trip(3, "ONGOING", 0), trip(2, "ONGOING", 500), trip(1, "COMPLETED", 900)),
+                Arrays.asList(trip(3, "ONGOING", 0), trip(2, "COMPLETED", 500), trip(1, "COMPLETED", 900)));
+        assertEquals(1, counter.changed);
+        assertEquals(1, counter.lastChangedPosition);
+        assertEquals(1, counter.total());
+    }
+
+    @Test
+    public void deletingOneTrip_removesOneRow() {
+        BindCounter counter = diff(ListDiffs.TRIPS,
+                Arrays.asList(trip(3, "ONGOING", 0), trip(2, "ONGOING", 500), trip(1, "COMPLETED", 900)),
+                Arrays.asList(trip(3, "ONGOING", 0), trip(1, "COMPLETED", 900)));
+        assertEquals(1, counter.removed);
+        assertEquals(1, counter.total());
+    }
+
+    @Test
+    public void addingExpenseToExpandedDay_insertsOneRowAndRebindsItsHeader() {
+        List<Object> before = Arrays.asList(
+                header(20100, 2, 3000, true), expense(5, 20100, 1000), expense(4, 20100, 2000),
+                header(20099, 1, 700, false));
+        List<Object> after = Arrays.asList(
+                header(20100, 3, 3500, true), expense(6, 20100, 500), expense(5, 20100, 1000), expense(4, 20100, 2000),
+                header(20099, 1, 700, false));
+
+        BindCounter counter = diff(ListDiffs.EXPENSE_ROWS, before, after);
+        assertEquals(1, counter.inserted);
+        assertEquals(1, counter.changed);
+        assertEquals(0, counter.lastChangedPosition);
+        assertEquals(2, counter.total());
+    }
+
+    @Test
+    public void collapsingDay_removesItsRowsAndRebindsOnlyItsHeader() {
+        List<Object> before = Arrays.asList(
+                header(20100, 2, 3000, true), expense(5, 20100, 1000), expense(4, 20100, 2000),
+                header(20099, 1, 700, true), expense(3, 20099, 700));
+        List<Object> after = Arrays.asList(
+                header(20100, 2, 3000, false),
+                header(20099, 1, 700, true), expense(3, 20099, 700));
+
+        BindCounter counter = diff(ListDiffs.EXPENSE_ROWS, before, after);
+        assertEquals(2, counter.removed);
+        assertEquals(1, counter.changed);
+        assertEquals(0, counter.inserted);
+    }
+
+    @Test
+    public void editedExpense_rebindsOnlyThatRow() {
+        Expense edited = expense(4, 20100, 2000);
+        edited.description = "Dinner and dessert";
+        BindCounter counter = diff(ListDiffs.EXPENSE_ROWS,
+                Arrays.asList(header(20100, 2, 3000, true), expense(5, 20100, 1000), expense(4, 20100, 2000)),
+                Arrays.asList(header(20100, 2, 3000, true), expense(5, 20100, 1000), edited));
+        assertEquals(1, counter.changed);
+        assertEquals(2, counter.lastChangedPosition);
+        assertEquals(1, counter.total());
+    }
+
+    // Each dispatched change is one rebind (or one insert/remove) in the real adapter
+    static class BindCounter implements ListUpdateCallback {
+        int inserted;
+        int removed;
+        int moved;
+        int changed;
+        int lastChangedPosition = -1;
+
+        @Override
+        public void onInserted(int position, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            removed += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            moved++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            changed += count;
+            lastChangedPosition = position + count - 1;
+        }
+
+        int total() {
+            return inserted + removed + moved + changed;
+        }
+    }
+
+    private static <T> BindCounter diff(DiffUtil.ItemCallback<T> items, List<T> oldList, List<T> newList) {
+        List<T> before = new ArrayList<>(oldList);
+        List<T> after = new ArrayList<>(newList);
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return before.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return after.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return items.areItemsTheSame(before.get(oldPosition), after.get(newPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return items.areContentsTheSame(before.get(oldPosition), after.get(newPosition));
+            }
+        });
+        BindCounter counter = new BindCounter();
+        result.dispatchUpdatesTo(counter);
+        return counter;
+    }
+
+    private static Trip trip(int id, String status, long totalPaise) {
+        Trip trip = new Trip();
+        trip.id = id;
+        trip.name = "Trip " + id;
+        trip.startDate = "01/01/2025";
+        trip.endDate = "";
+        trip.status = status;
+        trip.totalPaise = totalPaise;
+        return trip;
+    }
+
+    private static ListDiffs.DayHeader header(int day, int count, long totalPaise, boolean expanded) {
+        return new ListDiffs.DayHeader(day, count, totalPaise, expanded);
+    }
+
+    private static Expense expense(int id, int day, long amountPaise) {
+        Expense expense = new Expense();
+        expense.id = id;
+        expense.day = day;
+        expense.time = day * DayBuckets.DAY_MILLIS + id;
+        expense.paidById = 1;
+        expense.paidBy = "Asha";
+        expense.amountPaise = amountPaise;
+        expense.category = "Food";
+        expense.description = "Expense " + id;
+        return expense;
+    }
+}
@@ -0,0 +1,48 @@
+// JMH benchmarks for DatabaseHelper on a plain JVM: ./gradlew :benchmark:jmh
+// Results go to build/results/jmh/results.json. Other dataset sizes can be set on the command line.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The app sources copied in below are UTF-8, like the rest of the project
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+// DatabaseHelper and the app classes it uses, compiled unchanged against the
+// sqlite-jdbc backed android.database classes in src/main/java
+val appSources = tasks.register<Sync>("appSources") {
+    from("../app/src/main/java") {
+        include(
+            "com/example/tourexpenses/DatabaseHelper.java",
+            "com/example/tourexpenses/TripExporter.java",
+            "com/example/tourexpenses/TripSnapshot.java"
+        )
+    }
+    into(layout.buildDirectory.dir("generated/sources/app"))
+}
+
+sourceSets {
+    main {
+        java.srcDir(appSources)
+    }
+}
+
+dependencies {
+    implementation(project(":core"))
+    implementation(libs.sqlite.jdbc)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmhCore)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // Generated datasets are reused across runs; see BenchmarkData
+    jvmArgsAppend.add("-Dbenchmark.dataDir=" + layout.buildDirectory.dir("benchmark-data").get().asFile.path)
+}
@@ -0,0 +1,76 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+// Whole-database export, snapshot and restore; the restore puts back the same rows each time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackupBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp(TripData data) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            data.db.writeSnapshot(Channels.newChannel(out), true);
+            bytes = out.toByteArray();
+        }
+    }
+
+    // Counts bytes without keeping them, so only the export itself is measured
+    private static final class CountingStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Benchmark
+    public long exportCsv(TripData data) throws IOException {
+        return data.db.exportData(new CountingStream(), TripExporter.Format.CSV);
+    }
+
+    @Benchmark
+    public long exportJsonLines(TripData data) throws IOException {
+        return data.db.exportData(new CountingStream(), TripExporter.Format.JSON_LINES);
+    }
+
+    @Benchmark
+    public long writeSnapshot(TripData data) throws IOException {
+        return data.db.writeSnapshot(Channels.newChannel(new CountingStream()), true);
+    }
+
+    @Benchmark
+    public long restoreSnapshot(TripData data, Snapshot snapshot) throws IOException {
+        return data.db.restoreSnapshot(Channels.newChannel(new ByteArrayInputStream(snapshot.bytes)));
+    }
+}
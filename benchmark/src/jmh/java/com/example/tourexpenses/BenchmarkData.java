@@ -0,0 +1,216 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds benchmark databases through DatabaseHelper's own write paths, from a fixed seed, so the
+ * same dataset always holds the same rows.
+ *
+ * A dataset is "trips:expenses:participants", for example "500:500000:200". Every trip has that
+ * many participants. The first trip is the one the per-trip benchmarks read: it holds half of the
+ * expenses (all of them for a single trip) and an eighth of its shared expenses are split by
+ * shares. The rest are spread evenly over the other trips.
+ *
+ * Each dataset is generated once into benchmark.dataDir (the temp directory by default) and every
+ * trial works on a fresh copy. Delete the directory after changing the generator or the schema.
+ * inMemory() writes the same rows into an InMemoryTripStore instead.
+ */
+final class BenchmarkData {
+
+    private static final long SEED = 42;
+    private static final String[] CATEGORIES = {"Food", "Travel", "Stay", "Tickets", "Shopping", "Other"};
+    private static final String[] WORDS = {"dinner", "lunch", "breakfast", "taxi", "auto", "train", "hotel",
+            "museum", "ferry", "snacks", "coffee", "market", "beach", "fuel", "toll", "tips"};
+
+    final int trips;
+    final int expenses;
+    final int participants;
+
+    private BenchmarkData(int trips, int expenses, int participants) {
+        if (trips < 1 || expenses < 1 || participants < 2) {
+            throw new IllegalArgumentException("Need at least 1 trip, 1 expense and 2 participants");
+        }
+        this.trips = trips;
+        this.expenses = expenses;
+        this.participants = participants;
+    }
+
+    static BenchmarkData parse(String dataset) {
+        String[] parts = dataset.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected trips:expenses:participants, got " + dataset);
+        }
+        return new BenchmarkData(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    // The trip the per-trip benchmarks read, the first one generated
+    static final int TARGET_TRIP = 1;
+
+    // A fresh working copy of this dataset named databaseName in context's database directory
+    DatabaseHelper open(Context context, String databaseName) throws IOException {
+        File template = new File(dataDir(), "dataset-" + trips + "-" + expenses + "-" + participants + ".db");
+        if (!template.exists()) {
+            generate(template);
+        }
+        context.deleteDatabase(databaseName);
+        Files.copy(template.toPath(), context.getDatabasePath(databaseName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return new DatabaseHelper(context, databaseName);
+    }
+
+    // The same rows in an InMemoryTripStore, written one expense at a time
+    InMemoryTripStore inMemory() {
+        InMemoryTripStore store = new InMemoryTripStore();
+        Random random = new Random(SEED);
+        int[] tripIds = addTrips(store);
+        for (int t = 0; t < trips; t++) {
+            int tripId = tripIds[t];
+            List<Participant> payers = store.getParticipants(tripId);
+            int count = expensesFor(t);
+            int splits = t == 0 ? count / 8 : 0;
+            for (Iterator<Expense> rows = rows(random, payers, count - splits); rows.hasNext(); ) {
+                Expense expense = rows.next();
+                store.addExpense(tripId, expense.paidById, expense.selfPaid, expense.amountPaise, expense.category,
+                        expense.description, expense.time);
+            }
+            for (int s = 0; s < splits; s++) {
+                addSplit(store, random, tripId, payers);
+            }
+        }
+        return store;
+    }
+
+    static File dataDir() {
+        File dir = new File(System.getProperty("benchmark.dataDir",
+                new File(System.getProperty("java.io.tmpdir"), "tour-expenses-benchmark").getPath()));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    // Generates into a temporary name first, so an interrupted run never leaves a partial template
+    private void generate(File template) throws IOException {
+        String partial = template.getName() + ".partial";
+        Context context = new Context(template.getParentFile());
+        context.deleteDatabase(partial);
+        DatabaseHelper db = new DatabaseHelper(context, partial);
+        Random random = new Random(SEED);
+
+        int[] tripIds = addTrips(db);
+        for (int t = 0; t < trips; t++) {
+            int tripId = tripIds[t];
+            List<Participant> payers = db.getParticipants(tripId);
+            int count = expensesFor(t);
+            int splits = t == 0 ? count / 8 : 0;
+            DatabaseHelper.ImportResult result =
+                    db.importExpenses(tripId, rows(random, payers, count - splits), false, null);
+            if (!result.complete) {
+                throw new IllegalStateException("Import into trip " + tripId + " stopped at " + result.imported);
+            }
+            for (int s = 0; s < splits; s++) {
+                addSplit(db, random, tripId, payers);
+            }
+        }
+        db.close();
+
+        if (!context.getDatabasePath(partial).renameTo(template)) {
+            throw new IOException("Cannot rename " + partial + " to " + template);
+        }
+    }
+
+    private int[] addTrips(TripStore store) {
+        List<String> members = new ArrayList<>();
+        for (int m = 0; m < participants; m++) {
+            members.add("Member " + m);
+        }
+        int[] tripIds = new int[trips];
+        for (int t = 0; t < trips; t++) {
+            tripIds[t] = (int) store.addTrip("Trip " + t, "01/01/2025", "", members);
+            if (t % 3 == 2) {
+                store.updateTripStatus(tripIds[t], "COMPLETED");
+            }
+        }
+        if (tripIds[0] != TARGET_TRIP) {
+            throw new IllegalStateException("First trip got id " + tripIds[0]);
+        }
+        return tripIds;
+    }
+
+    private int expensesFor(int trip) {
+        if (trips == 1) {
+            return expenses;
+        }
+        int target = expenses / 2;
+        if (trip == 0) {
+            return target;
+        }
+        int others = trips - 1;
+        int rest = expenses - target;
+        return rest / others + (trip - 1 < rest % others ? 1 : 0);
+    }
+
+    private Iterator<Expense> rows(Random random, List<Participant> payers, int count) {
+        return new Iterator<Expense>() {
+            private int made;
+
+            @Override
+            public boolean hasNext() {
+                return made < count;
+            }
+
+            @Override
+            public Expense next() {
+                made++;
+                Expense expense = new Expense();
+                expense.selfPaid = random.nextInt(7) == 0;
+                expense.paidById = expense.selfPaid ? 0 : payers.get(random.nextInt(payers.size())).id;
+                expense.amountPaise = amount(random);
+                expense.category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                expense.description = description(random);
+                expense.time = time(random);
+                return expense;
+            }
+        };
+    }
+
+    // Shares of 1 to 3 for the payer and up to four other members
+    private void addSplit(TripStore store, Random random, int tripId, List<Participant> payers) {
+        int size = Math.min(payers.size(), 2 + random.nextInt(4));
+        int first = random.nextInt(payers.size());
+        long[] ids = new long[size];
+        long[] shares = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = payers.get((first + i) % payers.size()).id;
+            shares[i] = 1 + random.nextInt(3);
+        }
+        store.addSplitExpense(tripId, ids[0], amount(random), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                description(random), time(random), ids, shares);
+    }
+
+    // 50 to 5,000 rupees
+    private static long amount(Random random) {
+        return 5_000 + random.nextInt(495_001);
+    }
+
+    private static String description(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+    }
+
+    // Somewhere in the 60 days from 1 January 2025, local time
+    private static long time(Random random) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2025, Calendar.JANUARY, 1 + random.nextInt(60), random.nextInt(24), random.nextInt(60));
+        return cal.getTimeInMillis();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The core module's aggregation over InMemoryTripStore, without SQLite, at millions of rows
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CoreBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class StoreData {
+        @Param({"1:10:2", "50:1000000:20", "500:2000000:200"})
+        public String dataset;
+
+        InMemoryTripStore store;
+        int tripId;
+        long payerId;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            store = BenchmarkData.parse(dataset).inMemory();
+            tripId = BenchmarkData.TARGET_TRIP;
+            payerId = store.getParticipants(tripId).get(0).id;
+        }
+    }
+
+    @Benchmark
+    public Settlement settlement(StoreData data) {
+        return data.store.getSettlement(data.tripId);
+    }
+
+    @Benchmark
+    public List<SettlementSolver.Transfer> settleUp(StoreData data) {
+        Settlement settlement = data.store.getSettlement(data.tripId);
+        return SettlementSolver.solve(settlement.participants, settlement.balances);
+    }
+
+    @Benchmark
+    public List<DateGroup> firstPageGrouped(StoreData data) {
+        List<Expense> page = data.store.getTripExpensesPage(data.tripId, Long.MAX_VALUE, Integer.MAX_VALUE, 50);
+        int newest = page.get(0).day;
+        int oldest = page.get(page.size() - 1).day;
+        return DayBuckets.groupByDay(page, data.store.getDaySummaries(data.tripId, oldest, newest));
+    }
+
+    @Benchmark
+    public List<Trip> allTrips(StoreData data) {
+        return data.store.getAllTrips();
+    }
+
+    @Benchmark
+    public long addAndDeleteExpense(StoreData data) {
+        long id = data.store.addExpense(data.tripId, data.payerId, false, 25_000, "Food", "Snacks", 0);
+        data.store.deleteExpense((int) id);
+        return id;
+    }
+}
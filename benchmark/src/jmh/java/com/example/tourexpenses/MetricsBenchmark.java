@@ -0,0 +1,55 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// What MetricsRegistry adds to DatabaseHelper calls, off and on. A cached settlement does no SQL,
+// so it shows the span cost alone; an expense page adds the counting cursor.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+        @Param({"false", "true"})
+        public boolean enabled;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            MetricsRegistry.getInstance().setEnabled(enabled);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            MetricsRegistry.getInstance().setEnabled(false);
+            MetricsRegistry.getInstance().reset();
+        }
+    }
+
+    @Benchmark
+    public Settlement settlementCacheHit(TripData data, Registry registry) {
+        return data.db.getSettlement(data.tripId);
+    }
+
+    @Benchmark
+    public List<Expense> firstExpensePage(TripData data, Registry registry) {
+        return data.db.getTripExpensesPage(data.tripId, Long.MAX_VALUE, Integer.MAX_VALUE, 50);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// DatabaseHelper's read paths. Count, total and last date go to SQL, not the aggregate cache.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Benchmark
+    public List<Trip> allTrips(TripData data) {
+        return data.db.getAllTrips();
+    }
+
+    @Benchmark
+    public List<Trip> ongoingTrips(TripData data) {
+        return data.db.getTripsByStatus("ONGOING");
+    }
+
+    @Benchmark
+    public Map<String, Integer> tripStatusCounts(TripData data) {
+        return data.db.getTripStatusCounts();
+    }
+
+    @Benchmark
+    public Trip tripById(TripData data) {
+        return data.db.getTripById(data.tripId);
+    }
+
+    @Benchmark
+    public List<Participant> participants(TripData data) {
+        return data.db.getParticipants(data.tripId);
+    }
+
+    @Benchmark
+    public List<String> participantNames(TripData data) {
+        return data.db.getTripParticipants(data.tripId);
+    }
+
+    @Benchmark
+    public List<Expense> allTripExpenses(TripData data) {
+        return data.db.getTripExpenses(data.tripId);
+    }
+
+    // What TripDetailActivity.loadPage reads for the first screen: a page and its days' totals
+    @Benchmark
+    public List<DaySummary> firstExpensePage(TripData data) {
+        List<Expense> page = data.db.getTripExpensesPage(data.tripId, Long.MAX_VALUE, Integer.MAX_VALUE, 50);
+        return data.db.getDaySummaries(data.tripId, page.get(page.size() - 1).day, page.get(0).day);
+    }
+
+    @Benchmark
+    public Map<String, Long> dayWiseExpenses(TripData data) {
+        return data.db.getDayWiseExpenses(data.tripId);
+    }
+
+    @Benchmark
+    public String lastExpenseDate(TripData data) {
+        data.db.getAggregateCache().remove(data.tripId);
+        return data.db.getLastExpenseDate(data.tripId);
+    }
+
+    @Benchmark
+    public long expenseCountAndTotal(TripData data) {
+        data.db.getAggregateCache().remove(data.tripId);
+        return data.db.getTripExpenseCount(data.tripId) + data.db.getTripTotalExpense(data.tripId);
+    }
+
+    @Benchmark
+    public List<Expense> searchPrefix(TripData data) {
+        return data.db.searchExpenses("din", 50, 0);
+    }
+
+    // Two letters, the shortest prefix searched as one
+    @Benchmark
+    public List<Expense> searchShortPrefix(TripData data) {
+        return data.db.searchExpenses("ta", 50, 0);
+    }
+}
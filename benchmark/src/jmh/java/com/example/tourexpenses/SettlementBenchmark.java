@@ -0,0 +1,40 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The settlement report: aggregates from SQL or the cache, then the transfers that settle them
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettlementBenchmark {
+
+    @Benchmark
+    public Settlement settlementCacheMiss(TripData data) {
+        data.db.getAggregateCache().remove(data.tripId);
+        return data.db.getSettlement(data.tripId);
+    }
+
+    @Benchmark
+    public Settlement settlementCacheHit(TripData data) {
+        return data.db.getSettlement(data.tripId);
+    }
+
+    // The report as shown, with whichever mode solve() picks for the trip's size; SolverBenchmark
+    // compares the two modes directly
+    @Benchmark
+    public List<SettlementSolver.Transfer> settleUp(TripData data) {
+        Settlement settlement = data.db.getSettlement(data.tripId);
+        return SettlementSolver.solve(settlement.participants, settlement.balances);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Both settlement modes on the same balances. solve() picks exact up to EXACT_MAX_MEMBERS, so the
+// dataset benchmarks only ever run one mode per size; here every balance is non-zero and the
+// groups of 8 to 16 run both. Larger groups are greedy only, as in the app.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+    private static final long SEED = 42;
+
+    @State(Scope.Benchmark)
+    public static class SmallGroup {
+        @Param({"8", "12", "16"})
+        public int members;
+
+        String[] names;
+        long[] balances;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            names = names(members);
+            balances = balances(members);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LargeGroup {
+        @Param({"200", "500"})
+        public int members;
+
+        String[] names;
+        long[] balances;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            names = names(members);
+            balances = balances(members);
+        }
+    }
+
+    @Benchmark
+    public List<SettlementSolver.Transfer> solveGreedy(SmallGroup group) {
+        return SettlementSolver.solveGreedy(group.names, group.balances);
+    }
+
+    @Benchmark
+    public List<SettlementSolver.Transfer> solveExact(SmallGroup group) {
+        return SettlementSolver.solveExact(group.names, group.balances);
+    }
+
+    @Benchmark
+    public List<SettlementSolver.Transfer> solveGreedyLarge(LargeGroup group) {
+        return SettlementSolver.solveGreedy(group.names, group.balances);
+    }
+
+    private static String[] names(int members) {
+        String[] names = new String[members];
+        for (int i = 0; i < members; i++) {
+            names[i] = "Member " + i;
+        }
+        return names;
+    }
+
+    // Non-zero balances in paise that sum to zero; the last member absorbs the remainder
+    private static long[] balances(int members) {
+        Random random = new Random(SEED);
+        long[] balances = new long[members];
+        long sum = 0;
+        for (int i = 0; i < members - 1; i++) {
+            long amount = 100 + random.nextInt(500_000);
+            balances[i] = random.nextBoolean() ? amount : -amount;
+            sum += balances[i];
+        }
+        if (sum == 0) {
+            long nudge = balances[0] > 0 ? 100 : -100;
+            balances[0] += nudge;
+            sum = nudge;
+        }
+        balances[members - 1] = -sum;
+        return balances;
+    }
+}
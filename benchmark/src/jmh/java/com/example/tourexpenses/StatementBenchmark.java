@@ -0,0 +1,72 @@
+package com.example.tourexpenses;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One scalar query three ways: a rawQuery cursor, as the helper used to read it, a statement
+// compiled per call, and one compiled statement reused, as DatabaseHelper's statement cache does
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Statements {
+        SQLiteDatabase db;
+        String[] tripArgs;
+        SQLiteStatement lastExpenseTime;
+
+        @Setup(Level.Trial)
+        public void setUp(TripData data) {
+            db = data.db.getReadableDatabase();
+            tripArgs = new String[]{String.valueOf(data.tripId)};
+            lastExpenseTime = db.compileStatement(DatabaseHelper.LAST_EXPENSE_TIME_QUERY);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            lastExpenseTime.close();
+        }
+    }
+
+    @Benchmark
+    public long lastExpenseTimeCursor(Statements statements) {
+        Cursor cursor = statements.db.rawQuery(DatabaseHelper.LAST_EXPENSE_TIME_QUERY, statements.tripArgs);
+        long lastTime = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+        cursor.close();
+        return lastTime;
+    }
+
+    @Benchmark
+    public long lastExpenseTimeCompiledPerCall(TripData data, Statements statements) {
+        SQLiteStatement statement = statements.db.compileStatement(DatabaseHelper.LAST_EXPENSE_TIME_QUERY);
+        statement.bindLong(1, data.tripId);
+        long lastTime = statement.simpleQueryForLong();
+        statement.close();
+        return lastTime;
+    }
+
+    @Benchmark
+    public long lastExpenseTimeCached(TripData data, Statements statements) {
+        statements.lastExpenseTime.bindLong(1, data.tripId);
+        return statements.lastExpenseTime.simpleQueryForLong();
+    }
+}
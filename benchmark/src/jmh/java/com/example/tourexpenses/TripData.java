@@ -0,0 +1,39 @@
+package com.example.tourexpenses;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+// One working database per trial; pick other sizes with -p dataset=trips:expenses:participants
+@State(Scope.Benchmark)
+public class TripData {
+
+    private static final String DATABASE_NAME = "benchmark.db";
+
+    @Param({"1:10:2", "50:50000:20", "500:500000:200"})
+    public String dataset;
+
+    DatabaseHelper db;
+    int tripId;
+    private Context context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new Context(BenchmarkData.dataDir());
+        db = BenchmarkData.parse(dataset).open(context, DATABASE_NAME);
+        tripId = BenchmarkData.TARGET_TRIP;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+}
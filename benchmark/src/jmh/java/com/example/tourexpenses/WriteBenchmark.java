@@ -0,0 +1,73 @@
+package com.example.tourexpenses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Each operation adds an expense and deletes it again, so the dataset stays the same size
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Members {
+        long[] ids;
+        long[] shares;
+
+        @Setup(Level.Trial)
+        public void setUp(TripData data) {
+            List<Participant> participants = data.db.getParticipants(data.tripId);
+            int size = Math.min(participants.size(), 4);
+            ids = new long[size];
+            shares = new long[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = participants.get(i).id;
+                shares[i] = 1 + i % 3;
+            }
+        }
+    }
+
+    @Benchmark
+    public long addAndDeleteExpense(TripData data, Members members) {
+        long id = data.db.addExpense(data.tripId, members.ids[0], false, 25_000, "Food", "Snacks", 0);
+        data.db.deleteExpense((int) id);
+        return id;
+    }
+
+    // With the aggregate cache loaded, as it is while the trip screen is open
+    @Benchmark
+    public long addAndDeleteExpenseCached(TripData data, Members members) {
+        data.db.getSettlement(data.tripId);
+        return addAndDeleteExpense(data, members);
+    }
+
+    @Benchmark
+    public long addAndDeleteSplitExpense(TripData data, Members members) {
+        long id = data.db.addSplitExpense(data.tripId, members.ids[0], 25_000, "Food", "Snacks", 0,
+                members.ids, members.shares);
+        data.db.deleteExpense((int) id);
+        return id;
+    }
+
+    // What the trip screen does around a split expense: write, then read the settlement again
+    @Benchmark
+    public Settlement splitExpenseThenSettlement(TripData data, Members members) {
+        data.db.getSettlement(data.tripId);
+        addAndDeleteSplitExpense(data, members);
+        return data.db.getSettlement(data.tripId);
+    }
+}
@@ -0,0 +1,32 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Just enough of Android's Context for SQLiteOpenHelper on a plain JVM: database files live in
+ * one directory instead of the app's data directory.
+ */
+public class Context {
+
+    private final File databaseDir;
+
+    public Context(File databaseDir) {
+        this.databaseDir = databaseDir;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getDatabasePath(String name) {
+        return new File(databaseDir, name);
+    }
+
+    // The database file and its WAL and shared-memory files
+    public boolean deleteDatabase(String name) {
+        File file = getDatabasePath(name);
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        return file.delete();
+    }
+}
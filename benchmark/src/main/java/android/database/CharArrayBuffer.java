@@ -0,0 +1,11 @@
+package android.database;
+
+public final class CharArrayBuffer {
+
+    public char[] data;
+    public int sizeCopied;
+
+    public CharArrayBuffer(int size) {
+        data = new char[size];
+    }
+}
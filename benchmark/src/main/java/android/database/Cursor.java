@@ -0,0 +1,40 @@
+package android.database;
+
+import java.io.Closeable;
+
+// The subset of Android's Cursor that DatabaseHelper and the exporters read
+public interface Cursor extends Closeable {
+
+    int FIELD_TYPE_NULL = 0;
+    int FIELD_TYPE_INTEGER = 1;
+    int FIELD_TYPE_FLOAT = 2;
+    int FIELD_TYPE_STRING = 3;
+    int FIELD_TYPE_BLOB = 4;
+
+    int getCount();
+
+    boolean moveToFirst();
+
+    boolean moveToNext();
+
+    String[] getColumnNames();
+
+    int getColumnIndexOrThrow(String columnName);
+
+    int getType(int column);
+
+    boolean isNull(int column);
+
+    int getInt(int column);
+
+    long getLong(int column);
+
+    double getDouble(int column);
+
+    String getString(int column);
+
+    void copyStringToBuffer(int column, CharArrayBuffer buffer);
+
+    @Override
+    void close();
+}
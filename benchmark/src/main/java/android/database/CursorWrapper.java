@@ -0,0 +1,80 @@
+package android.database;
+
+// Passes every call to the wrapped cursor, as Android's does, for subclasses to override
+public class CursorWrapper implements Cursor {
+
+    protected final Cursor mCursor;
+
+    public CursorWrapper(Cursor cursor) {
+        mCursor = cursor;
+    }
+
+    public Cursor getWrappedCursor() {
+        return mCursor;
+    }
+
+    @Override
+    public int getCount() {
+        return mCursor.getCount();
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return mCursor.moveToFirst();
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return mCursor.moveToNext();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mCursor.getColumnNames();
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        return mCursor.getColumnIndexOrThrow(columnName);
+    }
+
+    @Override
+    public int getType(int column) {
+        return mCursor.getType(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mCursor.isNull(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mCursor.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mCursor.getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mCursor.getDouble(column);
+    }
+
+    @Override
+    public String getString(int column) {
+        return mCursor.getString(column);
+    }
+
+    @Override
+    public void copyStringToBuffer(int column, CharArrayBuffer buffer) {
+        mCursor.copyStringToBuffer(column, buffer);
+    }
+
+    @Override
+    public void close() {
+        mCursor.close();
+    }
+}
@@ -0,0 +1,13 @@
+package android.database;
+
+// Unchecked like Android's, so DatabaseHelper's catch blocks compile unchanged
+public class SQLException extends RuntimeException {
+
+    public SQLException(String message) {
+        super(message);
+    }
+
+    public SQLException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,200 @@
+package android.database.sqlite;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayDeque;
+
+/**
+ * Forward-only cursor over a JDBC result. Each row is copied out of the result set as it is
+ * reached, much as Android copies rows into its cursor window; getCount() reads every remaining
+ * row ahead, which is also what it costs on Android.
+ */
+final class JdbcCursor implements Cursor {
+
+    private final SQLiteDatabase database;
+    private final PreparedStatement statement;
+    private final ResultSet rows;
+    private final String[] columns;
+    private ArrayDeque<Object[]> ahead; // rows read by getCount() but not yet reached
+    private Object[] row;
+    private int position = -1;
+    private int count = -1;
+    private boolean closed;
+
+    JdbcCursor(SQLiteDatabase database, PreparedStatement statement, ResultSet rows) throws java.sql.SQLException {
+        this.database = database;
+        this.statement = statement;
+        this.rows = rows;
+        ResultSetMetaData meta = rows.getMetaData();
+        columns = new String[meta.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = meta.getColumnLabel(i + 1);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        if (count < 0) {
+            ahead = new ArrayDeque<>();
+            Object[] next;
+            while ((next = read()) != null) {
+                ahead.add(next);
+            }
+            count = position + 1 + ahead.size();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        if (position > 0) {
+            throw new UnsupportedOperationException("Cursor is forward-only");
+        }
+        return position == 0 ? row != null : moveToNext();
+    }
+
+    @Override
+    public boolean moveToNext() {
+        Object[] next = ahead != null ? ahead.poll() : read();
+        if (next == null) {
+            row = null;
+            return false;
+        }
+        row = next;
+        position++;
+        return true;
+    }
+
+    private Object[] read() {
+        try {
+            if (closed || !rows.next()) {
+                return null;
+            }
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = rows.getObject(i + 1);
+            }
+            return values;
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap("cursor read", e);
+        }
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columns.clone();
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = value(column);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof Integer || value instanceof Long) {
+            return FIELD_TYPE_INTEGER;
+        } else if (value instanceof Number) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof String) {
+            return FIELD_TYPE_STRING;
+        }
+        return FIELD_TYPE_BLOB;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return value(column) == null;
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    // Numeric text is converted, anything else reads as 0
+    @Override
+    public long getLong(int column) {
+        Object value = value(column);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            try {
+                return (long) Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public double getDouble(int column) {
+        Object value = value(column);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = value(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public void copyStringToBuffer(int column, CharArrayBuffer buffer) {
+        String value = getString(column);
+        if (value == null) {
+            buffer.sizeCopied = 0;
+            return;
+        }
+        if (buffer.data == null || buffer.data.length < value.length()) {
+            buffer.data = value.toCharArray();
+        } else {
+            value.getChars(0, value.length(), buffer.data, 0);
+        }
+        buffer.sizeCopied = value.length();
+    }
+
+    private Object value(int column) {
+        if (row == null) {
+            throw new IllegalStateException("Cursor is not on a row, position " + position);
+        }
+        return row[column];
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            rows.close();
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap("cursor close", e);
+        } finally {
+            database.release(statement);
+        }
+    }
+}
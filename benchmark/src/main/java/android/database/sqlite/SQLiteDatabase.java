@@ -0,0 +1,317 @@
+package android.database.sqlite;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Android's SQLiteDatabase API over one sqlite-jdbc connection, so DatabaseHelper runs unchanged
+ * on a plain JVM. Like Android's connection, it keeps a small LRU of prepared statements keyed by
+ * SQL text, nests transactions with a single outer BEGIN IMMEDIATE, and binds rawQuery arguments
+ * as text. Not thread-safe: benchmarks use one helper per thread.
+ */
+public final class SQLiteDatabase {
+
+    // Same size as Android's default per-connection statement cache
+    private static final int STATEMENT_CACHE_SIZE = 25;
+
+    public interface CursorFactory {
+    }
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    // Statements with an open cursor or execution: TRUE for cached ones, FALSE for private ones
+    private final Map<PreparedStatement, Boolean> inUse = new IdentityHashMap<>();
+    private PreparedStatement lastInsertRowId;
+    // Whether each open transaction level was marked successful, innermost first
+    private final ArrayDeque<Boolean> transactionLevels = new ArrayDeque<>();
+    private boolean transactionFailed;
+
+    private SQLiteDatabase(Connection connection) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    if (!inUse.containsKey(eldest.getValue())) {
+                        closeQuietly(eldest.getValue());
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // A null file opens a private in-memory database
+    static SQLiteDatabase open(File file) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        String url = "jdbc:sqlite:" + (file == null ? ":memory:" : file.getPath());
+        try {
+            return new SQLiteDatabase(config.createConnection(url));
+        } catch (java.sql.SQLException e) {
+            throw wrap("open " + url, e);
+        }
+    }
+
+    public void execSQL(String sql) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (java.sql.SQLException e) {
+            throw wrap(sql, e);
+        }
+    }
+
+    public void execSQL(String sql, Object[] bindArgs) {
+        PreparedStatement statement = acquire(sql);
+        try {
+            for (int i = 0; i < bindArgs.length; i++) {
+                statement.setObject(i + 1, bindArgs[i]);
+            }
+            statement.execute();
+        } catch (java.sql.SQLException e) {
+            throw wrap(sql, e);
+        } finally {
+            release(statement);
+        }
+    }
+
+    public Cursor rawQuery(String sql, String[] selectionArgs) {
+        PreparedStatement statement = acquire(sql);
+        try {
+            if (selectionArgs != null) {
+                for (int i = 0; i < selectionArgs.length; i++) {
+                    statement.setString(i + 1, selectionArgs[i]);
+                }
+            }
+            ResultSet rows = statement.executeQuery();
+            return new JdbcCursor(this, statement, rows);
+        } catch (java.sql.SQLException e) {
+            release(statement);
+            throw wrap(sql, e);
+        }
+    }
+
+    // -1 on failure, as on Android
+    public long insert(String table, String nullColumnHack, ContentValues values) {
+        try {
+            return insertOrThrow(table, nullColumnHack, values);
+        } catch (SQLException e) {
+            System.err.println("Error inserting into " + table + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    public long insertOrThrow(String table, String nullColumnHack, ContentValues values) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        int i = 0;
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            sql.append(i == 0 ? "" : ", ").append(entry.getKey());
+            placeholders.append(i++ == 0 ? "?" : ", ?");
+        }
+        sql.append(") VALUES (").append(placeholders).append(')');
+        return executeInsert(sql.toString(), values.valueSet().stream().map(Map.Entry::getValue).toArray());
+    }
+
+    public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        Object[] args = new Object[values.size() + (whereArgs == null ? 0 : whereArgs.length)];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            sql.append(i == 0 ? "" : ", ").append(entry.getKey()).append(" = ?");
+            args[i++] = entry.getValue();
+        }
+        if (whereClause != null) {
+            sql.append(" WHERE ").append(whereClause);
+        }
+        if (whereArgs != null) {
+            System.arraycopy(whereArgs, 0, args, i, whereArgs.length);
+        }
+        return executeUpdateDelete(sql.toString(), args);
+    }
+
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        String sql = "DELETE FROM " + table + (whereClause == null ? "" : " WHERE " + whereClause);
+        return executeUpdateDelete(sql, whereArgs == null ? new Object[0] : whereArgs);
+    }
+
+    public SQLiteStatement compileStatement(String sql) {
+        try {
+            return new SQLiteStatement(this, connection.prepareStatement(sql), sql);
+        } catch (java.sql.SQLException e) {
+            throw wrap(sql, e);
+        }
+    }
+
+    public void beginTransaction() {
+        if (transactionLevels.isEmpty()) {
+            try {
+                connection.setAutoCommit(false);
+            } catch (java.sql.SQLException e) {
+                throw wrap("BEGIN", e);
+            }
+            transactionFailed = false;
+        }
+        transactionLevels.push(Boolean.FALSE);
+    }
+
+    public void setTransactionSuccessful() {
+        if (transactionLevels.isEmpty()) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        transactionLevels.pop();
+        transactionLevels.push(Boolean.TRUE);
+    }
+
+    public boolean inTransaction() {
+        return !transactionLevels.isEmpty();
+    }
+
+    // A nested level that ends without setTransactionSuccessful rolls back the whole transaction
+    public void endTransaction() {
+        if (transactionLevels.isEmpty()) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        if (!transactionLevels.pop()) {
+            transactionFailed = true;
+        }
+        if (!transactionLevels.isEmpty()) {
+            return;
+        }
+        try {
+            if (transactionFailed) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+        } catch (java.sql.SQLException e) {
+            throw wrap(transactionFailed ? "ROLLBACK" : "COMMIT", e);
+        }
+    }
+
+    public int getVersion() {
+        Cursor cursor = rawQuery("PRAGMA user_version", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    public boolean isOpen() {
+        try {
+            return !connection.isClosed();
+        } catch (java.sql.SQLException e) {
+            return false;
+        }
+    }
+
+    public void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        if (lastInsertRowId != null) {
+            closeQuietly(lastInsertRowId);
+        }
+        try {
+            connection.close();
+        } catch (java.sql.SQLException e) {
+            throw wrap("close", e);
+        }
+    }
+
+    long executeInsert(String sql, Object[] args) {
+        return executeUpdateDelete(sql, args) > 0 ? lastInsertRowId() : -1;
+    }
+
+    int executeUpdateDelete(String sql, Object[] args) {
+        PreparedStatement statement = acquire(sql);
+        try {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i] instanceof Boolean ? ((Boolean) args[i] ? 1 : 0) : args[i]);
+            }
+            return statement.executeUpdate();
+        } catch (java.sql.SQLException e) {
+            throw wrap(sql, e);
+        } finally {
+            release(statement);
+        }
+    }
+
+    // Android reads this from the connection for free; over JDBC it is one cached query
+    long lastInsertRowId() {
+        try {
+            if (lastInsertRowId == null) {
+                lastInsertRowId = connection.prepareStatement("SELECT last_insert_rowid()");
+            }
+            try (ResultSet rows = lastInsertRowId.executeQuery()) {
+                rows.next();
+                return rows.getLong(1);
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap("last_insert_rowid", e);
+        }
+    }
+
+    // The cached statement for sql, or a private one while the cached one is still being read
+    private PreparedStatement acquire(String sql) {
+        try {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else if (inUse.containsKey(statement)) {
+                statement = connection.prepareStatement(sql);
+                inUse.put(statement, Boolean.FALSE);
+                return statement;
+            }
+            inUse.put(statement, Boolean.TRUE);
+            return statement;
+        } catch (java.sql.SQLException e) {
+            throw wrap(sql, e);
+        }
+    }
+
+    void release(PreparedStatement statement) {
+        Boolean cached = inUse.remove(statement);
+        try {
+            if (cached == Boolean.TRUE && statements.containsValue(statement)) {
+                statement.clearParameters();
+            } else {
+                statement.close();
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap("release", e);
+        }
+    }
+
+    static SQLException wrap(String sql, java.sql.SQLException e) {
+        return new SQLException(e.getMessage() + ", while executing: " + sql, e);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (java.sql.SQLException ignored) {
+            // Closing during eviction or shutdown; nothing left to undo
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package android.database.sqlite;
+
+import android.database.SQLException;
+
+public class SQLiteException extends SQLException {
+
+    public SQLiteException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,95 @@
+package android.database.sqlite;
+
+import android.content.Context;
+
+/**
+ * Opens the database on first use and creates or upgrades it inside a transaction, in the same
+ * order as Android: onConfigure, then onCreate or onUpgrade, then onOpen. Readable and writable
+ * databases are the same connection.
+ */
+public abstract class SQLiteOpenHelper implements AutoCloseable {
+
+    private final Context context;
+    private final String name;
+    private final int version;
+    private boolean writeAheadLogging;
+    private SQLiteDatabase database;
+
+    public SQLiteOpenHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
+        if (version < 1) {
+            throw new IllegalArgumentException("Version must be >= 1, was " + version);
+        }
+        this.context = context;
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getDatabaseName() {
+        return name;
+    }
+
+    public synchronized void setWriteAheadLoggingEnabled(boolean enabled) {
+        writeAheadLogging = enabled;
+        if (database != null && database.isOpen()) {
+            database.execSQL("PRAGMA journal_mode = " + (enabled ? "WAL" : "DELETE"));
+        }
+    }
+
+    public synchronized SQLiteDatabase getWritableDatabase() {
+        if (database != null && database.isOpen()) {
+            return database;
+        }
+        SQLiteDatabase db = SQLiteDatabase.open(name == null ? null : context.getDatabasePath(name));
+        if (writeAheadLogging) {
+            db.execSQL("PRAGMA journal_mode = WAL");
+        }
+        onConfigure(db);
+
+        int current = db.getVersion();
+        if (current != version) {
+            db.beginTransaction();
+            try {
+                if (current == 0) {
+                    onCreate(db);
+                } else if (current < version) {
+                    onUpgrade(db, current, version);
+                } else {
+                    onDowngrade(db, current, version);
+                }
+                db.setVersion(version);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        onOpen(db);
+        database = db;
+        return db;
+    }
+
+    public SQLiteDatabase getReadableDatabase() {
+        return getWritableDatabase();
+    }
+
+    public void onConfigure(SQLiteDatabase db) {
+    }
+
+    public abstract void onCreate(SQLiteDatabase db);
+
+    public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        throw new SQLiteException("Can't downgrade database from version " + oldVersion + " to " + newVersion);
+    }
+
+    public void onOpen(SQLiteDatabase db) {
+    }
+
+    @Override
+    public synchronized void close() {
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+        database = null;
+    }
+}
@@ -0,0 +1,114 @@
+package android.database.sqlite;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+// One compiled statement, reused across executions until closed
+public final class SQLiteStatement implements AutoCloseable {
+
+    private final SQLiteDatabase database;
+    private final PreparedStatement statement;
+    private final String sql;
+
+    SQLiteStatement(SQLiteDatabase database, PreparedStatement statement, String sql) {
+        this.database = database;
+        this.statement = statement;
+        this.sql = sql;
+    }
+
+    public void bindLong(int index, long value) {
+        try {
+            statement.setLong(index, value);
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    public void bindDouble(int index, double value) {
+        try {
+            statement.setDouble(index, value);
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    public void bindString(int index, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("the bind value at index " + index + " is null");
+        }
+        try {
+            statement.setString(index, value);
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    public void bindNull(int index) {
+        try {
+            statement.setNull(index, java.sql.Types.NULL);
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    public void clearBindings() {
+        try {
+            statement.clearParameters();
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    public void execute() {
+        try {
+            statement.execute();
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    // The new row id, or -1 if no row was inserted
+    public long executeInsert() {
+        return executeUpdateDelete() > 0 ? database.lastInsertRowId() : -1;
+    }
+
+    public int executeUpdateDelete() {
+        try {
+            return statement.executeUpdate();
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    // The first column of the first row; throws if there is no row, as on Android
+    public long simpleQueryForLong() {
+        try (ResultSet rows = statement.executeQuery()) {
+            if (!rows.next()) {
+                throw new android.database.SQLException("query returned no rows: " + sql);
+            }
+            return rows.getLong(1);
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    public String simpleQueryForString() {
+        try (ResultSet rows = statement.executeQuery()) {
+            if (!rows.next()) {
+                throw new android.database.SQLException("query returned no rows: " + sql);
+            }
+            return rows.getString(1);
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            statement.close();
+        } catch (java.sql.SQLException e) {
+            throw SQLiteDatabase.wrap(sql, e);
+        }
+    }
+}
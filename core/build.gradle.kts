@@ -0,0 +1,19 @@
+// The trip, expense and settlement logic in plain Java, shared by the app and the benchmarks.
+// Its tests run on the JVM: ./gradlew :core:test
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Sources contain non-ASCII text such as the rupee sign; don't depend on the platform charset
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,11 @@
+package com.example.tourexpenses;
+
+import java.util.List;
+
+// One day of the expense list; count and total cover the whole day, expenses only the loaded pages
+public class DateGroup {
+    public int day;
+    public List<Expense> expenses;
+    public int expenseCount;
+    public long totalPaise;
+}
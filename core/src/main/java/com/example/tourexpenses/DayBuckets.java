@@ -0,0 +1,66 @@
+package com.example.tourexpenses;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Expense times are stored as epoch millis alongside a day bucket: the number of whole days since
+ * 1970-01-01 in the device's local time zone. Grouping by day is then plain integer work, and the
+ * only formatting left is turning a bucket into "dd/MM/yyyy" for a row that is actually shown.
+ */
+public final class DayBuckets {
+
+    public static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // Buckets are formatted as midnight UTC of the bucket, so the formatter itself runs in UTC
+    private static final ThreadLocal<SimpleDateFormat> DAY_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return format;
+        }
+    };
+
+    private DayBuckets() {
+    }
+
+    // Local calendar day of an instant
+    public static int dayOf(long epochMillis) {
+        long local = epochMillis + TimeZone.getDefault().getOffset(epochMillis);
+        return (int) Math.floorDiv(local, DAY_MILLIS);
+    }
+
+    public static String format(int day) {
+        return DAY_FORMAT.get().format(day * DAY_MILLIS);
+    }
+
+    // Expenses arrive newest first, so each day is one contiguous run; summaries are in the same order
+    public static List<DateGroup> groupByDay(List<Expense> expenses, List<DaySummary> days) {
+        List<DateGroup> groups = new ArrayList<>();
+        DateGroup group = null;
+        int summary = 0;
+
+        for (Expense expense : expenses) {
+            if (group == null || group.day != expense.day) {
+                group = new DateGroup();
+                group.day = expense.day;
+                group.expenses = new ArrayList<>();
+                while (summary < days.size() && days.get(summary).day > expense.day) {
+                    summary++;
+                }
+                if (summary < days.size() && days.get(summary).day == expense.day) {
+                    group.expenseCount = days.get(summary).expenseCount;
+                    group.totalPaise = days.get(summary).totalPaise;
+                }
+                groups.add(group);
+            }
+            group.expenses.add(expense);
+        }
+
+        return groups;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.tourexpenses;
+
+public class DaySummary {
+    public int day;
+    public int expenseCount;
+    public long totalPaise;
+}
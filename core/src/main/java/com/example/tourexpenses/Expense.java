@@ -0,0 +1,14 @@
+package com.example.tourexpenses;
+
+public class Expense {
+    public int id;
+    public int tripId;
+    public long paidById; // 0 when self paid or the payer is unknown
+    public boolean selfPaid;
+    public String paidBy; // payer's name, read-only, null when self paid
+    public long amountPaise;
+    public String category;
+    public String description;
+    public long time; // epoch millis
+    public int day; // DayBuckets day of time
+}
@@ -0,0 +1,380 @@
+package com.example.tourexpenses;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * TripStore in plain collections, for tests and benchmarks that run without Android.
+ *
+ * Each trip keeps its expenses in a tree ordered newest first, per-day counts and totals, and a
+ * TripAggregateCache.Entry that every write updates with the same arithmetic DatabaseHelper
+ * applies to its cached trips. Totals and settlements therefore cost the same however many
+ * expenses a trip has, and pages and day ranges are tree lookups.
+ *
+ * Nothing is persisted. Reads return copies, and every method is synchronized. Unlike SQLite,
+ * writes to a trip that does not exist fail with -1.
+ */
+public final class InMemoryTripStore implements TripStore {
+
+    // The order of getTripExpenses: newest first, then highest id
+    private static final Comparator<Expense> NEWEST_FIRST = (a, b) ->
+            a.time != b.time ? Long.compare(b.time, a.time) : Integer.compare(b.id, a.id);
+
+    private static final class TripRecord {
+        final Trip trip;
+        final List<Participant> participants; // sorted by name
+        final TreeSet<Expense> expenses = new TreeSet<>(NEWEST_FIRST);
+        final TreeMap<Integer, DaySummary> days = new TreeMap<>();
+        final TripAggregateCache.Entry aggregates;
+
+        TripRecord(Trip trip, List<Participant> participants) {
+            this.trip = trip;
+            this.participants = participants;
+            long[] ids = new long[participants.size()];
+            String[] names = new String[participants.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = participants.get(i).id;
+                names[i] = participants.get(i).name;
+            }
+            this.aggregates = new TripAggregateCache.Entry(ids, names);
+        }
+    }
+
+    // What each participant owes of one split expense, parallel arrays
+    private static final class Split {
+        final long[] participantIds;
+        final long[] owed;
+
+        Split(long[] participantIds, long[] owed) {
+            this.participantIds = participantIds;
+            this.owed = owed;
+        }
+    }
+
+    private final TreeMap<Integer, TripRecord> trips = new TreeMap<>();
+    private final Map<Integer, Expense> expenses = new HashMap<>();
+    private final Map<Integer, Split> splits = new HashMap<>();
+    // Every trip's participants, for payer names
+    private final Map<Long, String> participantNames = new HashMap<>();
+    private int nextTripId = 1;
+    private long nextParticipantId = 1;
+    private int nextExpenseId = 1;
+
+    // TRIP OPERATIONS
+    @Override
+    public synchronized long addTrip(String name, String startDate, String endDate, List<String> participants) {
+        Trip trip = new Trip();
+        trip.id = nextTripId++;
+        trip.name = name;
+        trip.startDate = startDate;
+        trip.endDate = endDate;
+        trip.status = "ONGOING";
+
+        List<Participant> members = new ArrayList<>();
+        if (participants != null) {
+            for (String participantName : participants) {
+                Participant participant = new Participant();
+                participant.id = nextParticipantId++;
+                participant.name = participantName.trim();
+                members.add(participant);
+                participantNames.put(participant.id, participant.name);
+            }
+        }
+        members.sort((a, b) -> a.name.equals(b.name) ? Long.compare(a.id, b.id) : a.name.compareTo(b.name));
+        trips.put(trip.id, new TripRecord(trip, members));
+        return trip.id;
+    }
+
+    @Override
+    public synchronized List<Trip> getAllTrips() {
+        return getTripsByStatus(null);
+    }
+
+    @Override
+    public synchronized List<Trip> getTripsByStatus(String status) {
+        List<Trip> result = new ArrayList<>();
+        for (TripRecord record : trips.descendingMap().values()) {
+            if (status == null || status.equals(record.trip.status)) {
+                result.add(summary(record));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Trip getTripById(int tripId) {
+        TripRecord record = trips.get(tripId);
+        return record == null ? null : summary(record);
+    }
+
+    // The trip with its totals; a missing end date shows the last expense's date
+    private static Trip summary(TripRecord record) {
+        Trip trip = new Trip();
+        trip.id = record.trip.id;
+        trip.name = record.trip.name;
+        trip.startDate = record.trip.startDate;
+        trip.endDate = record.trip.endDate;
+        trip.status = record.trip.status;
+        trip.totalPaise = record.aggregates.total;
+        trip.expenseCount = record.aggregates.expenseCount;
+        if ((trip.endDate == null || trip.endDate.isEmpty()) && !record.expenses.isEmpty()) {
+            trip.endDate = DayBuckets.format(DayBuckets.dayOf(record.aggregates.lastTime));
+        }
+        return trip;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getTripStatusCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (TripRecord record : trips.values()) {
+            counts.merge(record.trip.status, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized void updateTripStatus(int tripId, String status) {
+        TripRecord record = trips.get(tripId);
+        if (record != null) {
+            record.trip.status = status;
+        }
+    }
+
+    @Override
+    public synchronized void deleteTrip(int tripId) {
+        TripRecord record = trips.remove(tripId);
+        if (record == null) {
+            return;
+        }
+        for (Expense expense : record.expenses) {
+            expenses.remove(expense.id);
+            splits.remove(expense.id);
+        }
+        for (Participant participant : record.participants) {
+            participantNames.remove(participant.id);
+        }
+    }
+
+    // PARTICIPANT OPERATIONS
+    @Override
+    public synchronized List<String> getTripParticipants(int tripId) {
+        List<String> names = new ArrayList<>();
+        for (Participant participant : getParticipants(tripId)) {
+            names.add(participant.name);
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized List<Participant> getParticipants(int tripId) {
+        List<Participant> result = new ArrayList<>();
+        TripRecord record = trips.get(tripId);
+        if (record != null) {
+            for (Participant participant : record.participants) {
+                Participant copy = new Participant();
+                copy.id = participant.id;
+                copy.name = participant.name;
+                result.add(copy);
+            }
+        }
+        return result;
+    }
+
+    // EXPENSE OPERATIONS
+    @Override
+    public synchronized long addExpense(int tripId, long paidById, boolean selfPaid, long amountPaise, String category,
+                                        String description, long expenseTime) {
+        TripRecord record = trips.get(tripId);
+        if (record == null) {
+            return -1;
+        }
+        Expense expense = newExpense(tripId, selfPaid ? 0 : paidById, selfPaid, amountPaise, category, description,
+                expenseTime);
+        add(record, expense);
+        return expense.id;
+    }
+
+    @Override
+    public synchronized long addSplitExpense(int tripId, long paidById, long amountPaise, String category,
+                                             String description, long expenseTime, long[] participantIds, long[] shares) {
+        if (participantIds.length == 0 || participantIds.length != shares.length) {
+            throw new IllegalArgumentException("Need one share per participant in the split");
+        }
+        long[] owed = SplitBalanceEngine.allocate(amountPaise, shares);
+        TripRecord record = trips.get(tripId);
+        if (record == null) {
+            return -1;
+        }
+        Expense expense = newExpense(tripId, paidById, false, amountPaise, category, description, expenseTime);
+        add(record, expense);
+        Split split = new Split(participantIds.clone(), owed);
+        splits.put(expense.id, split);
+        record.aggregates.addOwed(split.participantIds, owed, 1);
+        return expense.id;
+    }
+
+    private Expense newExpense(int tripId, long paidById, boolean selfPaid, long amountPaise, String category,
+                               String description, long expenseTime) {
+        Expense expense = new Expense();
+        expense.id = nextExpenseId++;
+        expense.tripId = tripId;
+        expense.paidById = paidById;
+        expense.selfPaid = selfPaid;
+        expense.paidBy = selfPaid ? null : participantNames.get(paidById);
+        expense.amountPaise = amountPaise;
+        expense.category = category;
+        expense.description = description;
+        expense.time = expenseTime > 0 ? expenseTime : System.currentTimeMillis();
+        expense.day = DayBuckets.dayOf(expense.time);
+        return expense;
+    }
+
+    private void add(TripRecord record, Expense expense) {
+        expenses.put(expense.id, expense);
+        record.expenses.add(expense);
+
+        DaySummary day = record.days.get(expense.day);
+        if (day == null) {
+            day = new DaySummary();
+            day.day = expense.day;
+            record.days.put(expense.day, day);
+        }
+        day.expenseCount++;
+        day.totalPaise += expense.amountPaise;
+
+        record.aggregates.addPaid(expense.paidById, expense.selfPaid, expense.amountPaise);
+        record.aggregates.expenseCount++;
+        record.aggregates.lastTime = Math.max(record.aggregates.lastTime, expense.time);
+    }
+
+    @Override
+    public synchronized void deleteExpense(int expenseId) {
+        Expense expense = expenses.remove(expenseId);
+        if (expense == null) {
+            return;
+        }
+        TripRecord record = trips.get(expense.tripId);
+        record.expenses.remove(expense);
+
+        DaySummary day = record.days.get(expense.day);
+        if (--day.expenseCount == 0) {
+            record.days.remove(expense.day);
+        } else {
+            day.totalPaise -= expense.amountPaise;
+        }
+
+        record.aggregates.addPaid(expense.paidById, expense.selfPaid, -expense.amountPaise);
+        record.aggregates.expenseCount--;
+        record.aggregates.lastTime = record.expenses.isEmpty() ? 0 : record.expenses.first().time;
+        Split split = splits.remove(expenseId);
+        if (split != null) {
+            record.aggregates.addOwed(split.participantIds, split.owed, -1);
+        }
+    }
+
+    @Override
+    public synchronized List<Expense> getTripExpenses(int tripId) {
+        return getTripExpensesPage(tripId, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<Expense> getTripExpensesPage(int tripId, long afterTime, int afterId, int limit) {
+        List<Expense> page = new ArrayList<>();
+        TripRecord record = trips.get(tripId);
+        if (record == null) {
+            return page;
+        }
+        Expense after = new Expense();
+        after.time = afterTime;
+        after.id = afterId;
+        Iterator<Expense> rest = record.expenses.tailSet(after, false).iterator();
+        while (page.size() < limit && rest.hasNext()) {
+            page.add(copy(rest.next()));
+        }
+        return page;
+    }
+
+    private static Expense copy(Expense expense) {
+        Expense copy = new Expense();
+        copy.id = expense.id;
+        copy.tripId = expense.tripId;
+        copy.paidById = expense.paidById;
+        copy.selfPaid = expense.selfPaid;
+        copy.paidBy = expense.paidBy;
+        copy.amountPaise = expense.amountPaise;
+        copy.category = expense.category;
+        copy.description = expense.description;
+        copy.time = expense.time;
+        copy.day = expense.day;
+        return copy;
+    }
+
+    @Override
+    public synchronized List<DaySummary> getDaySummaries(int tripId, int fromDay, int toDay) {
+        List<DaySummary> result = new ArrayList<>();
+        TripRecord record = trips.get(tripId);
+        if (record == null || fromDay > toDay) {
+            return result;
+        }
+        NavigableMap<Integer, DaySummary> range = record.days.subMap(fromDay, true, toDay, true).descendingMap();
+        for (DaySummary day : range.values()) {
+            DaySummary copy = new DaySummary();
+            copy.day = day.day;
+            copy.expenseCount = day.expenseCount;
+            copy.totalPaise = day.totalPaise;
+            result.add(copy);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getDayWiseExpenses(int tripId) {
+        Map<String, Long> dayWiseExpenses = new LinkedHashMap<>();
+        TripRecord record = trips.get(tripId);
+        if (record != null) {
+            for (DaySummary day : record.days.values()) {
+                dayWiseExpenses.put(DayBuckets.format(day.day), day.totalPaise);
+            }
+        }
+        return dayWiseExpenses;
+    }
+
+    // CALCULATIONS
+    @Override
+    public synchronized int getTripExpenseCount(int tripId) {
+        TripRecord record = trips.get(tripId);
+        return record == null ? 0 : record.aggregates.expenseCount;
+    }
+
+    @Override
+    public synchronized long getTripTotalExpense(int tripId) {
+        TripRecord record = trips.get(tripId);
+        return record == null ? 0 : record.aggregates.total;
+    }
+
+    @Override
+    public synchronized String getLastExpenseDate(int tripId) {
+        TripRecord record = trips.get(tripId);
+        if (record == null || record.expenses.isEmpty()) {
+            return null;
+        }
+        return DayBuckets.format(DayBuckets.dayOf(record.aggregates.lastTime));
+    }
+
+    @Override
+    public synchronized Settlement getSettlement(int tripId) {
+        TripRecord record = trips.get(tripId);
+        if (record == null) {
+            return Settlement.of(new TripAggregateCache.Entry(new long[0], new String[0]));
+        }
+        return Settlement.of(record.aggregates);
+    }
+}
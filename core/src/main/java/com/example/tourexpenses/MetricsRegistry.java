@@ -0,0 +1,199 @@
+package com.example.tourexpenses;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters and latency histograms for the database and the screen loads.
+ *
+ * Off by default. While off, begin() returns null and every other call returns after one
+ * volatile read, so instrumented code costs nothing measurable. While on, each operation keeps
+ * a LatencyHistogram of its durations in nanoseconds and the queries and rows read inside it.
+ * Queries count against the innermost operation on their thread and, inclusively, against the
+ * operations around it.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    // One named operation or trace section, over every call since the last reset
+    public static final class Operation {
+        public final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public long calls() {
+            return latency.count();
+        }
+
+        public long queries() {
+            return queries.get();
+        }
+
+        public long rows() {
+            return rows.get();
+        }
+    }
+
+    // A call in progress, from begin() to end() on one thread
+    public static final class Span {
+        private final Operation operation;
+        private final Span parent;
+        private final long start;
+        private long queries;
+        private long rows;
+
+        Span(Operation operation, Span parent, long start) {
+            this.operation = operation;
+            this.parent = parent;
+            this.start = start;
+        }
+    }
+
+    private volatile boolean enabled;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // Tests use their own registry so they do not see the app's numbers
+    MetricsRegistry() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Starts timing name on this thread; pass the result to end() in a finally block
+    public Span begin(String name) {
+        if (!enabled) {
+            return null;
+        }
+        Span span = new Span(operation(name), current.get(), System.nanoTime());
+        current.set(span);
+        return span;
+    }
+
+    public void end(Span span) {
+        if (span == null) {
+            return;
+        }
+        span.operation.latency.record(System.nanoTime() - span.start);
+        span.operation.queries.addAndGet(span.queries);
+        span.operation.rows.addAndGet(span.rows);
+        if (span.parent != null) {
+            span.parent.queries += span.queries;
+            span.parent.rows += span.rows;
+        }
+        current.set(span.parent);
+    }
+
+    // One finished query that read rows, counted in the totals and against this thread's span
+    public void queried(long rows) {
+        if (!enabled) {
+            return;
+        }
+        add("db.queries", 1);
+        add("db.rows", rows);
+        Span span = current.get();
+        if (span != null) {
+            span.queries++;
+            span.rows += rows;
+        }
+    }
+
+    // For sections that end on another thread than they began: 0 while off, else a start time for record()
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(String name, long start) {
+        if (start != 0) {
+            operation(name).latency.record(System.nanoTime() - start);
+        }
+    }
+
+    public void increment(String counter) {
+        if (enabled) {
+            add(counter, 1);
+        }
+    }
+
+    private void add(String counter, long delta) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            value = counters.computeIfAbsent(counter, name -> new AtomicLong());
+        }
+        value.addAndGet(delta);
+    }
+
+    private Operation operation(String name) {
+        Operation operation = operations.get(name);
+        return operation != null ? operation : operations.computeIfAbsent(name, Operation::new);
+    }
+
+    public long counter(String name) {
+        AtomicLong value = counters.get(name);
+        return value == null ? 0 : value.get();
+    }
+
+    // The operation's numbers, or null if it has not run since the last reset
+    public Operation getOperation(String name) {
+        return operations.get(name);
+    }
+
+    public void reset() {
+        operations.clear();
+        counters.clear();
+    }
+
+    // Counters, then one line per operation: calls, queries and rows read, and latency in microseconds
+    public void dump(Writer out) throws IOException {
+        out.write("# enabled " + enabled + "\n");
+        for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(counters).entrySet()) {
+            out.write(counter.getKey() + " " + counter.getValue().get() + "\n");
+        }
+        out.write(String.format(Locale.ROOT, "%-36s %8s %8s %10s %10s %10s %10s %10s %10s\n", "# operation",
+                "calls", "queries", "rows", "mean_us", "p50_us", "p90_us", "p99_us", "max_us"));
+        for (Operation operation : new TreeMap<>(operations).values()) {
+            LatencyHistogram latency = operation.latency;
+            out.write(String.format(Locale.ROOT, "%-36s %8d %8d %10d %10.1f %10.1f %10.1f %10.1f %10.1f\n",
+                    operation.name, operation.calls(), operation.queries(), operation.rows(), latency.mean() / 1000,
+                    latency.valueAtPercentile(50) / 1000.0, latency.valueAtPercentile(90) / 1000.0,
+                    latency.valueAtPercentile(99) / 1000.0, latency.max() / 1000.0));
+        }
+        out.flush();
+    }
+
+    // Replaces file with dump()'s output
+    public void dumpTo(File file) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            dump(out);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.tourexpenses;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts are held as a long number of paise everywhere: in the expenses table, in the models and
+ * in every total and balance. Only parsing user input and formatting for display deal with rupees.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    // Parses a rupee amount such as "149.5" into paise, rounding half up past two decimals
+    public static long parse(String rupees) {
+        try {
+            return new BigDecimal(rupees.trim()).setScale(2, RoundingMode.HALF_UP)
+                    .movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + rupees);
+        }
+    }
+
+    // "₹1234.50", or "-₹12.05" for negative amounts
+    public static String format(long paise) {
+        StringBuilder sb = new StringBuilder(16);
+        if (paise < 0) {
+            sb.append('-');
+        }
+        long abs = Math.abs(paise);
+        sb.append('₹').append(abs / 100).append('.');
+        long fraction = abs % 100;
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+        return sb.toString();
+    }
+
+    // Splits total into parts shares that differ by at most one paisa and sum exactly to total.
+    // The leftover paise go to the first shares, so the same order always gives the same split.
+    public static void split(long total, int parts, long[] shares) {
+        long base = Math.floorDiv(total, parts);
+        long remainder = Math.floorMod(total, parts);
+        for (int i = 0; i < parts; i++) {
+            shares[i] = base + (i < remainder ? 1 : 0);
+        }
+    }
+
+    // Share of one participant at position index in an equal split
+    public static long share(long total, int parts, int index) {
+        return Math.floorDiv(total, parts) + (index < Math.floorMod(total, parts) ? 1 : 0);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.tourexpenses;
+
+public class Participant {
+    public long id;
+    public String name;
+
+    // Shown as-is by spinner adapters
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.tourexpenses;
+
+// Per-participant arrays are parallel to participants, which is sorted by name
+public class Settlement {
+    public final String[] participants;
+    public final long[] paid;
+    public final long[] owed; // from split expenses only
+    public final long[] balances;
+    public long total;
+    public long sharedTotal;
+    public long splitTotal; // part of sharedTotal in split expenses
+
+    public Settlement(String[] participants) {
+        this.participants = participants;
+        this.paid = new long[participants.length];
+        this.owed = new long[participants.length];
+        this.balances = new long[participants.length];
+    }
+
+    // A settlement of a trip's aggregates, which are left unchanged
+    public static Settlement of(TripAggregateCache.Entry aggregates) {
+        Settlement settlement = new Settlement(aggregates.participants.clone());
+        System.arraycopy(aggregates.paid, 0, settlement.paid, 0, settlement.paid.length);
+        System.arraycopy(aggregates.owed, 0, settlement.owed, 0, settlement.owed.length);
+        settlement.total = aggregates.total;
+        settlement.sharedTotal = aggregates.sharedTotal;
+        settlement.splitTotal = aggregates.splitTotal;
+        settlement.computeBalances();
+        return settlement;
+    }
+
+    // Split expenses by their stored owed amounts, the rest equally; leftover paise of the
+    // equal part go to the first participants by name
+    void computeBalances() {
+        SplitBalanceEngine.balances(paid, owed, sharedTotal, splitTotal, balances);
+    }
+}
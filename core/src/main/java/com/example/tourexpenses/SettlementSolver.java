@@ -0,0 +1,190 @@
+package com.example.tourexpenses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns per-person balances into a list of "who pays whom" transfers.
+ *
+ * Balances are in paise, like every amount in the app, so the transfers always add up exactly.
+ * The greedy mode repeatedly settles the largest debtor against the largest creditor and needs at
+ * most n - 1 transfers. The exact mode finds the fewest possible transfers by splitting the group
+ * into as many independent zero-sum subgroups as possible, which is exponential and only used for
+ * small groups.
+ */
+public final class SettlementSolver {
+
+    // 2^16 subset sums is the most the exact mode will allocate
+    public static final int EXACT_MAX_MEMBERS = 16;
+
+    public static class Transfer {
+        public final String from;
+        public final String to;
+        public final long amountPaise;
+
+        Transfer(String from, String to, long amountPaise) {
+            this.from = from;
+            this.to = to;
+            this.amountPaise = amountPaise;
+        }
+    }
+
+    private SettlementSolver() {
+    }
+
+    // Exact for small groups, greedy otherwise; names and balances are parallel arrays
+    public static List<Transfer> solve(String[] names, long[] balances) {
+        return balances.length <= EXACT_MAX_MEMBERS ? solveExact(names, balances) : solveGreedy(names, balances);
+    }
+
+    // Greedy max-heap settlement; balances are in paise and must sum to zero
+    public static List<Transfer> solveGreedy(String[] names, long[] balances) {
+        List<Transfer> transfers = new ArrayList<>();
+        long[] remaining = balances.clone();
+        int[] all = new int[remaining.length];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        settleGreedy(names, remaining, all, all.length, transfers);
+        return transfers;
+    }
+
+    // Fewest transfers; falls back to greedy when there are too many non-zero balances
+    public static List<Transfer> solveExact(String[] names, long[] balances) {
+        int[] members = new int[balances.length];
+        int n = 0;
+        for (int i = 0; i < balances.length; i++) {
+            if (balances[i] != 0) {
+                members[n++] = i;
+            }
+        }
+        if (n > EXACT_MAX_MEMBERS) {
+            return solveGreedy(names, balances);
+        }
+
+        int full = (1 << n) - 1;
+        long[] sum = new long[full + 1];
+        byte[] groups = new byte[full + 1];
+        for (int mask = 1; mask <= full; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + balances[members[low]];
+
+            // Most zero-sum subgroups any subset of mask can be cut into
+            int best = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = rest & -rest;
+                if (groups[mask ^ bit] > best) {
+                    best = groups[mask ^ bit];
+                }
+            }
+            groups[mask] = (byte) (sum[mask] == 0 ? best + 1 : best);
+        }
+
+        // Walk back down from the full set; consecutive zero-sum masks differ by one subgroup
+        List<Transfer> transfers = new ArrayList<>();
+        long[] remaining = balances.clone();
+        int[] group = new int[n];
+        int mask = full;
+        int previousZero = full;
+        while (mask != 0) {
+            int next = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = rest & -rest;
+                if (groups[mask ^ bit] == groups[mask] - (sum[mask] == 0 ? 1 : 0)) {
+                    next = mask ^ bit;
+                    break;
+                }
+            }
+            mask = next;
+            if (sum[mask] == 0) {
+                int size = 0;
+                for (int rest = previousZero & ~mask; rest != 0; rest &= rest - 1) {
+                    group[size++] = members[Integer.numberOfTrailingZeros(rest)];
+                }
+                settleGreedy(names, remaining, group, size, transfers);
+                previousZero = mask;
+            }
+        }
+        return transfers;
+    }
+
+    // Settles the zero-sum set of members[0..count) with at most count - 1 transfers
+    private static void settleGreedy(String[] names, long[] remaining, int[] members, int count,
+                                     List<Transfer> transfers) {
+        int[] creditors = new int[count];
+        int[] debtors = new int[count];
+        int creditorCount = 0;
+        int debtorCount = 0;
+        for (int i = 0; i < count; i++) {
+            int member = members[i];
+            if (remaining[member] > 0) {
+                creditorCount = push(creditors, creditorCount, member, remaining, 1);
+            } else if (remaining[member] < 0) {
+                debtorCount = push(debtors, debtorCount, member, remaining, -1);
+            }
+        }
+
+        while (creditorCount > 0 && debtorCount > 0) {
+            int creditor = creditors[0];
+            int debtor = debtors[0];
+            creditorCount = pop(creditors, creditorCount, remaining, 1);
+            debtorCount = pop(debtors, debtorCount, remaining, -1);
+
+            long amount = Math.min(remaining[creditor], -remaining[debtor]);
+            transfers.add(new Transfer(names[debtor], names[creditor], amount));
+            remaining[creditor] -= amount;
+            remaining[debtor] += amount;
+
+            if (remaining[creditor] > 0) {
+                creditorCount = push(creditors, creditorCount, creditor, remaining, 1);
+            }
+            if (remaining[debtor] < 0) {
+                debtorCount = push(debtors, debtorCount, debtor, remaining, -1);
+            }
+        }
+    }
+
+    // Binary max-heap of member indices keyed by sign * remaining[member]
+    private static int push(int[] heap, int size, int member, long[] remaining, int sign) {
+        int child = size;
+        heap[child] = member;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (sign * remaining[heap[parent]] >= sign * remaining[heap[child]]) {
+                break;
+            }
+            swap(heap, parent, child);
+            child = parent;
+        }
+        return size + 1;
+    }
+
+    private static int pop(int[] heap, int size, long[] remaining, int sign) {
+        size--;
+        heap[0] = heap[size];
+        int parent = 0;
+        while (true) {
+            int left = 2 * parent + 1;
+            if (left >= size) {
+                break;
+            }
+            int largest = left;
+            int right = left + 1;
+            if (right < size && sign * remaining[heap[right]] > sign * remaining[heap[left]]) {
+                largest = right;
+            }
+            if (sign * remaining[heap[parent]] >= sign * remaining[heap[largest]]) {
+                break;
+            }
+            swap(heap, parent, largest);
+            parent = largest;
+        }
+        return size;
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+}
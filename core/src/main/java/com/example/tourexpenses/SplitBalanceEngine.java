@@ -0,0 +1,62 @@
+package com.example.tourexpenses;
+
+/**
+ * Balances for trips where some expenses are split by shares instead of equally.
+ *
+ * A split expense is divided once, when it is saved, into the paise each member owes: everyone
+ * gets the floor of their exact share and the leftover paise go to the largest remainders, the
+ * earlier member first on a tie. The parts sum exactly to the expense and each is within one
+ * paisa of the exact share. Because the owed paise are stored, a trip's balances only need one
+ * sum per participant, however many expenses it has.
+ *
+ * Shared expenses without a split form one pool that is split equally, as before splits existed.
+ */
+public final class SplitBalanceEngine {
+
+    private SplitBalanceEngine() {
+    }
+
+    // What each member owes of amount, parallel to shares; every share must be positive
+    public static long[] allocate(long amount, long[] shares) {
+        long totalShares = 0;
+        for (long share : shares) {
+            if (share <= 0) {
+                throw new IllegalArgumentException("Shares must be positive: " + share);
+            }
+            totalShares = Math.addExact(totalShares, share);
+        }
+
+        long[] owed = new long[shares.length];
+        long[] remainders = new long[shares.length];
+        long leftover = amount;
+        for (int i = 0; i < shares.length; i++) {
+            long exact = Math.multiplyExact(amount, shares[i]);
+            owed[i] = Math.floorDiv(exact, totalShares);
+            remainders[i] = Math.floorMod(exact, totalShares);
+            leftover -= owed[i];
+        }
+
+        // Fewer leftover paise than members, so a selection pass per paisa stays small
+        for (; leftover > 0; leftover--) {
+            int largest = 0;
+            for (int i = 1; i < remainders.length; i++) {
+                if (remainders[i] > remainders[largest]) {
+                    largest = i;
+                }
+            }
+            owed[largest]++;
+            remainders[largest] = -1;
+        }
+        return owed;
+    }
+
+    // balances[i] = paid[i] - owed[i] - member i's equal share of the shared expenses without a
+    // split. Arrays are by participant position; leftover pool paise go to the first positions.
+    public static void balances(long[] paid, long[] owed, long sharedTotal, long splitTotal, long[] balances) {
+        long equalPool = sharedTotal - splitTotal;
+        int members = paid.length;
+        for (int i = 0; i < members; i++) {
+            balances[i] = paid[i] - owed[i] - Money.share(equalPool, members, i);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.tourexpenses;
+
+public class Trip {
+    public int id;
+    public String name;
+    public String startDate;
+    public String endDate; // the last expense's date when no end date was set
+    public String status;
+    public long totalPaise;
+    public int expenseCount;
+}
@@ -0,0 +1,264 @@
+package com.example.tourexpenses;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of per-trip expense aggregates, kept current by DatabaseHelper's expense
+ * writes so totals, counts and settlements are read without touching the expenses table.
+ * Adding or deleting an expense is a delta in O(1), plus one per member of a split; balances
+ * follow from the sums when read, see SplitBalanceEngine.balances.
+ *
+ * A miss is loaded from SQL outside the lock. Expense writes are bracketed by writeStarted()
+ * and writeFinished(), which both bump a generation counter, and a loaded entry is only stored if
+ * the generation is unchanged since the load started and no write is in flight. So a load can
+ * neither overwrite a newer state nor already hold a row whose delta is still to come.
+ */
+public final class TripAggregateCache {
+
+    public static final class Entry {
+        // Sorted by name, the order getParticipants and Settlement use
+        public final String[] participants;
+        public final long[] paid;
+        public final long[] owed; // from split expenses only
+        public long total;
+        public long sharedTotal;
+        public long splitTotal; // part of sharedTotal in split expenses
+        public int expenseCount;
+        public long lastTime;
+        // Changed by deltas since it was loaded or last checked against a full recompute
+        boolean patched;
+        // Participant ids ascending, and where each one sits in participants
+        private final long[] sortedIds;
+        private final int[] positions;
+
+        // participantIds[i] is the id of participants[i]
+        public Entry(long[] participantIds, String[] participants) {
+            this.participants = participants;
+            this.paid = new long[participants.length];
+            this.owed = new long[participants.length];
+            this.sortedIds = participantIds.clone();
+            this.positions = new int[participantIds.length];
+            Arrays.sort(sortedIds);
+            for (int i = 0; i < participantIds.length; i++) {
+                positions[Arrays.binarySearch(sortedIds, participantIds[i])] = i;
+            }
+        }
+
+        private Entry(Entry source) {
+            this.participants = source.participants;
+            this.paid = source.paid.clone();
+            this.owed = source.owed.clone();
+            this.sortedIds = source.sortedIds;
+            this.positions = source.positions;
+        }
+
+        // Adds amount (negative to remove) paid by participant paidById. Self paid amounts and
+        // payers outside the trip only count in the totals.
+        public void addPaid(long paidById, boolean selfPaid, long amount) {
+            total += amount;
+            if (selfPaid) {
+                return;
+            }
+            sharedTotal += amount;
+            int payer = Arrays.binarySearch(sortedIds, paidById);
+            if (payer >= 0) {
+                paid[positions[payer]] += amount;
+            }
+        }
+
+        // Adds what participantId owes of split expenses. The amount leaves the equal pool even if
+        // the participant is no longer in the trip.
+        public void addOwed(long participantId, long amount) {
+            splitTotal += amount;
+            int member = Arrays.binarySearch(sortedIds, participantId);
+            if (member >= 0) {
+                owed[positions[member]] += amount;
+            }
+        }
+
+        // Adds or, with sign -1, takes back one split expense's owed amounts
+        void addOwed(long[] participantIds, long[] owed, int sign) {
+            for (int i = 0; i < participantIds.length; i++) {
+                addOwed(participantIds[i], sign * owed[i]);
+            }
+        }
+
+        // Whether every sum, count and time equals other's
+        public boolean matches(Entry other) {
+            return Arrays.equals(participants, other.participants) && Arrays.equals(paid, other.paid) &&
+                    Arrays.equals(owed, other.owed) && total == other.total && sharedTotal == other.sharedTotal &&
+                    splitTotal == other.splitTotal && expenseCount == other.expenseCount && lastTime == other.lastTime;
+        }
+
+        Entry copy() {
+            Entry copy = new Entry(this);
+            copy.total = total;
+            copy.sharedTotal = sharedTotal;
+            copy.splitTotal = splitTotal;
+            copy.expenseCount = expenseCount;
+            copy.lastTime = lastTime;
+            return copy;
+        }
+    }
+
+    private static final long[] NO_SPLIT = new long[0];
+
+    private final int maxTrips;
+    private final LinkedHashMap<Integer, Entry> entries;
+    private long generation;
+    private int writesInFlight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long mismatches;
+
+    public TripAggregateCache(int maxTrips) {
+        this.maxTrips = maxTrips;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > TripAggregateCache.this.maxTrips) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // A copy of the trip's aggregates, or null on a miss
+    public synchronized Entry get(int tripId) {
+        Entry entry = entries.get(tripId);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.copy();
+    }
+
+    // Read before loading a miss and pass to putIfUnchanged
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized boolean putIfUnchanged(int tripId, Entry entry, long loadGeneration) {
+        if (loadGeneration != generation || writesInFlight > 0) {
+            return false;
+        }
+        entries.put(tripId, entry.copy());
+        return true;
+    }
+
+    // Before an expense write touches SQL; pair with writeFinished() in a finally block, after the
+    // write has committed and its delta, if any, has been applied
+    public synchronized void writeStarted() {
+        generation++;
+        writesInFlight++;
+    }
+
+    public synchronized void writeFinished() {
+        generation++;
+        writesInFlight--;
+    }
+
+    public synchronized void expenseAdded(int tripId, long paidById, boolean selfPaid, long amount, long time) {
+        splitExpenseAdded(tripId, paidById, selfPaid, amount, time, NO_SPLIT, NO_SPLIT);
+    }
+
+    // splitIds and splitOwed are parallel, what each member owes; empty for an equal split
+    public synchronized void splitExpenseAdded(int tripId, long paidById, boolean selfPaid, long amount, long time,
+                                               long[] splitIds, long[] splitOwed) {
+        generation++;
+        Entry entry = entries.get(tripId);
+        if (entry != null) {
+            entry.addPaid(paidById, selfPaid, amount);
+            entry.addOwed(splitIds, splitOwed, 1);
+            entry.expenseCount++;
+            entry.lastTime = Math.max(entry.lastTime, time);
+            entry.patched = true;
+        }
+    }
+
+    // lastTime is the trip's latest expense time after the delete, which the caller reads from SQL
+    public synchronized void expenseDeleted(int tripId, long paidById, boolean selfPaid, long amount, long lastTime) {
+        splitExpenseDeleted(tripId, paidById, selfPaid, amount, lastTime, NO_SPLIT, NO_SPLIT);
+    }
+
+    public synchronized void splitExpenseDeleted(int tripId, long paidById, boolean selfPaid, long amount, long lastTime,
+                                                 long[] splitIds, long[] splitOwed) {
+        generation++;
+        Entry entry = entries.get(tripId);
+        if (entry != null) {
+            entry.addPaid(paidById, selfPaid, -amount);
+            entry.addOwed(splitIds, splitOwed, -1);
+            entry.expenseCount--;
+            entry.lastTime = lastTime;
+            entry.patched = true;
+        }
+    }
+
+    // Whether the trip's entry has taken deltas since it was loaded or last checked
+    public synchronized boolean isPatched(int tripId) {
+        Entry entry = entries.get(tripId);
+        return entry != null && entry.patched;
+    }
+
+    // Checks the cached entry against recomputed, loaded from scratch since loadGeneration. A cached
+    // entry that drifted is replaced and counted as a mismatch. A load that raced a write proves
+    // nothing and is dropped.
+    public synchronized boolean check(int tripId, Entry recomputed, long loadGeneration) {
+        Entry entry = entries.get(tripId);
+        if (loadGeneration != generation || writesInFlight > 0 || entry == null) {
+            return true;
+        }
+        if (entry.matches(recomputed)) {
+            entry.patched = false;
+            return true;
+        }
+        mismatches++;
+        entries.put(tripId, recomputed.copy());
+        return false;
+    }
+
+    public synchronized void remove(int tripId) {
+        generation++;
+        entries.remove(tripId);
+    }
+
+    // After writes that bypass DatabaseHelper's expense methods, such as a restore
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long mismatches() {
+        return mismatches;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long reads = hits + misses;
+        return "TripAggregateCache{size=" + entries.size() + "/" + maxTrips + ", hits=" + hits + ", misses=" + misses +
+                ", hitRate=" + (reads == 0 ? 0 : hits * 100 / reads) + "%, evictions=" + evictions +
+                ", mismatches=" + mismatches + "}";
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.tourexpenses;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trips, participants and expenses as the screens and the settlement report read them.
+ * DatabaseHelper is the SQLite store the app uses; InMemoryTripStore keeps the same data in
+ * plain collections so the aggregation can be tested and benchmarked off the device.
+ *
+ * Amounts are paise, times are epoch millis and days are DayBuckets days. Participants, and the
+ * Settlement arrays, are sorted by name; expense lists are newest first, ties by id.
+ */
+public interface TripStore {
+
+    // TRIPS - the new trip's id, or -1 if it could not be saved
+    long addTrip(String name, String startDate, String endDate, List<String> participants);
+
+    // Newest first, with their expense totals and counts
+    List<Trip> getAllTrips();
+
+    // Trips with the given status, newest first; null returns every trip
+    List<Trip> getTripsByStatus(String status);
+
+    Trip getTripById(int tripId);
+
+    Map<String, Integer> getTripStatusCounts();
+
+    void updateTripStatus(int tripId, String status);
+
+    // The trip with its participants, expenses and splits
+    void deleteTrip(int tripId);
+
+    // PARTICIPANTS
+    List<String> getTripParticipants(int tripId);
+
+    List<Participant> getParticipants(int tripId);
+
+    // EXPENSES - expenseTime is epoch millis, or 0 for now. paidById is ignored when selfPaid.
+    // Both return the new expense's id, or -1 if it could not be saved.
+    long addExpense(int tripId, long paidById, boolean selfPaid, long amountPaise, String category,
+                    String description, long expenseTime);
+
+    // Split by shares among participantIds, see SplitBalanceEngine.allocate
+    long addSplitExpense(int tripId, long paidById, long amountPaise, String category, String description,
+                         long expenseTime, long[] participantIds, long[] shares);
+
+    void deleteExpense(int expenseId);
+
+    List<Expense> getTripExpenses(int tripId);
+
+    // One page starting after the (time, id) of the previous page's last row. Pass
+    // Long.MAX_VALUE and Integer.MAX_VALUE for the first page.
+    List<Expense> getTripExpensesPage(int tripId, long afterTime, int afterId, int limit);
+
+    // Expense count and total per day for days fromDay..toDay, newest first
+    List<DaySummary> getDaySummaries(int tripId, int fromDay, int toDay);
+
+    // Day totals in date order, keyed by "dd/MM/yyyy"
+    Map<String, Long> getDayWiseExpenses(int tripId);
+
+    // CALCULATIONS
+    int getTripExpenseCount(int tripId);
+
+    long getTripTotalExpense(int tripId);
+
+    // "dd/MM/yyyy" of the latest expense, or null when the trip has none
+    String getLastExpenseDate(int tripId);
+
+    Settlement getSettlement(int tripId);
+}
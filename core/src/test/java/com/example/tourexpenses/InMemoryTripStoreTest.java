@@ -0,0 +1,274 @@
+package com.example.tourexpenses;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryTripStoreTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    // One expense as the reference model keeps it
+    private static final class Row {
+        int id;
+        int trip;
+        int payer; // index into the trip's members, -1 when self paid
+        long amount;
+        long time;
+        long[] owed; // per member, null for an equal split
+    }
+
+    @Test
+    public void randomWrites_matchBruteForceReference() {
+        InMemoryTripStore store = new InMemoryTripStore();
+        List<String> names = Arrays.asList("Ravi", "Asha", "Meera", "Kiran");
+        int[] trips = {
+                (int) store.addTrip("Coorg", "01/06/2025", "", names),
+                (int) store.addTrip("Hampi", "01/06/2025", "", names)};
+        long[][] memberIds = new long[trips.length][];
+        for (int t = 0; t < trips.length; t++) {
+            List<Participant> participants = store.getParticipants(trips[t]);
+            // In the order of names, not the store's name order
+            memberIds[t] = new long[names.size()];
+            for (Participant participant : participants) {
+                memberIds[t][names.indexOf(participant.name)] = participant.id;
+            }
+        }
+        Random random = new Random(3);
+        List<Row> rows = new ArrayList<>();
+
+        for (int step = 0; step < 3_000; step++) {
+            if (rows.isEmpty() || random.nextInt(4) > 0) {
+                Row row = new Row();
+                int t = random.nextInt(trips.length);
+                row.trip = trips[t];
+                row.payer = random.nextInt(6) == 0 ? -1 : random.nextInt(names.size());
+                row.amount = 1 + random.nextInt(50_000);
+                // Few distinct times, so ties on time are ordered by id
+                row.time = START + random.nextInt(400) * 3_600_000L;
+                long payerId = row.payer < 0 ? 0 : memberIds[t][row.payer];
+                if (row.payer >= 0 && random.nextInt(3) == 0) {
+                    long[] shares = new long[names.size()];
+                    shares[row.payer] = 1 + random.nextInt(3);
+                    shares[random.nextInt(shares.length)] = 1 + random.nextInt(3);
+                    List<Long> ids = new ArrayList<>();
+                    List<Long> nonZero = new ArrayList<>();
+                    for (int i = 0; i < shares.length; i++) {
+                        if (shares[i] > 0) {
+                            ids.add(memberIds[t][i]);
+                            nonZero.add(shares[i]);
+                        }
+                    }
+                    long[] splitIds = ids.stream().mapToLong(Long::longValue).toArray();
+                    long[] splitShares = nonZero.stream().mapToLong(Long::longValue).toArray();
+                    long[] parts = SplitBalanceEngine.allocate(row.amount, splitShares);
+                    row.owed = new long[shares.length];
+                    for (int i = 0, p = 0; i < shares.length; i++) {
+                        if (shares[i] > 0) {
+                            row.owed[i] = parts[p++];
+                        }
+                    }
+                    row.id = (int) store.addSplitExpense(row.trip, payerId, row.amount, "Food", "Step " + step,
+                            row.time, splitIds, splitShares);
+                } else {
+                    row.id = (int) store.addExpense(row.trip, payerId, row.payer < 0, row.amount, "Food",
+                            "Step " + step, row.time);
+                }
+                rows.add(row);
+            } else {
+                store.deleteExpense(rows.remove(random.nextInt(rows.size())).id);
+            }
+
+            if (step % 250 == 0) {
+                for (int tripId : trips) {
+                    assertMatchesReference(store, tripId, rows, names);
+                }
+            }
+        }
+        for (int tripId : trips) {
+            assertMatchesReference(store, tripId, rows, names);
+        }
+
+        store.deleteTrip(trips[0]);
+        assertNull(store.getTripById(trips[0]));
+        assertEquals(0, store.getTripTotalExpense(trips[0]));
+        assertTrue(store.getTripExpenses(trips[0]).isEmpty());
+        rows.removeIf(row -> row.trip == trips[0]);
+        assertMatchesReference(store, trips[1], rows, names);
+    }
+
+    private static void assertMatchesReference(InMemoryTripStore store, int tripId, List<Row> allRows,
+                                               List<String> names) {
+        int members = names.size();
+        List<Row> rows = new ArrayList<>();
+        for (Row row : allRows) {
+            if (row.trip == tripId) {
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.<Row>comparingLong(row -> -row.time).thenComparingInt(row -> -row.id));
+
+        // Totals and settlement
+        long total = 0;
+        long sharedTotal = 0;
+        long splitTotal = 0;
+        long[] paid = new long[members];
+        long[] owed = new long[members];
+        TreeMap<Integer, long[]> days = new TreeMap<>();
+        for (Row row : rows) {
+            total += row.amount;
+            if (row.payer >= 0) {
+                sharedTotal += row.amount;
+                paid[row.payer] += row.amount;
+            }
+            if (row.owed != null) {
+                splitTotal += row.amount;
+                for (int i = 0; i < members; i++) {
+                    owed[i] += row.owed[i];
+                }
+            }
+            long[] day = days.computeIfAbsent(DayBuckets.dayOf(row.time), d -> new long[2]);
+            day[0]++;
+            day[1] += row.amount;
+        }
+        assertEquals(total, store.getTripTotalExpense(tripId));
+        assertEquals(rows.size(), store.getTripExpenseCount(tripId));
+        assertEquals(total, store.getTripById(tripId).totalPaise);
+        assertEquals(rows.isEmpty() ? null : DayBuckets.format(DayBuckets.dayOf(rows.get(0).time)),
+                store.getLastExpenseDate(tripId));
+
+        // Members are sorted by name, which the reference arrays are not
+        List<String> sorted = store.getTripParticipants(tripId);
+        long[] sortedPaid = new long[members];
+        long[] sortedOwed = new long[members];
+        for (int i = 0; i < members; i++) {
+            int at = sorted.indexOf(names.get(i));
+            sortedPaid[at] = paid[i];
+            sortedOwed[at] = owed[i];
+        }
+        long[] balances = new long[members];
+        SplitBalanceEngine.balances(sortedPaid, sortedOwed, sharedTotal, splitTotal, balances);
+        Settlement settlement = store.getSettlement(tripId);
+        assertEquals(total, settlement.total);
+        assertEquals(sharedTotal, settlement.sharedTotal);
+        assertEquals(splitTotal, settlement.splitTotal);
+        assertArrayEquals(sortedPaid, settlement.paid);
+        assertArrayEquals(sortedOwed, settlement.owed);
+        assertArrayEquals(balances, settlement.balances);
+
+        // Pages of 7 cover every expense once, newest first
+        List<Integer> paged = new ArrayList<>();
+        long afterTime = Long.MAX_VALUE;
+        int afterId = Integer.MAX_VALUE;
+        for (List<Expense> page; !(page = store.getTripExpensesPage(tripId, afterTime, afterId, 7)).isEmpty(); ) {
+            for (Expense expense : page) {
+                paged.add(expense.id);
+            }
+            Expense last = page.get(page.size() - 1);
+            afterTime = last.time;
+            afterId = last.id;
+        }
+        List<Integer> expectedIds = new ArrayList<>();
+        for (Row row : rows) {
+            expectedIds.add(row.id);
+        }
+        assertEquals(expectedIds, paged);
+
+        // Day summaries over a range, newest first, and day-wise totals in date order
+        if (days.size() > 6) {
+            int from = days.firstKey() + 3;
+            int to = days.lastKey() - 3;
+            List<DaySummary> summaries = store.getDaySummaries(tripId, from, to);
+            List<long[]> expected = new ArrayList<>(days.subMap(from, true, to, true).descendingMap().values());
+            assertEquals(expected.size(), summaries.size());
+            for (int i = 0; i < summaries.size(); i++) {
+                assertEquals(expected.get(i)[0], summaries.get(i).expenseCount);
+                assertEquals(expected.get(i)[1], summaries.get(i).totalPaise);
+            }
+        }
+        Map<String, Long> dayWise = store.getDayWiseExpenses(tripId);
+        assertEquals(days.size(), dayWise.size());
+        int i = 0;
+        for (Map.Entry<Integer, long[]> day : days.entrySet()) {
+            assertEquals(DayBuckets.format(day.getKey()), new ArrayList<>(dayWise.keySet()).get(i++));
+            assertEquals(day.getValue()[1], (long) dayWise.get(DayBuckets.format(day.getKey())));
+        }
+    }
+
+    @Test
+    public void expenses_namePayerAndDefaultToNow() {
+        InMemoryTripStore store = new InMemoryTripStore();
+        int tripId = (int) store.addTrip("Coorg", "01/06/2025", "", Arrays.asList(" Ravi ", "Asha"));
+        List<Participant> participants = store.getParticipants(tripId);
+        assertEquals(Arrays.asList("Asha", "Ravi"), store.getTripParticipants(tripId));
+
+        long before = System.currentTimeMillis();
+        store.addExpense(tripId, participants.get(1).id, false, 500, "Food", "Lunch", 0);
+        store.addExpense(tripId, participants.get(1).id, true, 200, "Food", "Snacks", START);
+        List<Expense> expenses = store.getTripExpenses(tripId);
+        assertEquals("Ravi", expenses.get(0).paidBy);
+        assertTrue(expenses.get(0).time >= before);
+        assertNull(expenses.get(1).paidBy);
+        assertEquals(0, expenses.get(1).paidById);
+        assertEquals(-1, store.addExpense(tripId + 1, 0, true, 100, "Food", "Nowhere", START));
+
+        // A missing end date shows the last expense's date
+        assertEquals(DayBuckets.format(DayBuckets.dayOf(expenses.get(0).time)), store.getAllTrips().get(0).endDate);
+    }
+
+    @Test
+    public void tripsByStatus_newestFirstWithCounts() {
+        InMemoryTripStore store = new InMemoryTripStore();
+        int coorg = (int) store.addTrip("Coorg", "01/06/2025", "05/06/2025", Arrays.asList("Asha"));
+        int hampi = (int) store.addTrip("Hampi", "01/07/2025", "", Arrays.asList("Asha"));
+        store.updateTripStatus(coorg, "COMPLETED");
+
+        assertEquals(hampi, store.getAllTrips().get(0).id);
+        assertEquals(1, store.getTripsByStatus("COMPLETED").size());
+        assertEquals(coorg, store.getTripsByStatus("COMPLETED").get(0).id);
+        assertEquals(Integer.valueOf(1), store.getTripStatusCounts().get("ONGOING"));
+        assertEquals(Integer.valueOf(1), store.getTripStatusCounts().get("COMPLETED"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void splitExpense_rejectsMismatchedShares() {
+        InMemoryTripStore store = new InMemoryTripStore();
+        int tripId = (int) store.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha", "Ravi"));
+        store.addSplitExpense(tripId, 1, 900, "Food", "Dinner", START, new long[]{1, 2}, new long[]{1});
+    }
+
+    @Test
+    public void groupByDay_putsEachExpenseUnderItsDay() {
+        InMemoryTripStore store = new InMemoryTripStore();
+        int tripId = (int) store.addTrip("Coorg", "01/06/2025", "", Arrays.asList("Asha"));
+        for (int i = 0; i < 30; i++) {
+            store.addExpense(tripId, 0, true, 100 + i, "Food", "Item " + i, START + i * 5 * 3_600_000L);
+        }
+        List<Expense> expenses = store.getTripExpenses(tripId);
+        List<DaySummary> days = store.getDaySummaries(tripId, 0, Integer.MAX_VALUE);
+
+        List<DateGroup> groups = DayBuckets.groupByDay(expenses, days);
+
+        assertEquals(days.size(), groups.size());
+        int seen = 0;
+        for (DateGroup group : groups) {
+            for (Expense expense : group.expenses) {
+                assertEquals(expense.day, group.day);
+            }
+            assertEquals(group.expenses.size(), group.expenseCount);
+            seen += group.expenses.size();
+        }
+        assertEquals(expenses.size(), seen);
+    }
+}
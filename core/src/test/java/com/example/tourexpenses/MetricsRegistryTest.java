@@ -0,0 +1,128 @@
+package com.example.tourexpenses;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void histogramBuckets_areContiguousAndWithinThreePercent() {
+        for (int bucket = 1; bucket < 1_800; bucket++) {
+            assertEquals(LatencyHistogram.highestInBucket(bucket - 1) + 1,
+                    LatencyHistogram.highestInBucket(bucket) - bucketWidth(bucket) + 1);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            long highest = LatencyHistogram.highestInBucket(LatencyHistogram.bucketOf(value));
+            assertTrue(value + " in bucket topping at " + highest, highest >= value);
+            assertTrue(value + " in bucket topping at " + highest, highest - value <= value / 32);
+        }
+    }
+
+    private static long bucketWidth(int bucket) {
+        return bucket < 64 ? 1 : 1L << (bucket / 32 - 1);
+    }
+
+    @Test
+    public void histogramPercentiles_matchSortedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(2);
+        long[] values = new long[20_000];
+        for (int i = 0; i < values.length; i++) {
+            // Mostly fast, with a slow tail
+            values[i] = random.nextInt(10) == 0 ? 1_000_000 + random.nextInt(50_000_000) : 20_000 + random.nextInt(200_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.valueAtPercentile(percentile);
+            assertTrue(percentile + "%: " + reported + " vs " + exact, reported >= exact && reported - exact <= exact / 32);
+        }
+        assertEquals(values[values.length - 1], histogram.valueAtPercentile(100));
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(values.length, histogram.count());
+    }
+
+    @Test
+    public void disabledRegistry_recordsNothing() {
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        MetricsRegistry.Span span = metrics.begin("db.getSettlement");
+        metrics.queried(10);
+        metrics.increment("db.connection.opens");
+        metrics.end(span);
+        metrics.record("ui.loadTrips", metrics.startTimer());
+
+        assertNull(span);
+        assertNull(metrics.getOperation("db.getSettlement"));
+        assertNull(metrics.getOperation("ui.loadTrips"));
+        assertEquals(0, metrics.counter("db.queries"));
+        assertEquals(0, metrics.counter("db.connection.opens"));
+    }
+
+    @Test
+    public void spans_countQueriesInnermostAndInclusively() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.setEnabled(true);
+
+        for (int call = 0; call < 3; call++) {
+            MetricsRegistry.Span outer = metrics.begin("db.getSettlement");
+            MetricsRegistry.Span inner = metrics.begin("db.getParticipants");
+            metrics.queried(4);
+            metrics.end(inner);
+            metrics.queried(7);
+            metrics.queried(1);
+            metrics.end(outer);
+        }
+        metrics.queried(5); // outside any span
+        metrics.increment("db.connection.opens");
+
+        MetricsRegistry.Operation settlement = metrics.getOperation("db.getSettlement");
+        MetricsRegistry.Operation participants = metrics.getOperation("db.getParticipants");
+        assertEquals(3, settlement.calls());
+        assertEquals(9, settlement.queries());
+        assertEquals(36, settlement.rows());
+        assertEquals(3, participants.calls());
+        assertEquals(3, participants.queries());
+        assertEquals(12, participants.rows());
+        assertEquals(10, metrics.counter("db.queries"));
+        assertEquals(41, metrics.counter("db.rows"));
+        assertEquals(1, metrics.counter("db.connection.opens"));
+        assertTrue(settlement.latency().max() >= participants.latency().max());
+
+        metrics.reset();
+        assertNull(metrics.getOperation("db.getSettlement"));
+        assertEquals(0, metrics.counter("db.queries"));
+    }
+
+    @Test
+    public void dump_listsCountersAndOperations() throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.setEnabled(true);
+        metrics.increment("db.connection.opens");
+        metrics.record("ui.loadTrips", metrics.startTimer());
+        MetricsRegistry.Span span = metrics.begin("db.getAllTrips");
+        metrics.queried(2);
+        metrics.end(span);
+
+        StringWriter out = new StringWriter();
+        metrics.dump(out);
+
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("db.connection.opens 1\n"));
+        assertTrue(dump, dump.contains("db.queries 1\n"));
+        assertTrue(dump, dump.matches("(?s).*\\ndb\\.getAllTrips +1 +1 +2 .*"));
+        assertTrue(dump, dump.matches("(?s).*\\nui\\.loadTrips +1 +0 +0 .*"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.tourexpenses;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MoneyTest {
+
+    @Test
+    public void parse_convertsRupeesToPaise() {
+        assertEquals(14950, Money.parse("149.5"));
+        assertEquals(100, Money.parse("1"));
+        assertEquals(1, Money.parse("0.005"));
+        assertEquals(33, Money.parse(" 0.333 "));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsGarbage() {
+        Money.parse("12a");
+    }
+
+    @Test
+    public void format_alwaysShowsTwoDecimals() {
+        assertEquals("₹0.00", Money.format(0));
+        assertEquals("₹1234.05", Money.format(123405));
+        assertEquals("-₹0.50", Money.format(-50));
+    }
+
+    @Test
+    public void split_distributesRemainderToFirstShares() {
+        long[] shares = new long[3];
+        Money.split(10000, 3, shares);
+        assertArrayEquals(new long[]{3334, 3333, 3333}, shares);
+
+        Money.split(-10000, 3, shares);
+        assertArrayEquals(new long[]{-3333, -3333, -3334}, shares);
+    }
+
+    @Test
+    public void split_alwaysSumsToTotal() {
+        long[] shares = new long[7];
+        for (long total = -500; total <= 500; total += 13) {
+            Money.split(total, 7, shares);
+            long sum = 0;
+            for (int i = 0; i < shares.length; i++) {
+                sum += shares[i];
+                assertEquals(shares[i], Money.share(total, 7, i));
+            }
+            assertEquals(total, sum);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.tourexpenses;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SettlementSolverTest {
+
+    @Test
+    public void singleDebtor_paysEachCreditor() {
+        String[] names = {"Asha", "Meera", "Ravi"};
+        long[] balances = {30000, -50000, 20000};
+
+        List<SettlementSolver.Transfer> transfers = SettlementSolver.solveGreedy(names, balances);
+
+        assertEquals(2, transfers.size());
+        assertSettles(names, balances, transfers);
+        assertEquals("Meera", transfers.get(0).from);
+        assertEquals("Asha", transfers.get(0).to);
+        assertEquals(30000, transfers.get(0).amountPaise);
+    }
+
+    @Test
+    public void settledGroup_needsNoTransfers() {
+        String[] names = {"Asha", "Ravi"};
+        long[] balances = {0, 0};
+
+        assertTrue(SettlementSolver.solve(names, balances).isEmpty());
+    }
+
+    @Test
+    public void exact_findsIndependentPairs() {
+        // {+4, -4} and {+3, +2, -5} settle separately in 3 transfers
+        String[] names = {"A", "B", "C", "D", "E"};
+        long[] balances = {400, 300, 200, -500, -400};
+
+        List<SettlementSolver.Transfer> transfers = SettlementSolver.solveExact(names, balances);
+
+        assertEquals(3, transfers.size());
+        assertSettles(names, balances, transfers);
+    }
+
+    @Test
+    public void exact_neverNeedsMoreTransfersThanGreedy() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            int members = 2 + random.nextInt(9);
+            String[] names = new String[members];
+            long[] balances = randomBalances(random, members, 1_000);
+            for (int i = 0; i < members; i++) {
+                names[i] = "Member " + i;
+            }
+
+            List<SettlementSolver.Transfer> greedy = SettlementSolver.solveGreedy(names, balances);
+            List<SettlementSolver.Transfer> exact = SettlementSolver.solveExact(names, balances);
+
+            assertSettles(names, balances, greedy);
+            assertSettles(names, balances, exact);
+            assertTrue(greedy.size() <= members - 1);
+            assertTrue(exact.size() <= greedy.size());
+        }
+    }
+
+    @Test
+    public void greedy_scalesToLargeGroups() {
+        Random random = new Random(7);
+        int members = 800;
+        String[] names = new String[members];
+        for (int i = 0; i < members; i++) {
+            names[i] = "Member " + i;
+        }
+        long[] balances = randomBalances(random, members, 5_000_000);
+
+        List<SettlementSolver.Transfer> transfers = SettlementSolver.solveGreedy(names, balances);
+
+        assertTrue(transfers.size() <= members - 1);
+        assertSettles(names, balances, transfers);
+    }
+
+    @Test
+    public void equalSplitRemainder_settlesToThePaisa() {
+        // 100 rupees shared three ways: shares of 33.34, 33.33 and 33.33, all paid by Asha
+        String[] names = {"Asha", "Meera", "Ravi"};
+        long[] shares = new long[3];
+        Money.split(10000, 3, shares);
+        long[] balances = {10000 - shares[0], -shares[1], -shares[2]};
+
+        List<SettlementSolver.Transfer> transfers = SettlementSolver.solve(names, balances);
+
+        assertEquals(2, transfers.size());
+        assertSettles(names, balances, transfers);
+        assertEquals(3333, transfers.get(0).amountPaise);
+        assertEquals(3333, transfers.get(1).amountPaise);
+    }
+
+    // Random balances in paise that sum to zero
+    private static long[] randomBalances(Random random, int members, int range) {
+        long[] balances = new long[members];
+        long sum = 0;
+        for (int i = 0; i < members - 1; i++) {
+            balances[i] = random.nextInt(2 * range + 1) - range;
+            sum += balances[i];
+        }
+        balances[members - 1] = -sum;
+        return balances;
+    }
+
+    private static void assertSettles(String[] names, long[] balances, List<SettlementSolver.Transfer> transfers) {
+        Map<String, Long> remaining = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            remaining.put(names[i], balances[i]);
+        }
+        applyTransfers(remaining, transfers);
+    }
+
+    private static void applyTransfers(Map<String, Long> remaining, List<SettlementSolver.Transfer> transfers) {
+        for (SettlementSolver.Transfer transfer : transfers) {
+            assertTrue(transfer.amountPaise > 0);
+            remaining.put(transfer.from, remaining.get(transfer.from) + transfer.amountPaise);
+            remaining.put(transfer.to, remaining.get(transfer.to) - transfer.amountPaise);
+        }
+        for (long left : remaining.values()) {
+            assertEquals(0, left);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.tourexpenses;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SplitBalanceEngineTest {
+
+    @Test
+    public void allocate_givesLeftoverPaiseToLargestRemainders() {
+        // 100 rupees at 1:1:2 is 25, 25, 50 exactly; 100.01 leaves one paisa for the 2-share member
+        assertArrayEquals(new long[]{2500, 2500, 5000}, SplitBalanceEngine.allocate(10000, new long[]{1, 1, 2}));
+        assertArrayEquals(new long[]{2500, 2500, 5001}, SplitBalanceEngine.allocate(10001, new long[]{1, 1, 2}));
+        // Equal remainders go to the earlier member
+        assertArrayEquals(new long[]{3334, 3333, 3333}, SplitBalanceEngine.allocate(10000, new long[]{1, 1, 1}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void allocate_rejectsZeroShares() {
+        SplitBalanceEngine.allocate(10000, new long[]{1, 0});
+    }
+
+    @Test
+    public void allocate_matchesOnePaisaAtATimeReference() {
+        Random random = new Random(11);
+        for (int run = 0; run < 2_000; run++) {
+            int members = 1 + random.nextInt(12);
+            long[] shares = new long[members];
+            for (int i = 0; i < members; i++) {
+                shares[i] = 1 + random.nextInt(random.nextBoolean() ? 3 : 100);
+            }
+            long amount = random.nextInt(5_000);
+
+            long[] owed = SplitBalanceEngine.allocate(amount, shares);
+
+            assertArrayEquals(referenceAllocate(amount, shares), owed);
+            long sum = 0;
+            for (long part : owed) {
+                sum += part;
+            }
+            assertEquals(amount, sum);
+        }
+    }
+
+    @Test
+    public void balances_matchPerExpenseReference() {
+        Random random = new Random(5);
+        for (int run = 0; run < 200; run++) {
+            int members = 2 + random.nextInt(8);
+            long[] paid = new long[members];
+            long[] owed = new long[members];
+            long[] expected = new long[members];
+            long sharedTotal = 0;
+            long splitTotal = 0;
+
+            for (int e = random.nextInt(40); e > 0; e--) {
+                long amount = 1 + random.nextInt(2_000);
+                int payer = random.nextInt(members);
+                paid[payer] += amount;
+                expected[payer] += amount;
+                sharedTotal += amount;
+                if (random.nextBoolean()) {
+                    // Shares for a random subset, at least the payer
+                    long[] shares = new long[members];
+                    shares[payer] = 1 + random.nextInt(4);
+                    for (int i = 0; i < members; i++) {
+                        if (i != payer && random.nextBoolean()) {
+                            shares[i] = 1 + random.nextInt(4);
+                        }
+                    }
+                    long[] parts = referenceSplit(amount, shares);
+                    for (int i = 0; i < members; i++) {
+                        owed[i] += parts[i];
+                        expected[i] -= parts[i];
+                    }
+                    splitTotal += amount;
+                }
+            }
+            // The unsplit expenses, split equally as one pool
+            long[] equal = new long[members];
+            Arrays.fill(equal, 1);
+            long[] poolParts = referenceAllocate(sharedTotal - splitTotal, equal);
+            for (int i = 0; i < members; i++) {
+                expected[i] -= poolParts[i];
+            }
+
+            long[] balances = new long[members];
+            SplitBalanceEngine.balances(paid, owed, sharedTotal, splitTotal, balances);
+
+            assertArrayEquals(expected, balances);
+            long sum = 0;
+            for (long balance : balances) {
+                sum += balance;
+            }
+            assertEquals(0, sum);
+        }
+    }
+
+    @Test
+    public void balances_scaleToLargeTrips() {
+        // 100k expenses over 50 members, summed per member the way DatabaseHelper loads them
+        Random random = new Random(3);
+        int members = 50;
+        long[] paid = new long[members];
+        long[] owed = new long[members];
+        long sharedTotal = 0;
+        long splitTotal = 0;
+        long[] shares = new long[10];
+        long[] subset = new long[10];
+        for (int e = 0; e < 100_000; e++) {
+            long amount = 1 + random.nextInt(500_000);
+            paid[random.nextInt(members)] += amount;
+            sharedTotal += amount;
+            if (e % 2 == 0) {
+                for (int i = 0; i < subset.length; i++) {
+                    subset[i] = (e + i * 5) % members;
+                    shares[i] = 1 + (e + i) % 3;
+                }
+                long[] parts = SplitBalanceEngine.allocate(amount, shares);
+                for (int i = 0; i < subset.length; i++) {
+                    owed[(int) subset[i]] += parts[i];
+                }
+                splitTotal += amount;
+            }
+        }
+
+        long[] balances = new long[members];
+        SplitBalanceEngine.balances(paid, owed, sharedTotal, splitTotal, balances);
+
+        long sum = 0;
+        for (long balance : balances) {
+            sum += balance;
+        }
+        assertEquals(0, sum);
+        assertTrue(splitTotal < sharedTotal);
+    }
+
+    // Hands out amount one paisa at a time to the member furthest below their exact share
+    // (amount * shares[i] / total), the earliest member on a tie
+    private static long[] referenceAllocate(long amount, long[] shares) {
+        long total = 0;
+        for (long share : shares) {
+            total += share;
+        }
+        long[] owed = new long[shares.length];
+        for (long given = 0; given < amount; given++) {
+            int furthest = 0;
+            for (int i = 1; i < shares.length; i++) {
+                if (amount * shares[i] - owed[i] * total > amount * shares[furthest] - owed[furthest] * total) {
+                    furthest = i;
+                }
+            }
+            owed[furthest]++;
+        }
+        return owed;
+    }
+
+    // referenceAllocate over the members with a share, zero for the rest
+    private static long[] referenceSplit(long amount, long[] shares) {
+        int inSplit = 0;
+        for (long share : shares) {
+            if (share > 0) {
+                inSplit++;
+            }
+        }
+        long[] splitShares = new long[inSplit];
+        for (int i = 0, j = 0; i < shares.length; i++) {
+            if (shares[i] > 0) {
+                splitShares[j++] = shares[i];
+            }
+        }
+        long[] splitParts = referenceAllocate(amount, splitShares);
+        long[] parts = new long[shares.length];
+        for (int i = 0, j = 0; i < shares.length; i++) {
+            if (shares[i] > 0) {
+                parts[i] = splitParts[j++];
+            }
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.tourexpenses;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TripAggregateCacheTest {
+
+    // Ids deliberately out of name order
+    private static final long ASHA = 12;
+    private static final long RAVI = 7;
+
+    @Test
+    public void writes_updateCachedEntryIncrementally() {
+        TripAggregateCache cache = new TripAggregateCache(4);
+        cache.putIfUnchanged(1, entry(), cache.generation());
+
+        cache.expenseAdded(1, ASHA, false, 1200, 5_000);
+        cache.expenseAdded(1, RAVI, false, 300, 9_000);
+        cache.expenseAdded(1, 0, true, 700, 7_000);
+        cache.expenseDeleted(1, ASHA, false, 1200, 9_000);
+
+        TripAggregateCache.Entry entry = cache.get(1);
+        assertEquals(1000, entry.total);
+        assertEquals(300, entry.sharedTotal);
+        assertEquals(2, entry.expenseCount);
+        assertEquals(9_000, entry.lastTime);
+        assertArrayEquals(new long[]{0, 300}, entry.paid);
+    }
+
+    @Test
+    public void deltas_matchFullRecomputeAfterRandomWrites() {
+        long[] ids = {ASHA, RAVI, 99}; // 99 paid before leaving the trip
+        List<long[]> expenses = new ArrayList<>(); // payer, self paid, amount, time, then id and owed pairs
+        TripAggregateCache cache = new TripAggregateCache(4);
+        cache.putIfUnchanged(1, entry(), cache.generation());
+        Random random = new Random(3);
+
+        for (int step = 0; step < 2_000; step++) {
+            int op = random.nextInt(10);
+            if (expenses.isEmpty() || op < 4) {
+                long payer = ids[random.nextInt(ids.length)];
+                boolean selfPaid = random.nextInt(5) == 0;
+                long[] expense = {payer, selfPaid ? 1 : 0, 1 + random.nextInt(100_000), 1 + random.nextInt(1_000_000)};
+                expenses.add(expense);
+                cache.expenseAdded(1, payer, selfPaid, expense[2], expense[3]);
+            } else if (op < 7) {
+                long[] members = random.nextBoolean() ? ids : new long[]{ids[random.nextInt(ids.length)]};
+                long[] shares = new long[members.length];
+                for (int i = 0; i < shares.length; i++) {
+                    shares[i] = 1 + random.nextInt(4);
+                }
+                long amount = 1 + random.nextInt(100_000);
+                long[] owed = SplitBalanceEngine.allocate(amount, shares);
+                long[] expense = new long[4 + 2 * members.length];
+                expense[0] = ids[random.nextInt(ids.length)];
+                expense[2] = amount;
+                expense[3] = 1 + random.nextInt(1_000_000);
+                for (int i = 0; i < members.length; i++) {
+                    expense[4 + 2 * i] = members[i];
+                    expense[5 + 2 * i] = owed[i];
+                }
+                expenses.add(expense);
+                cache.splitExpenseAdded(1, expense[0], false, amount, expense[3], members, owed);
+            } else {
+                long[] expense = expenses.remove(random.nextInt(expenses.size()));
+                long lastTime = 0;
+                for (long[] left : expenses) {
+                    lastTime = Math.max(lastTime, left[3]);
+                }
+                long[] members = new long[(expense.length - 4) / 2];
+                long[] owed = new long[members.length];
+                for (int i = 0; i < members.length; i++) {
+                    members[i] = expense[4 + 2 * i];
+                    owed[i] = expense[5 + 2 * i];
+                }
+                cache.splitExpenseDeleted(1, expense[0], expense[1] == 1, expense[2], lastTime, members, owed);
+            }
+
+            TripAggregateCache.Entry recomputed = recompute(expenses);
+            TripAggregateCache.Entry patched = cache.get(1);
+            assertTrue("step " + step, patched.matches(recomputed));
+            assertArrayEquals(Settlement.of(recomputed).balances, Settlement.of(patched).balances);
+        }
+        assertTrue(cache.isPatched(1));
+        assertTrue(cache.check(1, recompute(expenses), cache.generation()));
+        assertFalse(cache.isPatched(1));
+        assertEquals(0, cache.mismatches());
+    }
+
+    // The entry as loaded from scratch, one expense at a time
+    private static TripAggregateCache.Entry recompute(List<long[]> expenses) {
+        TripAggregateCache.Entry entry = entry();
+        for (long[] expense : expenses) {
+            entry.addPaid(expense[0], expense[1] == 1, expense[2]);
+            for (int i = 4; i < expense.length; i += 2) {
+                entry.addOwed(expense[i], expense[i + 1]);
+            }
+            entry.expenseCount++;
+            entry.lastTime = Math.max(entry.lastTime, expense[3]);
+        }
+        return entry;
+    }
+
+    @Test
+    public void check_replacesDriftedEntryAndIgnoresRacedLoads() {
+        TripAggregateCache cache = new TripAggregateCache(4);
+        cache.putIfUnchanged(1, entry(), cache.generation());
+        cache.expenseAdded(1, ASHA, false, 1200, 5_000);
+
+        // SQL says Ravi paid it, so the patched entry drifted
+        TripAggregateCache.Entry fromSql = entry();
+        fromSql.addPaid(RAVI, false, 1200);
+        fromSql.expenseCount = 1;
+        fromSql.lastTime = 5_000;
+
+        long raced = cache.generation();
+        cache.expenseAdded(2, ASHA, false, 100, 1);
+        assertTrue(cache.check(1, fromSql, raced));
+        assertTrue(cache.isPatched(1));
+
+        assertFalse(cache.check(1, fromSql, cache.generation()));
+        assertEquals(1, cache.mismatches());
+        assertFalse(cache.isPatched(1));
+        assertArrayEquals(new long[]{0, 1200}, cache.get(1).paid);
+    }
+
+    @Test
+    public void addPaid_sharesUnknownPayersButCreditsNobody() {
+        TripAggregateCache.Entry entry = entry();
+        entry.addPaid(99, false, 500);
+        entry.addPaid(RAVI, true, 200);
+        entry.addPaid(ASHA, false, 100);
+
+        assertEquals(800, entry.total);
+        assertEquals(600, entry.sharedTotal);
+        assertArrayEquals(new long[]{100, 0}, entry.paid);
+    }
+
+    @Test
+    public void addOwed_takesSplitsOutOfTheEqualPool() {
+        TripAggregateCache.Entry entry = entry();
+        entry.addPaid(ASHA, false, 900);
+        entry.addOwed(RAVI, 600);
+        entry.addOwed(ASHA, 300);
+
+        assertEquals(900, entry.splitTotal);
+        assertArrayEquals(new long[]{300, 600}, entry.owed);
+        assertArrayEquals(new long[]{300, 600}, entry.copy().owed);
+    }
+
+    @Test
+    public void get_returnsCopyAndCountsHitsAndMisses() {
+        TripAggregateCache cache = new TripAggregateCache(4);
+        assertNull(cache.get(1));
+        cache.putIfUnchanged(1, entry(), cache.generation());
+
+        cache.get(1).paid[0] = 99;
+        assertEquals(0, cache.get(1).paid[0]);
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void putIfUnchanged_dropsLoadsThatRacedAWrite() {
+        TripAggregateCache cache = new TripAggregateCache(4);
+        long generation = cache.generation();
+        // A write to any trip lands while trip 1 is loading from SQL
+        cache.expenseAdded(2, ASHA, false, 100, 1);
+
+        assertFalse(cache.putIfUnchanged(1, entry(), generation));
+        assertNull(cache.get(1));
+        assertTrue(cache.putIfUnchanged(1, entry(), cache.generation()));
+    }
+
+    @Test
+    public void putIfUnchanged_dropsLoadsThatOverlapAWrite() {
+        TripAggregateCache cache = new TripAggregateCache(4);
+        // The load starts after the write began, so it may already hold the row the delta adds
+        cache.writeStarted();
+        long generation = cache.generation();
+        cache.expenseAdded(1, ASHA, false, 1200, 5_000);
+        cache.writeFinished();
+        assertFalse(cache.putIfUnchanged(1, entry(), generation));
+
+        // Nothing is stored while a write is in flight, even without a bump since the load began
+        cache.writeStarted();
+        assertFalse(cache.putIfUnchanged(1, entry(), cache.generation()));
+        cache.writeFinished();
+        assertTrue(cache.putIfUnchanged(1, entry(), cache.generation()));
+    }
+
+    // Writes and cold loads race on two threads; "SQL" is a list read and written under its own lock
+    @Test
+    public void concurrentColdLoads_neverCountAWriteTwice() throws InterruptedException {
+        TripAggregateCache cache = new TripAggregateCache(4);
+        List<long[]> rows = new ArrayList<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread loader = new Thread(() -> {
+            while (!done.get()) {
+                cache.remove(1);
+                long generation = cache.generation();
+                TripAggregateCache.Entry loaded;
+                synchronized (rows) {
+                    loaded = recompute(rows);
+                }
+                cache.putIfUnchanged(1, loaded, generation);
+            }
+        });
+        loader.start();
+        Random random = new Random(4);
+        try {
+            for (int step = 0; step < 20_000; step++) {
+                cache.writeStarted();
+                try {
+                    if (rows.isEmpty() || random.nextBoolean()) {
+                        long[] row = {random.nextBoolean() ? ASHA : RAVI, 0, 1 + random.nextInt(1_000), step};
+                        synchronized (rows) {
+                            rows.add(row);
+                        }
+                        cache.expenseAdded(1, row[0], false, row[2], row[3]);
+                    } else {
+                        long[] row;
+                        long lastTime = 0;
+                        synchronized (rows) {
+                            row = rows.remove(random.nextInt(rows.size()));
+                            for (long[] left : rows) {
+                                lastTime = Math.max(lastTime, left[3]);
+                            }
+                        }
+                        cache.expenseDeleted(1, row[0], false, row[2], lastTime);
+                    }
+                } finally {
+                    cache.writeFinished();
+                }
+                TripAggregateCache.Entry cached = cache.get(1);
+                if (cached != null) {
+                    synchronized (rows) {
+                        assertTrue("step " + step, cached.matches(recompute(rows)));
+                    }
+                }
+            }
+        } finally {
+            done.set(true);
+            loader.join();
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTrip() {
+        TripAggregateCache cache = new TripAggregateCache(2);
+        cache.putIfUnchanged(1, entry(), cache.generation());
+        cache.putIfUnchanged(2, entry(), cache.generation());
+        cache.get(1);
+        cache.putIfUnchanged(3, entry(), cache.generation());
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void remove_dropsTrip() {
+        TripAggregateCache cache = new TripAggregateCache(2);
+        cache.putIfUnchanged(1, entry(), cache.generation());
+        cache.remove(1);
+        assertNull(cache.get(1));
+    }
+
+    private static TripAggregateCache.Entry entry() {
+        return new TripAggregateCache.Entry(new long[]{ASHA, RAVI}, new String[]{"Asha", "Ravi"});
+    }
+}
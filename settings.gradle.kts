@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Tour_Expenses"
 include(":app")
+include(":core")
+include(":benchmark")